@@ -0,0 +1,39 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+package mutf8.benchmarks;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A kind of octet buffer to be used as the source of a decoder or as the target
+ * of an encoder.
+ *
+ * @author  Nathan Ryan
+ */
+public enum BufferKind {
+
+    HEAP {
+        @Override
+        public ByteBuffer allocate(final int capacity) {
+            return ByteBuffer.allocate(capacity);
+        }
+    },
+
+    DIRECT {
+        @Override
+        public ByteBuffer allocate(final int capacity) {
+            return ByteBuffer.allocateDirect(capacity);
+        }
+    };
+
+    public abstract ByteBuffer allocate(int capacity);
+
+    /**
+     * @return  a new buffer of this kind that contains exactly the given octets
+     */
+    public ByteBuffer wrap(final byte[] octets) {
+        return allocate(octets.length).put(octets).flip();
+    }
+}
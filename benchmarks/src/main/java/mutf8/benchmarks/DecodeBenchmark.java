@@ -0,0 +1,159 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+package mutf8.benchmarks;
+
+import mutf8.ModifiedUtf8;
+import mutf8.ModifiedUtf8Charset;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of decoding modified UTF-8, relative to decoding the
+ * same text with the decoders provided by the Java SE.
+ * <p>
+ * The decoders under measurement are reused across invocations and decode into
+ * a preallocated character buffer, so that the measurement is dominated by the
+ * decoding loop rather than by allocation.
+ *
+ * @author  Nathan Ryan
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecodeBenchmark {
+
+    // The reference implementation cannot read an encoding of more than 65535
+    // octets, so long text is written as a sequence of records, each of which
+    // encodes at most this many characters.
+    private static final int RECORD_LENGTH = 65535 / 3;
+
+    @Param
+    Workload workload;
+
+    @Param({ "16", "1048576" })
+    int length;
+
+    @Param
+    BufferKind buffer;
+
+    private CharsetDecoder modifiedUtf8Decoder;
+
+    private CharsetDecoder utf8Decoder;
+
+    private ByteBuffer modifiedUtf8Source;
+
+    private byte[] modifiedUtf8Array;
+
+    private ByteBuffer utf8Source;
+
+    private byte[] records;
+
+    private CharBuffer target;
+
+    @Setup
+    public void setup() throws IOException {
+        final String text = workload.generate(length);
+        modifiedUtf8Decoder = new ModifiedUtf8Charset().newDecoder();
+        utf8Decoder = StandardCharsets.UTF_8.newDecoder();
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream output = new DataOutputStream(bytes);
+        for (int i = 0; i < text.length(); i += RECORD_LENGTH) {
+            output.writeUTF(text.substring(i, Math.min(i + RECORD_LENGTH, text.length())));
+        }
+        records = bytes.toByteArray();
+        final ByteBuffer encoding = new ModifiedUtf8Charset().newEncoder().encode(CharBuffer.wrap(text));
+        modifiedUtf8Array = new byte[encoding.remaining()];
+        encoding.duplicate().get(modifiedUtf8Array);
+        modifiedUtf8Source = buffer.allocate(encoding.remaining()).put(encoding).flip();
+        utf8Source = buffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+        target = CharBuffer.allocate(text.length());
+    }
+
+    @Benchmark
+    public CharBuffer modifiedUtf8Charset() {
+        return decode(modifiedUtf8Decoder, modifiedUtf8Source.duplicate(), target);
+    }
+
+    @Benchmark
+    public String modifiedUtf8Decode() {
+        return ModifiedUtf8.decode(modifiedUtf8Array, 0, modifiedUtf8Array.length);
+    }
+
+    @Benchmark
+    public String modifiedUtf8DecodeParallel() {
+        return ModifiedUtf8.decodeParallel(modifiedUtf8Array, 0, modifiedUtf8Array.length);
+    }
+
+    @Benchmark
+    public CharBuffer standardUtf8Charset() {
+        return decode(utf8Decoder, utf8Source.duplicate(), target);
+    }
+
+    @Benchmark
+    public int dataInputStreamReadUtf() {
+        final DataInputStream input = new DataInputStream(new ByteArrayInputStream(records));
+        int result = 0;
+        try {
+            while (input.available() > 0) {
+                result += input.readUTF().length();
+            }
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public int modifiedUtf8ReadUtf() {
+        final DataInputStream input = new DataInputStream(new ByteArrayInputStream(records));
+        int result = 0;
+        try {
+            while (input.available() > 0) {
+                result += ModifiedUtf8.readUTF(input).length();
+            }
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return result;
+    }
+
+    private static CharBuffer decode(final CharsetDecoder decoder, final ByteBuffer source, final CharBuffer target) {
+        decoder.reset();
+        target.clear();
+        CoderResult result = decoder.decode(source, target, true);
+        if (result.isUnderflow()) {
+            result = decoder.flush(target);
+        }
+        if (!result.isUnderflow()) {
+            throw new IllegalStateException(result.toString());
+        }
+        return target;
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+package mutf8.benchmarks;
+
+import mutf8.ModifiedUtf8;
+import mutf8.ModifiedUtf8Charset;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of encoding modified UTF-8, relative to encoding the
+ * same text with the encoders provided by the Java SE.
+ * <p>
+ * The encoders under measurement are reused across invocations and encode into
+ * a preallocated octet buffer, so that the measurement is dominated by the
+ * encoding loop rather than by allocation.
+ *
+ * @author  Nathan Ryan
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EncodeBenchmark {
+
+    // The reference implementation cannot write an encoding of more than 65535
+    // octets, so long text is written as a sequence of records, each of which
+    // encodes at most this many characters.
+    private static final int RECORD_LENGTH = 65535 / 3;
+
+    @Param
+    Workload workload;
+
+    @Param({ "16", "1048576" })
+    int length;
+
+    @Param
+    BufferKind buffer;
+
+    private String text;
+
+    private char[] chars;
+
+    private CharsetEncoder modifiedUtf8Encoder;
+
+    private CharsetEncoder utf8Encoder;
+
+    private ByteBuffer target;
+
+    private byte[] targetArray;
+
+    private ByteArrayOutputStream records;
+
+    @Setup
+    public void setup() {
+        text = workload.generate(length);
+        chars = text.toCharArray();
+        modifiedUtf8Encoder = new ModifiedUtf8Charset().newEncoder();
+        utf8Encoder = StandardCharsets.UTF_8.newEncoder();
+        target = buffer.allocate(3 * text.length());
+        targetArray = new byte[3 * text.length()];
+        records = new ByteArrayOutputStream(3 * text.length() + 2 * (text.length() / RECORD_LENGTH + 1));
+    }
+
+    @Benchmark
+    public ByteBuffer modifiedUtf8Charset() {
+        return encode(modifiedUtf8Encoder, CharBuffer.wrap(text), target);
+    }
+
+    @Benchmark
+    public ByteBuffer modifiedUtf8CharsetFromArray() {
+        return encode(modifiedUtf8Encoder, CharBuffer.wrap(chars), target);
+    }
+
+    @Benchmark
+    public int modifiedUtf8Encode() {
+        return ModifiedUtf8.encode(text, targetArray, 0);
+    }
+
+    @Benchmark
+    public byte[] modifiedUtf8EncodeToNewArray() {
+        return ModifiedUtf8.encode(text);
+    }
+
+    @Benchmark
+    public ByteBuffer modifiedUtf8CharsetToNewBuffer() throws CharacterCodingException {
+        return modifiedUtf8Encoder.encode(CharBuffer.wrap(text));
+    }
+
+    @Benchmark
+    public ByteBuffer standardUtf8Charset() {
+        return encode(utf8Encoder, CharBuffer.wrap(text), target);
+    }
+
+    @Benchmark
+    public int dataOutputStreamWriteUtf() {
+        records.reset();
+        final DataOutputStream output = new DataOutputStream(records);
+        try {
+            for (int i = 0; i < text.length(); i += RECORD_LENGTH) {
+                output.writeUTF(text.substring(i, Math.min(i + RECORD_LENGTH, text.length())));
+            }
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return records.size();
+    }
+
+    @Benchmark
+    public int modifiedUtf8WriteUtf() {
+        records.reset();
+        final DataOutputStream output = new DataOutputStream(records);
+        try {
+            for (int i = 0; i < text.length(); i += RECORD_LENGTH) {
+                ModifiedUtf8.writeUTF(text.substring(i, Math.min(i + RECORD_LENGTH, text.length())), output);
+            }
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return records.size();
+    }
+
+    private static ByteBuffer encode(final CharsetEncoder encoder, final CharBuffer source, final ByteBuffer target) {
+        encoder.reset();
+        target.clear();
+        CoderResult result = encoder.encode(source, target, true);
+        if (result.isUnderflow()) {
+            result = encoder.flush(target);
+        }
+        if (!result.isUnderflow()) {
+            throw new IllegalStateException(result.toString());
+        }
+        return target;
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+package mutf8.benchmarks;
+
+import java.util.SplittableRandom;
+
+/**
+ * A kind of text to be encoded or decoded by a benchmark.
+ * <p>
+ * Each kind of text is generated pseudo-randomly from a fixed seed, so that
+ * every run of a benchmark measures the same input.
+ *
+ * @author  Nathan Ryan
+ */
+public enum Workload {
+
+    /**
+     * Characters that can be encoded as one octet, like the names and
+     * descriptors found in a {@code class} file.
+     */
+    ASCII {
+        @Override
+        char next(final SplittableRandom random) {
+            return IDENTIFIER.charAt(random.nextInt(IDENTIFIER.length()));
+        }
+    },
+
+    /**
+     * Characters of the Latin-1 Supplement, most of which are encoded as two
+     * octets.
+     */
+    LATIN_1 {
+        @Override
+        char next(final SplittableRandom random) {
+            return (char)(random.nextInt(0x20, 0x100));
+        }
+    },
+
+    /**
+     * Characters of the CJK Unified Ideographs, each of which is encoded as
+     * three octets.
+     */
+    CJK {
+        @Override
+        char next(final SplittableRandom random) {
+            return (char)(random.nextInt(0x4E00, 0xA000));
+        }
+    },
+
+    /**
+     * Mostly one-octet characters interspersed with two-octet characters,
+     * three-octet characters and surrogate pairs.
+     */
+    MIXED {
+        @Override
+        char next(final SplittableRandom random) {
+            final int n = random.nextInt(100);
+            if (n < 70) {
+                return ASCII.next(random);
+            } else if (n < 85) {
+                return LATIN_1.next(random);
+            } else {
+                return CJK.next(random);
+            }
+        }
+
+        @Override
+        String generate(final int length, final SplittableRandom random) {
+            final StringBuilder builder = new StringBuilder(length);
+            while (builder.length() < length) {
+                if ((length - builder.length() >= 2) && (random.nextInt(20) == 0)) {
+                    builder.appendCodePoint(random.nextInt(0x1F300, 0x1F650));
+                } else {
+                    builder.append(next(random));
+                }
+            }
+            return builder.toString();
+        }
+    },
+
+    /**
+     * One-octet characters interspersed with null characters, each of which is
+     * encoded as two octets.
+     */
+    NUL {
+        @Override
+        char next(final SplittableRandom random) {
+            return ((random.nextInt(16) == 0) ? '\u0000' : ASCII.next(random));
+        }
+    };
+
+    private static final String IDENTIFIER = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789$_/;()[<>";
+
+    private static final long SEED = 0x4D555446_2D380000L;
+
+    abstract char next(SplittableRandom random);
+
+    String generate(final int length, final SplittableRandom random) {
+        final StringBuilder builder = new StringBuilder(length);
+        while (builder.length() < length) {
+            builder.append(next(random));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * @return  a string of the given number of UTF-16 code units
+     */
+    public String generate(final int length) {
+        return generate(length, new SplittableRandom(SEED + ordinal()));
+    }
+}
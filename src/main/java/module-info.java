@@ -3,5 +3,7 @@
  * For more information, please refer to <http://unlicense.org/>.
  */
 module mutf8 {
+    exports mutf8;
+    exports mutf8.classfile;
     provides java.nio.charset.spi.CharsetProvider with mutf8.spi.ModifiedUtf8CharsetProvider;
 }
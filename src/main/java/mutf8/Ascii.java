@@ -0,0 +1,146 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+package mutf8;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Bulk operations on runs of one-octet sequences, i.e., octets of the form
+ * 0xxxxxxx, which are the encodings of the characters U+0000 through U+007F.
+ * <p>
+ * Most encodings found in practice (class names, method descriptors, field
+ * names) consist entirely of such runs. The operations of this class examine
+ * eight octets at a time, by reading them as a single {@code long} and checking
+ * the high bit of every octet with a single mask, and fall back to examining
+ * one octet at a time only near the end of a run.
+ *
+ * @author  Nathan Ryan
+ */
+final class Ascii {
+
+    // The byte order is irrelevant to the mask, which is symmetric, so the
+    // native byte order is used in order to avoid any byte swapping.
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    private Ascii() {
+    }
+
+    /**
+     * Counts the run of one-octet sequences at the given index of the given
+     * source, stopping at the first octet that is not of the form 0xxxxxxx, or
+     * after the given number of octets, whichever is first.
+     *
+     * @return  the number of octets counted
+     */
+    static int count(final byte[] source, final int index, final int length) {
+        int n = 0;
+        while (length - n >= Long.BYTES) {
+            if ((((long)(LONGS.get(source, index + n))) & HIGH_BITS) != 0) {
+                break;
+            }
+            n += Long.BYTES;
+        }
+        while ((n < length) && (source[index + n] >= 0)) {
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * Counts the run of one-octet sequences at the given index of the given
+     * buffer, as by {@link #count(byte[], int, int)}. The octets are read by
+     * absolute {@code getLong} invocations, so that a direct buffer is examined
+     * a word at a time rather than an octet at a time.
+     *
+     * @return  the number of octets counted
+     */
+    static int count(final ByteBuffer source, final int index, final int length) {
+        int n = 0;
+        while (length - n >= Long.BYTES) {
+            if ((source.getLong(index + n) & HIGH_BITS) != 0) {
+                break;
+            }
+            n += Long.BYTES;
+        }
+        while ((n < length) && (source.get(index + n) >= 0)) {
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * Decodes the run of one-octet sequences at the given index of the given
+     * source, stopping at the first octet that is not of the form 0xxxxxxx, or
+     * after the given number of octets, whichever is first.
+     *
+     * @return  the number of octets decoded, which is also the number of
+     *          characters written to the given target
+     */
+    static int decode(final byte[] source, final int sourceIndex, final char[] target, final int targetIndex, final int length) {
+        int n = (AsciiVectors.AVAILABLE ? AsciiVectors.decode(source, sourceIndex, target, targetIndex, length) : 0);
+        while (length - n >= Long.BYTES) {
+            if ((((long)(LONGS.get(source, sourceIndex + n))) & HIGH_BITS) != 0) {
+                break;
+            }
+            // A simple counted loop, which a JIT compiler can unroll or
+            // vectorize.
+            for (int i = 0; i < Long.BYTES; i++) {
+                target[targetIndex + n + i] = (char)(source[sourceIndex + n + i]);
+            }
+            n += Long.BYTES;
+        }
+        while ((n < length) && (source[sourceIndex + n] >= 0)) {
+            target[targetIndex + n] = (char)(source[sourceIndex + n]);
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * Encodes the run of characters U+0001 through U+007F at the given index of
+     * the given source, stopping at the first character that is not in that
+     * range, or after the given number of characters, whichever is first.
+     * <p>
+     * The null character is excluded, because it is encoded as a two-octet
+     * sequence.
+     *
+     * @return  the number of characters encoded, which is also the number of
+     *          octets written to the given target
+     */
+    static int encode(final char[] source, final int sourceIndex, final byte[] target, final int targetIndex, final int length) {
+        int n = (AsciiVectors.AVAILABLE ? AsciiVectors.encode(source, sourceIndex, target, targetIndex, length) : 0);
+        while (length - n >= Long.BYTES) {
+            // For each character, (ch | (ch - 1)) has no bits set above the
+            // seventh bit if and only if the character is in the range U+0001
+            // through U+007F.
+            int bits = 0;
+            for (int i = 0; i < Long.BYTES; i++) {
+                final char ch = source[sourceIndex + n + i];
+                bits |= (ch | (ch - 1));
+            }
+            if ((bits & ~0x7F) != 0) {
+                break;
+            }
+            for (int i = 0; i < Long.BYTES; i++) {
+                target[targetIndex + n + i] = (byte)(source[sourceIndex + n + i]);
+            }
+            n += Long.BYTES;
+        }
+        while (n < length) {
+            final char ch = source[sourceIndex + n];
+            if (((ch | (ch - 1)) & ~0x7F) != 0) {
+                break;
+            }
+            target[targetIndex + n] = (byte)(ch);
+            n++;
+        }
+        return n;
+    }
+}
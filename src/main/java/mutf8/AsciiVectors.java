@@ -0,0 +1,51 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+package mutf8;
+
+/**
+ * Bulk operations on runs of one-octet sequences that use the Vector API to
+ * examine many octets or characters at once.
+ * <p>
+ * The Vector API is not available to the Java SE release targeted by the base
+ * of this module, so this version of this class is never available. A version
+ * of this class for later Java SE releases is included in the multi-release
+ * JAR of this module.
+ *
+ * @author  Nathan Ryan
+ * @see     Ascii
+ */
+final class AsciiVectors {
+
+    // This field is deliberately not a constant expression, so that its value
+    // is not inlined into callers compiled against this version of this class.
+    static final boolean AVAILABLE;
+
+    static {
+        AVAILABLE = false;
+    }
+
+    private AsciiVectors() {
+    }
+
+    /**
+     * @return  zero, since no octets are decoded by this version of this
+     *          class, so that the scalar operations of {@link Ascii} decode
+     *          the whole run
+     * @see     Ascii#decode(byte[], int, char[], int, int)
+     */
+    static int decode(final byte[] source, final int sourceIndex, final char[] target, final int targetIndex, final int length) {
+        return 0;
+    }
+
+    /**
+     * @return  zero, since no characters are encoded by this version of this
+     *          class, so that the scalar operations of {@link Ascii} encode
+     *          the whole run
+     * @see     Ascii#encode(char[], int, byte[], int, int)
+     */
+    static int encode(final char[] source, final int sourceIndex, final byte[] target, final int targetIndex, final int length) {
+        return 0;
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+package mutf8;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.MalformedInputException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Static methods for reading the {@code string_data_item} structures of the
+ * Dalvik Executable ({@code dex}) format.
+ * <p>
+ * A {@code string_data_item} is the number of UTF-16 code units of the string,
+ * as an unsigned LEB128 value, followed by the modified UTF-8 encoding of the
+ * string, followed by a null octet. Since the encoding of the null character
+ * is [{@code 0xC0}&nbsp;{@code 0x80}], the null octet is never part of the
+ * encoding. The structure is defined by
+ * <a href="https://source.android.com/devices/tech/dalvik/dex-format#string-data-item">
+ *     <i>Dalvik Executable format</i>, string_data_item
+ * </a>.
+ * <p>
+ * The end of the encoding is found by a scan that examines eight octets at a
+ * time, which also counts the continuation octets, so that the number of
+ * characters is checked against the declared number before decoding, and the
+ * decoded characters are written to an array of exactly that length, without
+ * a second pass over the octets.
+ *
+ * @author  Nathan Ryan
+ */
+public final class DexStringData {
+
+    // The octets are examined in little-endian order, so that the first octet
+    // of a word is the least significant.
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private static final long LOW_BITS = 0x0101010101010101L;
+
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    // the greatest number of octets of an unsigned LEB128 value of 32 bits
+    private static final int MAX_ULEB128_LENGTH = 5;
+
+    // the number of octets copied at a time from a buffer that has no
+    // accessible array, which is at least the length of the longest utf16_size
+    private static final int CHUNK_LENGTH = 256;
+
+    private DexStringData() {
+    }
+
+    /**
+     * Reads the {@code string_data_item} at the given offset of the given
+     * array.
+     * <p>
+     * The {@linkplain InvalidModifiedUtf8Exception#getOffset() offset} of an
+     * exception thrown for a malformed sequence is the index of its first
+     * octet in the given array.
+     *
+     * @return  the decoded string
+     * @throws  IndexOutOfBoundsException
+     *          if the given offset is out of the bounds of the given array
+     * @throws  IllegalArgumentException
+     *          if the length is not a valid unsigned LEB128 value, if there is
+     *          no null octet, or if the number of characters differs from the
+     *          length
+     * @throws  InvalidModifiedUtf8Exception
+     *          if the octets before the null octet are not a valid encoding
+     */
+    public static String read(final byte[] source, final int offset) {
+        Objects.checkIndex(offset, source.length);
+        return read(source, offset, source.length, 0);
+    }
+
+    // Offsets in messages and exceptions are relative to the given origin.
+    private static String read(final byte[] source, final int offset, final int sourceLimit, final int origin) {
+        final long header = readSize(source, offset, sourceLimit, origin);
+        final int index = (int)(header >>> 32);
+        final long scan = scan(source, index, sourceLimit);
+        if ((int)(scan) == sourceLimit) {
+            throw new IllegalArgumentException("Unterminated string_data_item at offset " + (offset - origin));
+        }
+        return decode(source, offset, index, (int)(scan), (int)(scan >>> 32), (int)(header), origin);
+    }
+
+    /**
+     * Reads the utf16_size at the given offset of the given source.
+     *
+     * @return  the index of the encoding in the high 32 bits, and the size in
+     *          the low 32 bits
+     */
+    private static long readSize(final byte[] source, final int offset, final int sourceLimit, final int origin) {
+        int index = offset;
+        long size = 0;
+        for (int shift = 0; ; shift += 7) {
+            if ((index == sourceLimit) || (index - offset == MAX_ULEB128_LENGTH)) {
+                throw new IllegalArgumentException("Invalid utf16_size at offset " + (offset - origin));
+            }
+            final byte b = source[index++];
+            size |= (long)(b & 0x7F) << shift;
+            if (b >= 0) {
+                break;
+            }
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid utf16_size at offset " + (offset - origin) + ": " + size);
+        }
+        return ((long)(index) << 32) | size;
+    }
+
+    /**
+     * Decodes the encoding from the given index to the given limit, the index
+     * of the null octet, of the item at the given offset of the given source.
+     */
+    private static String decode(final byte[] source, final int offset, final int index, final int limit,
+                                 final int continuations, final int size, final int origin) {
+        final int length = limit - index;
+        // Each character is encoded as exactly one octet that is not a
+        // continuation octet.
+        if (length - continuations != size) {
+            throw new IllegalArgumentException("Declared utf16_size " + size + " differs from encoded length "
+                    + (length - continuations) + " at offset " + (offset - origin));
+        }
+        if ((continuations == 0) && (Ascii.count(source, index, length) == length)) {
+            return new String(source, index, length, StandardCharsets.ISO_8859_1);
+        }
+        // A malformed encoding decodes no more characters than it has octets
+        // that are not continuation octets, so the array is large enough.
+        final char[] target = new char[size];
+        try {
+            ModifiedUtf8.decode(source, index, limit, target, 0);
+        } catch (final InvalidModifiedUtf8Exception e) {
+            if (origin == 0) {
+                throw e;
+            }
+            throw new InvalidModifiedUtf8Exception((MalformedInputException)(e.getCause()), e.getOffset() - origin);
+        }
+        return new String(target);
+    }
+
+    /**
+     * Reads the {@code string_data_item} at the given index of the given
+     * buffer. The position of the given buffer is unchanged.
+     * <p>
+     * The {@linkplain InvalidModifiedUtf8Exception#getOffset() offset} of an
+     * exception thrown for a malformed sequence is its index in the given
+     * buffer.
+     *
+     * @return  the decoded string
+     * @throws  IndexOutOfBoundsException
+     *          if the given index is not less than the limit of the given
+     *          buffer
+     * @throws  IllegalArgumentException
+     *          if the length is not a valid unsigned LEB128 value, if there is
+     *          no null octet before the limit of the given buffer, or if the
+     *          number of characters differs from the length
+     * @throws  InvalidModifiedUtf8Exception
+     *          if the octets before the null octet are not a valid encoding
+     */
+    public static String read(final ByteBuffer source, final int index) {
+        Objects.checkIndex(index, source.limit());
+        if (source.hasArray()) {
+            final int arrayOffset = source.arrayOffset();
+            return read(source.array(), arrayOffset + index, arrayOffset + source.limit(), arrayOffset);
+        }
+        // Copy the item into an array a chunk at a time, by a bulk get, and
+        // scan each chunk as it is copied, so that each octet is copied and
+        // scanned once. The first chunk contains the whole length, unless it
+        // reaches the limit of the buffer, the last octet of which may itself
+        // be null.
+        final ByteBuffer remaining = source.duplicate();
+        remaining.position(index);
+        byte[] octets = new byte[Math.min(remaining.remaining(), CHUNK_LENGTH)];
+        remaining.get(octets);
+        int n = octets.length;
+        final long header = readSize(octets, 0, n, -index);
+        final int start = (int)(header >>> 32);
+        int from = start;
+        int continuations = 0;
+        while (true) {
+            final long scan = scan(octets, from, n);
+            continuations += (int)(scan >>> 32);
+            if ((int)(scan) < n) {
+                return decode(octets, 0, start, (int)(scan), continuations, (int)(header), -index);
+            }
+            if (!remaining.hasRemaining()) {
+                throw new IllegalArgumentException("Unterminated string_data_item at offset " + index);
+            }
+            final int k = Math.min(remaining.remaining(), CHUNK_LENGTH);
+            if (octets.length - n < k) {
+                octets = Arrays.copyOf(octets, (int)(Math.min(2L * octets.length, (long)(n) + remaining.remaining())));
+            }
+            remaining.get(octets, n, k);
+            from = n;
+            n += k;
+        }
+    }
+
+    /**
+     * Scans the given source from the given index to the given limit for a null
+     * octet, counting the continuation octets, i.e., octets of the form
+     * 10xxxxxx, before it.
+     *
+     * @return  the index of the null octet, or the given limit if there is no
+     *          null octet before it, in the low 32 bits, and the number of
+     *          continuation octets before that index in the high 32 bits
+     */
+    private static long scan(final byte[] source, final int index, final int limit) {
+        long continuations = 0;
+        int i = index;
+        while (limit - i >= Long.BYTES) {
+            final long x = (long)(LONGS.get(source, i));
+            // The lowest octet that is null has its high bit set in this
+            // mask; a higher octet may be spuriously set, due to a borrow.
+            final long nulls = (x - LOW_BITS) & ~x & HIGH_BITS;
+            // An octet of the form 10xxxxxx has its high bit set and, shifted
+            // left by one, its high bit clear.
+            long c = x & ~(x << 1) & HIGH_BITS;
+            if (nulls != 0) {
+                final int n = Long.numberOfTrailingZeros(nulls) >>> 3;
+                c &= (1L << (n * Byte.SIZE)) - 1;
+                return ((continuations + Long.bitCount(c)) << 32) | (i + n);
+            }
+            continuations += Long.bitCount(c);
+            i += Long.BYTES;
+        }
+        for (; i < limit; i++) {
+            final byte b = source[i];
+            if (b == 0) {
+                return (continuations << 32) | i;
+            }
+            if ((b & 0xC0) == 0x80) {
+                continuations++;
+            }
+        }
+        return (continuations << 32) | limit;
+    }
+}
@@ -19,8 +19,31 @@ import java.nio.charset.MalformedInputException;
  */
 public class InvalidModifiedUtf8Exception extends RuntimeException {
 
+    private final long offset;
+
     public InvalidModifiedUtf8Exception(final MalformedInputException cause) {
+        this(cause, -1);
+    }
+
+    /**
+     * @param   offset
+     *          the offset of the first octet of the malformed sequence, or -1
+     *          if it is not known
+     */
+    public InvalidModifiedUtf8Exception(final MalformedInputException cause, final long offset) {
         super(cause);
+        this.offset = offset;
+    }
+
+    /**
+     * Returns the offset of the first octet of the malformed sequence. What the
+     * offset is relative to is specified by the method that threw this
+     * exception.
+     *
+     * @return  the offset, or -1 if it is not known
+     */
+    public long getOffset() {
+        return offset;
     }
 
     // standard override for covariant return
@@ -0,0 +1,1131 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+package mutf8;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.nio.charset.CoderResult;
+import java.nio.charset.MalformedInputException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Static methods for decoding and encoding modified UTF-8 directly between
+ * arrays and strings.
+ * <p>
+ * These methods follow the same rules as the decoder and the encoder of
+ * {@link ModifiedUtf8Charset}, but avoid the setup of a
+ * {@linkplain java.nio.charset.CharsetDecoder decoder} or an
+ * {@linkplain java.nio.charset.CharsetEncoder encoder} and the wrapping of
+ * arrays in buffers, which dominate the cost of transcoding a short string,
+ * such as an entry of the constant pool of a {@code class} file.
+ * <p>
+ * Unlike a decoder, these methods treat the given octets as a complete
+ * encoding: An incomplete sequence at the end of the octets is malformed. The
+ * {@linkplain InvalidModifiedUtf8Exception#getOffset() offset} of an exception
+ * thrown for a malformed sequence is the index of its first octet in the given
+ * array.
+ * <p>
+ * This class also provides replacements for {@link DataInput#readUTF()} and
+ * {@link DataOutput#writeUTF(String)}, and equivalents for buffers, that
+ * transcode through a scratch array that is reused by the current thread.
+ * <p>
+ * The {@linkplain #hashCode(byte[], int, int) hash code} of a decoding, and
+ * whether a decoding is {@linkplain #contentEquals(byte[], int, int,
+ * CharSequence) equal} to given characters, can be computed without decoding,
+ * so that a table keyed by strings can be probed with an encoding.
+ *
+ * @author  Nathan Ryan
+ * @see     ModifiedUtf8Charset
+ */
+public final class ModifiedUtf8 {
+
+    // Some virtual machines reserve header words in an array.
+    private static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
+    private static final int LATIN_1_SAMPLES = 8;
+
+    // the least number of octets that is worth decoding in another thread
+    private static final int MIN_CHUNK_LENGTH = 1 << 16;
+
+    // The length of an encoding of the format of DataOutput.writeUTF is
+    // written as two octets.
+    private static final int MAX_UTF_LENGTH = 0xFFFF;
+
+    private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[256]);
+
+    private ModifiedUtf8() {
+    }
+
+    /**
+     * Decodes the given range of the given array.
+     *
+     * @return  the decoded string
+     * @throws  IndexOutOfBoundsException
+     *          if the given range is out of the bounds of the given array
+     * @throws  InvalidModifiedUtf8Exception
+     *          if the given range is not a valid encoding
+     */
+    public static String decode(final byte[] source, final int offset, final int length) {
+        Objects.checkFromIndexSize(offset, length, source.length);
+        final int limit = offset + length;
+        int sourceIndex = offset + Ascii.count(source, offset, length);
+        if (sourceIndex == limit) {
+            // Every octet is decoded as the character of the same value, so no
+            // intermediate array is required.
+            return new String(source, offset, length, StandardCharsets.ISO_8859_1);
+        }
+        if ((source[sourceIndex] & 0xFC) != 0xC0) {
+            // The first sequence that is not a one-octet sequence is not that
+            // of a character in the range U+0080 through U+00FF.
+            final char[] target = new char[length];
+            final int n = decode(source, offset, limit, target, 0);
+            return new String(target, 0, n);
+        }
+        // Decode into Latin-1 octets for as long as every character is in the
+        // range U+0000 through U+00FF, which is typically all of them. Since
+        // the Java SE 9, a string of only such characters is typically stored
+        // as Latin-1 octets, so this halves the size of the intermediate array
+        // and avoids the compression of characters into octets by the string.
+        //
+        // There are never more characters than octets.
+        final byte[] latin1 = new byte[length];
+        int latin1Index = sourceIndex - offset;
+        System.arraycopy(source, offset, latin1, 0, latin1Index);
+        while (sourceIndex < limit) {
+            final byte a = source[sourceIndex];
+            if (a >= 0) {
+                // first octet 0xxxxxxx
+                final int n = Ascii.count(source, sourceIndex, limit - sourceIndex);
+                System.arraycopy(source, sourceIndex, latin1, latin1Index, n);
+                sourceIndex += n;
+                latin1Index += n;
+            } else if (((a & 0xFC) == 0xC0) && (limit - sourceIndex >= 2) && ((source[sourceIndex + 1] & 0xC0) == 0x80)) {
+                // first octet 110000xx
+                // 00000000 aabbbbbb as 110000aa 10bbbbbb
+                latin1[latin1Index++] = (byte)(((a & 0x03) << 6) | (source[sourceIndex + 1] & 0x3F));
+                sourceIndex += 2;
+            } else {
+                // Leave any other sequence, whether a character outside of the
+                // Latin-1 range or a malformed sequence, to the general case.
+                break;
+            }
+        }
+        if (sourceIndex == limit) {
+            return new String(latin1, 0, latin1Index, StandardCharsets.ISO_8859_1);
+        }
+        final char[] target = new char[length];
+        for (int i = 0; i < latin1Index; i++) {
+            target[i] = (char)(latin1[i] & 0xFF);
+        }
+        final int n = decode(source, sourceIndex, limit, target, latin1Index);
+        return new String(target, 0, n);
+    }
+
+    /**
+     * Decodes the given range of the given buffer. The position of the given
+     * buffer is unchanged.
+     * <p>
+     * A buffer that has a backing array is decoded directly from that array.
+     * Otherwise, an encoding no longer than that of the format of
+     * {@link DataOutput#writeUTF(String)}, such as an entry of the constant pool
+     * of a {@code class} file, is copied into a scratch array that is reused by
+     * the current thread, and a longer encoding is decoded a chunk at a time by
+     * a {@linkplain ModifiedUtf8Charset#newDecoder() decoder}.
+     * <p>
+     * The {@linkplain InvalidModifiedUtf8Exception#getOffset() offset} of an
+     * exception thrown for a malformed sequence is the index of its first octet
+     * in the given buffer.
+     *
+     * @return  the decoded string
+     * @throws  IndexOutOfBoundsException
+     *          if the given range is out of the bounds of the limit of the given
+     *          buffer
+     * @throws  InvalidModifiedUtf8Exception
+     *          if the given range is not a valid encoding
+     */
+    public static String decode(final ByteBuffer source, final int index, final int length) {
+        Objects.checkFromIndexSize(index, length, source.limit());
+        if (source.hasArray()) {
+            final int arrayOffset = source.arrayOffset();
+            try {
+                return decode(source.array(), arrayOffset + index, length);
+            } catch (final InvalidModifiedUtf8Exception e) {
+                throw new InvalidModifiedUtf8Exception((MalformedInputException)(e.getCause()), e.getOffset() - arrayOffset);
+            }
+        }
+        final ByteBuffer octets = source.duplicate();
+        octets.limit(index + length).position(index);
+        if (length <= MAX_UTF_LENGTH) {
+            final byte[] scratch = scratch(length);
+            octets.get(scratch, 0, length);
+            try {
+                return decode(scratch, 0, length);
+            } catch (final InvalidModifiedUtf8Exception e) {
+                throw new InvalidModifiedUtf8Exception((MalformedInputException)(e.getCause()), index + e.getOffset());
+            }
+        }
+        // There are never more characters than octets, so the decoder never
+        // overflows, and it leaves only the octets of a partial sequence at
+        // the end unused.
+        final CharBuffer target = CharBuffer.allocate(length);
+        final CoderResult result = new ModifiedUtf8Charset().newDecoder().decode(octets, target, false);
+        if (result.isError()) {
+            // The decoder leaves the source after the malformed sequence.
+            throw malformed(result.length(), octets.position() - result.length());
+        }
+        if (octets.hasRemaining()) {
+            throw malformed(octets.remaining(), octets.position());
+        }
+        return target.flip().toString();
+    }
+
+    /**
+     * Decodes the given range of the given array in parallel, in the common
+     * {@linkplain ForkJoinPool#commonPool() fork/join pool}.
+     *
+     * @return  the decoded string
+     * @throws  IndexOutOfBoundsException
+     *          if the given range is out of the bounds of the given array
+     * @throws  InvalidModifiedUtf8Exception
+     *          if the given range is not a valid encoding
+     * @see     #decodeParallel(byte[], int, int, ForkJoinPool)
+     */
+    public static String decodeParallel(final byte[] source, final int offset, final int length) {
+        return decodeParallel(source, offset, length, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Decodes the given range of the given array in parallel, in the given
+     * fork/join pool.
+     * <p>
+     * The range is split into chunks that each begin with an octet that is not
+     * a continuation octet, which is always the first octet of a sequence. The
+     * characters in each chunk are counted in parallel, and then each chunk is
+     * decoded in parallel into its part of a single array of characters. A
+     * range that is too short to benefit, or a pool of a single thread, is
+     * decoded in the current thread, as by {@link #decode(byte[], int, int)}.
+     * <p>
+     * The result, and any exception, is the same as that of
+     * {@link #decode(byte[], int, int)}: If the range is not a valid encoding,
+     * then the exception describes the first malformed sequence of the range.
+     *
+     * @return  the decoded string
+     * @throws  IndexOutOfBoundsException
+     *          if the given range is out of the bounds of the given array
+     * @throws  InvalidModifiedUtf8Exception
+     *          if the given range is not a valid encoding
+     */
+    public static String decodeParallel(final byte[] source, final int offset, final int length, final ForkJoinPool pool) {
+        Objects.checkFromIndexSize(offset, length, source.length);
+        Objects.requireNonNull(pool);
+        final int parallelism = pool.getParallelism();
+        final int chunks = (parallelism == 1) ? 1 : Math.min(length / MIN_CHUNK_LENGTH, 4 * parallelism);
+        if (chunks <= 1) {
+            return decode(source, offset, length);
+        }
+        final int limit = offset + length;
+        final int[] bounds = new int[chunks + 1];
+        bounds[0] = offset;
+        for (int k = 1; k < chunks; k++) {
+            int i = Math.max(bounds[k - 1], offset + (int)((long)(length) * k / chunks));
+            while ((i < limit) && ((source[i] & 0xC0) == 0x80)) {
+                i++;
+            }
+            bounds[k] = i;
+        }
+        bounds[chunks] = limit;
+        // Each character of a valid encoding is decoded from exactly one octet
+        // that is not a continuation octet.
+        final int[] starts = new int[chunks + 1];
+        pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(chunkTasks(chunks, k -> {
+            int n = 0;
+            for (int i = bounds[k]; i < bounds[k + 1]; i++) {
+                if ((source[i] & 0xC0) != 0x80) {
+                    n++;
+                }
+            }
+            starts[k + 1] = n;
+        }))));
+        for (int k = 0; k < chunks; k++) {
+            starts[k + 1] += starts[k];
+        }
+        // A malformed chunk decodes no more characters than it has octets that
+        // are not continuation octets, so it never writes beyond its part.
+        final char[] target = new char[starts[chunks]];
+        final boolean[] invalid = new boolean[chunks];
+        pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(chunkTasks(chunks, k -> {
+            try {
+                decode(source, bounds[k], bounds[k + 1], target, starts[k]);
+            } catch (final InvalidModifiedUtf8Exception e) {
+                invalid[k] = true;
+            }
+        }))));
+        for (int k = 0; k < chunks; k++) {
+            if (invalid[k]) {
+                // Every chunk before this one is valid, so a sequential decode
+                // would reach the start of this chunk. Decode from there to the
+                // end of the range, in order to throw the same exception, since
+                // a sequence at the end of this chunk may be malformed rather
+                // than incomplete given the octets of the next chunk.
+                decode(source, bounds[k], limit, target, starts[k]);
+                throw new AssertionError();
+            }
+        }
+        return new String(target);
+    }
+
+    private static List<ForkJoinTask<?>> chunkTasks(final int chunks, final IntConsumer task) {
+        final List<ForkJoinTask<?>> result = new ArrayList<>(chunks);
+        for (int k = 0; k < chunks; k++) {
+            final int chunk = k;
+            result.add(ForkJoinTask.adapt(() -> task.accept(chunk)));
+        }
+        return result;
+    }
+
+    /**
+     * Decodes each of the given ranges of the given array, as by
+     * {@link #decode(byte[], int, int)}.
+     * <p>
+     * This method suits a large number of short encodings, such as the
+     * entries of the constant pool of a {@code class} file: The ranges are
+     * decoded in a single loop through a single intermediate array, and a range
+     * of only one-octet sequences is decoded without one.
+     *
+     * @param   offsets
+     *          the offset of each range
+     * @param   lengths
+     *          the length of each range
+     * @return  the decoded string of each range
+     * @throws  IllegalArgumentException
+     *          if the given arrays of offsets and lengths differ in length
+     * @throws  IndexOutOfBoundsException
+     *          if a range is out of the bounds of the given array, in which
+     *          case no range is decoded
+     * @throws  InvalidModifiedUtf8Exception
+     *          if a range is not a valid encoding
+     */
+    public static String[] decodeAll(final byte[] source, final int[] offsets, final int[] lengths) {
+        if (offsets.length != lengths.length) {
+            throw new IllegalArgumentException("Offsets and lengths differ in length: " + offsets.length + " and " + lengths.length);
+        }
+        int maxLength = 0;
+        for (int k = 0; k < offsets.length; k++) {
+            Objects.checkFromIndexSize(offsets[k], lengths[k], source.length);
+            maxLength = Math.max(maxLength, lengths[k]);
+        }
+        final String[] result = new String[offsets.length];
+        // There are never more characters than octets.
+        final char[] target = new char[maxLength];
+        for (int k = 0; k < offsets.length; k++) {
+            final int offset = offsets[k];
+            final int length = lengths[k];
+            if (Ascii.count(source, offset, length) == length) {
+                result[k] = new String(source, offset, length, StandardCharsets.ISO_8859_1);
+            } else {
+                final int n = decode(source, offset, offset + length, target, 0);
+                result[k] = new String(target, 0, n);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Decodes the octets from the given index to the given limit of the given
+     * source, which must be a complete encoding, into the given target, which
+     * must have room for as many characters as there are octets.
+     * <p>
+     * The checks are those of {@link ModifiedUtf8Charset.Decoder}, in the same
+     * order, except that an incomplete sequence is malformed.
+     *
+     * @return  the index of the given target after the last decoded character
+     * @throws  InvalidModifiedUtf8Exception
+     *          if the octets are not a valid encoding
+     */
+    static int decode(final byte[] source, int sourceIndex, final int sourceLimit, final char[] target, int targetIndex) {
+        while (sourceIndex < sourceLimit) {
+            final byte a = source[sourceIndex];
+            switch ((a & 0xFF) >> 4) {
+                case 0: case 1: case 2: case 3: case 4: case 5: case 6: case 7: {
+                    // first octet 0xxxxxxx
+                    final int n = Ascii.decode(source, sourceIndex, target, targetIndex, sourceLimit - sourceIndex);
+                    sourceIndex += n;
+                    targetIndex += n;
+                    break;
+                }
+                case 12: case 13: {
+                    // first octet 110xxxxx
+                    if (sourceLimit - sourceIndex < 2) {
+                        throw malformed(sourceLimit - sourceIndex, sourceIndex);
+                    }
+                    final byte b = source[sourceIndex + 1];
+                    if ((b & 0xC0) != 0x80) {
+                        throw malformed(2, sourceIndex);
+                    }
+                    target[targetIndex++] = (char)(((a & 0x1F) << 6) | (b & 0x3F));
+                    sourceIndex += 2;
+                    break;
+                }
+                case 14: {
+                    // first octet 1110xxxx
+                    if (sourceLimit - sourceIndex < 2) {
+                        throw malformed(sourceLimit - sourceIndex, sourceIndex);
+                    }
+                    final byte b = source[sourceIndex + 1];
+                    if ((b & 0xC0) != 0x80) {
+                        throw malformed(2, sourceIndex);
+                    }
+                    if (sourceLimit - sourceIndex < 3) {
+                        throw malformed(sourceLimit - sourceIndex, sourceIndex);
+                    }
+                    final byte c = source[sourceIndex + 2];
+                    if ((c & 0xC0) != 0x80) {
+                        throw malformed(3, sourceIndex);
+                    }
+                    target[targetIndex++] = (char)(((a & 0x0F) << 12) | ((b & 0x3F) << 6) | (c & 0x3F));
+                    sourceIndex += 3;
+                    break;
+                }
+                default: {
+                    // first octet 10xxxxxx or 1111xxxx
+                    throw malformed(1, sourceIndex);
+                }
+            }
+        }
+        return targetIndex;
+    }
+
+    private static InvalidModifiedUtf8Exception malformed(final int length, final int offset) {
+        return new InvalidModifiedUtf8Exception(new MalformedInputException(length), offset);
+    }
+
+    /**
+     * Encodes the given characters into a new array of exactly the length of
+     * the encoding.
+     * <p>
+     * Unlike {@link java.nio.charset.CharsetEncoder#encode(java.nio.CharBuffer)},
+     * which estimates the length of the encoding and grows its buffer as
+     * necessary, this method computes the exact length of the encoding first,
+     * so that exactly one array is allocated. A string of only the characters
+     * U+0001 through U+007F is encoded by a straight copy of its contents.
+     *
+     * @return  the encoding of the given characters
+     * @throws  OutOfMemoryError
+     *          if the encoding is too long to fit in an array
+     */
+    public static byte[] encode(final CharSequence source) {
+        if (isLikelyLatin1(source)) {
+            final byte[] latin1 = ((String)(source)).getBytes(StandardCharsets.ISO_8859_1);
+            final long n = encodedLength((String)(source), latin1);
+            if (n == latin1.length) {
+                // The Latin-1 encoding is the modified UTF-8 encoding.
+                return latin1;
+            } else if (n >= 0) {
+                if (n > MAX_ARRAY_LENGTH) {
+                    throw new OutOfMemoryError("Required array length " + n + " exceeds implementation limit");
+                }
+                final byte[] target = new byte[(int)(n)];
+                encode(latin1, target, 0);
+                return target;
+            }
+        }
+        final long n = encodedLength(source);
+        if (n > MAX_ARRAY_LENGTH) {
+            throw new OutOfMemoryError("Required array length " + n + " exceeds implementation limit");
+        }
+        final byte[] target = new byte[(int)(n)];
+        encode(source, 0, source.length(), target, 0);
+        return target;
+    }
+
+    /**
+     * Encodes each of the given character sequences, one after another, into
+     * a single new array, as by {@link #encode(CharSequence)}.
+     * <p>
+     * This method is the inverse of
+     * {@link #decodeAll(byte[], int[], int[])}: The offset and the length of
+     * the encoding of each character sequence in the returned array are stored
+     * in the given arrays, at the index of the character sequence.
+     *
+     * @param   offsets
+     *          the array in which to store the offset of each encoding
+     * @param   lengths
+     *          the array in which to store the length of each encoding
+     * @return  the encodings of the given characters
+     * @throws  IllegalArgumentException
+     *          if the given array of offsets or of lengths is shorter than
+     *          the given array of character sequences
+     * @throws  OutOfMemoryError
+     *          if the encodings are too long to fit in an array
+     */
+    public static byte[] encodeAll(final CharSequence[] sources, final int[] offsets, final int[] lengths) {
+        if ((offsets.length < sources.length) || (lengths.length < sources.length)) {
+            throw new IllegalArgumentException("Offsets or lengths shorter than sources: " + sources.length);
+        }
+        long n = 0;
+        for (int k = 0; k < sources.length; k++) {
+            final long length = encodedLength(sources[k]);
+            n += length;
+            if (n > MAX_ARRAY_LENGTH) {
+                throw new OutOfMemoryError("Required array length " + n + " exceeds implementation limit");
+            }
+            lengths[k] = (int)(length);
+        }
+        final byte[] target = new byte[(int)(n)];
+        int targetIndex = 0;
+        for (int k = 0; k < sources.length; k++) {
+            offsets[k] = targetIndex;
+            targetIndex = encode(sources[k], 0, sources[k].length(), target, targetIndex);
+        }
+        return target;
+    }
+
+    /**
+     * Encodes the given string into the given array, starting at the given
+     * offset.
+     * <p>
+     * No octets are written unless all octets fit.
+     *
+     * @return  the number of octets written
+     * @throws  IndexOutOfBoundsException
+     *          if the given offset is out of the bounds of the given array, or
+     *          if the encoding does not fit in the given array
+     */
+    public static int encode(final String source, final byte[] target, final int offset) {
+        final int length = source.length();
+        Objects.checkIndex(offset, target.length + 1);
+        // Compute the exact length of the encoding only if the array could
+        // possibly be too short.
+        if ((3L * length) > (target.length - offset)) {
+            checkFits(encodedLength(source), target, offset);
+        }
+        return encode(source, 0, length, target, offset) - offset;
+    }
+
+    private static void checkFits(final long length, final byte[] target, final int offset) {
+        if (length > (target.length - offset)) {
+            throw new IndexOutOfBoundsException("Encoding of length " + length + " out of bounds for length " + (target.length - offset));
+        }
+    }
+
+    /**
+     * @return  {@code true}, if the given characters are a string that is
+     *          likely to consist only of characters in the range U+0000
+     *          through U+00FF, judging by a sample of its characters;
+     *          {@code false}, otherwise
+     */
+    private static boolean isLikelyLatin1(final CharSequence source) {
+        if (!(source instanceof String)) {
+            return false;
+        }
+        // Text that contains characters outside of the Latin-1 range tends to
+        // contain many of them, so checking a few evenly spaced characters
+        // avoids most of the wasted effort of obtaining the Latin-1 encoding
+        // of such text.
+        final int length = source.length();
+        final int step = Math.max(1, length / LATIN_1_SAMPLES);
+        for (int i = 0; i < length; i += step) {
+            if (source.charAt(i) >= (1 << 8)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Computes the number of octets in the encoding of the given string, given
+     * its Latin-1 encoding, if every character of the string is in the range
+     * U+0000 through U+00FF.
+     * <p>
+     * Since the Java SE 9, a string of only such characters is typically
+     * stored as Latin-1 octets, which
+     * {@link String#getBytes(java.nio.charset.Charset)} copies in bulk.
+     * Encoding from those octets avoids reading the string one character at a
+     * time. If the string contains any other character, the effort of
+     * obtaining the Latin-1 encoding is wasted, which is why it is obtained
+     * only for a string that is {@linkplain #isLikelyLatin1 likely} to have
+     * one.
+     *
+     * @return  the number of octets in the encoding, or {@code -1}, if some
+     *          character of the given string is not in the range U+0000
+     *          through U+00FF
+     */
+    private static long encodedLength(final String source, final byte[] latin1) {
+        long n = latin1.length;
+        for (int i = 0; i < latin1.length; i++) {
+            final byte b = latin1[i];
+            // A character that has no Latin-1 encoding is replaced by a
+            // question mark, which is detected by comparison with the string.
+            if ((b == '?') && (source.charAt(i) != '?')) {
+                return -1;
+            }
+            // The octet is null or has its high bit set (i.e., is less than or
+            // equal to zero) if and only if it is encoded as two octets.
+            n += ((b - 1) >>> 31);
+        }
+        return n;
+    }
+
+    /**
+     * Encodes the characters of the given Latin-1 encoding into the given
+     * target, which must have room for all octets.
+     *
+     * @return  the index of the given target after the last encoded octet
+     */
+    private static int encode(final byte[] latin1, final byte[] target, int targetIndex) {
+        for (final byte b : latin1) {
+            if (b > 0) {
+                // 00000000 0aaaaaaa as 0aaaaaaa
+                target[targetIndex++] = b;
+            } else {
+                // 00000000 aabbbbbb as 110000aa 10bbbbbb
+                final int ch = b & 0xFF;
+                target[targetIndex++] = (byte)(0xC0 | (ch >> 6));
+                target[targetIndex++] = (byte)(0x80 | (ch & 0x3F));
+            }
+        }
+        return targetIndex;
+    }
+
+    /**
+     * Encodes the characters from the given index to the given limit of the
+     * given source into the given target, which must have room for all
+     * octets.
+     *
+     * @return  the index of the given target after the last encoded octet
+     */
+    static int encode(final CharSequence source, int sourceIndex, final int sourceLimit, final byte[] target, int targetIndex) {
+        while (sourceIndex < sourceLimit) {
+            final char ch = source.charAt(sourceIndex++);
+            if (ch == 0) {
+                // 00000000 00000000 as 11000000 10000000
+                target[targetIndex++] = (byte)(0xC0);
+                target[targetIndex++] = (byte)(0x80);
+            } else if (ch < (1 << 7)) {
+                // 00000000 0aaaaaaa as 0aaaaaaa
+                target[targetIndex++] = (byte)(ch);
+            } else if (ch < (1 << 11)) {
+                // 00000aaa aabbbbbb as 110aaaaa 10bbbbbb
+                target[targetIndex++] = (byte)(0xC0 | (ch >> 6));
+                target[targetIndex++] = (byte)(0x80 | (ch & 0x3F));
+            } else {
+                // aaaabbbb bbcccccc as 1110aaaa 10bbbbbb 10cccccc
+                target[targetIndex++] = (byte)(0xE0 | (ch >> 12));
+                target[targetIndex++] = (byte)(0x80 | ((ch >> 6) & 0x3F));
+                target[targetIndex++] = (byte)(0x80 | (ch & 0x3F));
+            }
+        }
+        return targetIndex;
+    }
+
+    /**
+     * Computes the number of octets in the encoding of the given characters.
+     * <p>
+     * The result may exceed {@link Integer#MAX_VALUE}, since each character
+     * is encoded as up to three octets.
+     *
+     * @return  the number of octets in the encoding
+     */
+    public static long encodedLength(final CharSequence source) {
+        final int length = source.length();
+        // Each character is encoded as one octet, plus one octet if it is the
+        // null character or is U+0080 or greater, plus one more octet if it is
+        // U+0800 or greater. Both conditions are computed without branching,
+        // as the sign of a difference, so that the loop has no data-dependent
+        // branches and can be unrolled or vectorized.
+        //
+        // The characters U+0001 through U+007F are exactly those for which
+        // ((ch - 1) & 0xFFFF) is less than 0x7F.
+        long n = length;
+        for (int i = 0; i < length; i++) {
+            final char ch = source.charAt(i);
+            n += ((0x7E - ((ch - 1) & 0xFFFF)) >>> 31) + ((0x7FF - ch) >>> 31);
+        }
+        return n;
+    }
+
+    /**
+     * Validates the given range of the given array as a complete encoding,
+     * without decoding it.
+     * <p>
+     * The given range is valid if and only if {@link #decode(byte[], int,
+     * int)} would decode it without throwing an exception; otherwise, the
+     * result is the {@linkplain InvalidModifiedUtf8Exception#getOffset()
+     * offset} of the exception that it would throw. Runs of one-octet
+     * sequences are examined eight octets at a time.
+     *
+     * @return  the index in the given array of the first octet of the first
+     *          malformed or incomplete sequence, or -1 if the given range is a
+     *          valid encoding
+     * @throws  IndexOutOfBoundsException
+     *          if the given range is out of the bounds of the given array
+     */
+    public static int validate(final byte[] source, final int offset, final int length) {
+        Objects.checkFromIndexSize(offset, length, source.length);
+        final int limit = offset + length;
+        int i = offset;
+        while (i < limit) {
+            final byte a = source[i];
+            switch ((a & 0xFF) >> 4) {
+                case 0: case 1: case 2: case 3: case 4: case 5: case 6: case 7: {
+                    // first octet 0xxxxxxx
+                    i += Ascii.count(source, i, limit - i);
+                    break;
+                }
+                case 12: case 13: {
+                    // first octet 110xxxxx
+                    if ((limit - i < 2) || ((source[i + 1] & 0xC0) != 0x80)) {
+                        return i;
+                    }
+                    i += 2;
+                    break;
+                }
+                case 14: {
+                    // first octet 1110xxxx
+                    if ((limit - i < 3) || ((source[i + 1] & 0xC0) != 0x80) || ((source[i + 2] & 0xC0) != 0x80)) {
+                        return i;
+                    }
+                    i += 3;
+                    break;
+                }
+                default: {
+                    // first octet 10xxxxxx or 1111xxxx
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Validates the octets from the position to the limit of the given buffer
+     * as a complete encoding, as by {@link #validate(byte[], int, int)}. The
+     * position of the given buffer is unchanged.
+     * <p>
+     * The octets of a direct buffer are read by absolute {@code getLong}
+     * invocations, so that runs of one-octet sequences are examined eight
+     * octets at a time without being copied.
+     *
+     * @return  the index in the given buffer of the first octet of the first
+     *          malformed or incomplete sequence, or -1 if the octets are a
+     *          valid encoding
+     */
+    public static int validate(final ByteBuffer source) {
+        if (source.hasArray()) {
+            final int arrayOffset = source.arrayOffset();
+            final int result = validate(source.array(), arrayOffset + source.position(), source.remaining());
+            return (result < 0) ? result : result - arrayOffset;
+        }
+        final int limit = source.limit();
+        int i = source.position();
+        while (i < limit) {
+            final byte a = source.get(i);
+            switch ((a & 0xFF) >> 4) {
+                case 0: case 1: case 2: case 3: case 4: case 5: case 6: case 7: {
+                    // first octet 0xxxxxxx
+                    i += Ascii.count(source, i, limit - i);
+                    break;
+                }
+                case 12: case 13: {
+                    // first octet 110xxxxx
+                    if ((limit - i < 2) || ((source.get(i + 1) & 0xC0) != 0x80)) {
+                        return i;
+                    }
+                    i += 2;
+                    break;
+                }
+                case 14: {
+                    // first octet 1110xxxx
+                    if ((limit - i < 3) || ((source.get(i + 1) & 0xC0) != 0x80) || ((source.get(i + 2) & 0xC0) != 0x80)) {
+                        return i;
+                    }
+                    i += 3;
+                    break;
+                }
+                default: {
+                    // first octet 10xxxxxx or 1111xxxx
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Computes the hash code of the decoding of the given range of the given
+     * array, without decoding it.
+     * <p>
+     * The result is equal to the {@linkplain String#hashCode() hash code} of
+     * the string returned by {@link #decode(byte[], int, int)}, whichever of
+     * the encodings accepted by the decoder is used for each character, so it
+     * can be used to probe a hash table keyed by strings.
+     *
+     * @return  the hash code of the decoding
+     * @throws  IndexOutOfBoundsException
+     *          if the given range is out of the bounds of the given array
+     * @throws  InvalidModifiedUtf8Exception
+     *          if the given range is not a valid encoding
+     */
+    public static int hashCode(final byte[] source, final int offset, final int length) {
+        Objects.checkFromIndexSize(offset, length, source.length);
+        final int limit = offset + length;
+        int h = 0;
+        int i = offset;
+        while (i < limit) {
+            final byte a = source[i];
+            if (a >= 0) {
+                h = 31 * h + a;
+                i++;
+            } else {
+                final long x = decodeAt(source, i, limit);
+                h = 31 * h + (char)(x);
+                i = (int)(x >>> 16);
+            }
+        }
+        return h;
+    }
+
+    /**
+     * Returns whether the decoding of the given range of the given array is
+     * equal to the given characters, without decoding it.
+     * <p>
+     * The octets are examined only until the first character that differs,
+     * and not at all if their number cannot be that of an encoding of the given
+     * characters, so an invalid encoding is detected only if it is examined.
+     *
+     * @return  whether the decoding is equal to the given characters
+     * @throws  IndexOutOfBoundsException
+     *          if the given range is out of the bounds of the given array
+     * @throws  InvalidModifiedUtf8Exception
+     *          if an examined sequence of the given range is malformed
+     */
+    public static boolean contentEquals(final byte[] source, final int offset, final int length, final CharSequence chars) {
+        Objects.checkFromIndexSize(offset, length, source.length);
+        final int n = chars.length();
+        // Each character is encoded as one to three octets.
+        if ((length < n) || (length > 3L * n)) {
+            return false;
+        }
+        final int limit = offset + length;
+        int i = offset;
+        int j = 0;
+        while (i < limit) {
+            if (j == n) {
+                return false;
+            }
+            final byte a = source[i];
+            if (a >= 0) {
+                if (chars.charAt(j) != a) {
+                    return false;
+                }
+                i++;
+            } else {
+                final long x = decodeAt(source, i, limit);
+                if (chars.charAt(j) != (char)(x)) {
+                    return false;
+                }
+                i = (int)(x >>> 16);
+            }
+            j++;
+        }
+        return j == n;
+    }
+
+    /**
+     * Returns a stream of the code points of the decoding of the given range
+     * of the given array, as by {@link CharSequence#codePoints()}, without
+     * decoding it into a string.
+     * <p>
+     * A three-octet sequence of a high surrogate that is immediately followed
+     * by a three-octet sequence of a low surrogate, which is how the encoder
+     * encodes a supplementary character, is decoded in one step as the code
+     * point of that supplementary character. Any other surrogate is returned
+     * as the code point of that surrogate.
+     * <p>
+     * The octets are decoded as the stream is traversed, so an
+     * {@link InvalidModifiedUtf8Exception} is thrown by the terminal operation
+     * of the stream, and only if it reaches a malformed sequence.
+     *
+     * @return  a stream of the code points of the decoding
+     * @throws  IndexOutOfBoundsException
+     *          if the given range is out of the bounds of the given array
+     */
+    public static IntStream codePoints(final byte[] source, final int offset, final int length) {
+        Objects.checkFromIndexSize(offset, length, source.length);
+        final int limit = offset + length;
+        final Spliterator.OfInt spliterator = new Spliterators.AbstractIntSpliterator(length, Spliterator.ORDERED | Spliterator.NONNULL) {
+
+            private int index = offset;
+
+            @Override
+            public boolean tryAdvance(final IntConsumer action) {
+                if (index == limit) {
+                    return false;
+                }
+                final long x = decodeCodePointAt(source, index, limit);
+                index = (int)(x >>> 32);
+                action.accept((int)(x));
+                return true;
+            }
+
+            @Override
+            public void forEachRemaining(final IntConsumer action) {
+                int i = index;
+                // Advance past the whole range first, as the contract requires
+                // even if the action throws.
+                index = limit;
+                while (i < limit) {
+                    final long x = decodeCodePointAt(source, i, limit);
+                    i = (int)(x >>> 32);
+                    action.accept((int)(x));
+                }
+            }
+        };
+        return StreamSupport.intStream(spliterator, false);
+    }
+
+    /**
+     * Decodes the sequence at the given index of the given source, which must
+     * be a complete encoding up to the given limit, as a code point, decoding
+     * the three-octet sequences of a surrogate pair together.
+     *
+     * @return  the decoded code point in the low 32 bits, and the index of the
+     *          next sequence in the high 32 bits
+     * @throws  InvalidModifiedUtf8Exception
+     *          if the sequence is malformed or incomplete
+     */
+    static long decodeCodePointAt(final byte[] source, final int sourceIndex, final int sourceLimit) {
+        final long x = decodeAt(source, sourceIndex, sourceLimit);
+        final char ch = (char)(x);
+        final int next = (int)(x >>> 16);
+        if (Character.isHighSurrogate(ch)
+                && (sourceLimit - next >= 3)
+                && (source[next] == (byte)(0xED))
+                && ((source[next + 1] & 0xF0) == 0xB0)
+                && ((source[next + 2] & 0xC0) == 0x80)) {
+            // 110110aaaabbbbbb 110111ccccdddddd as
+            // 11101101 1010aaaa 10bbbbbb 11101101 1011cccc 10dddddd
+            final char low = (char)(0xD000 | ((source[next + 1] & 0x3F) << 6) | (source[next + 2] & 0x3F));
+            return ((long)(next + 3) << 32) | Character.toCodePoint(ch, low);
+        }
+        return ((long)(next) << 32) | ch;
+    }
+
+    /**
+     * Decodes the sequence at the given index of the given source, which must
+     * be a complete encoding up to the given limit, as by
+     * {@link #decode(byte[], int, int, char[], int)}.
+     *
+     * @return  the decoded character in the low 16 bits, and the index of the
+     *          next sequence in the remaining bits
+     * @throws  InvalidModifiedUtf8Exception
+     *          if the sequence is malformed or incomplete
+     */
+    private static long decodeAt(final byte[] source, final int sourceIndex, final int sourceLimit) {
+        final byte a = source[sourceIndex];
+        switch ((a & 0xFF) >> 4) {
+            case 0: case 1: case 2: case 3: case 4: case 5: case 6: case 7: {
+                // first octet 0xxxxxxx
+                return ((long)(sourceIndex + 1) << 16) | a;
+            }
+            case 12: case 13: {
+                // first octet 110xxxxx
+                if (sourceLimit - sourceIndex < 2) {
+                    throw malformed(sourceLimit - sourceIndex, sourceIndex);
+                }
+                final byte b = source[sourceIndex + 1];
+                if ((b & 0xC0) != 0x80) {
+                    throw malformed(2, sourceIndex);
+                }
+                return ((long)(sourceIndex + 2) << 16) | ((a & 0x1F) << 6) | (b & 0x3F);
+            }
+            case 14: {
+                // first octet 1110xxxx
+                if (sourceLimit - sourceIndex < 2) {
+                    throw malformed(sourceLimit - sourceIndex, sourceIndex);
+                }
+                final byte b = source[sourceIndex + 1];
+                if ((b & 0xC0) != 0x80) {
+                    throw malformed(2, sourceIndex);
+                }
+                if (sourceLimit - sourceIndex < 3) {
+                    throw malformed(sourceLimit - sourceIndex, sourceIndex);
+                }
+                final byte c = source[sourceIndex + 2];
+                if ((c & 0xC0) != 0x80) {
+                    throw malformed(3, sourceIndex);
+                }
+                return ((long)(sourceIndex + 3) << 16) | ((a & 0x0F) << 12) | ((b & 0x3F) << 6) | (c & 0x3F);
+            }
+            default: {
+                // first octet 10xxxxxx or 1111xxxx
+                throw malformed(1, sourceIndex);
+            }
+        }
+    }
+
+    /**
+     * Reads a string in the format of {@link DataInput#readUTF()}: two octets
+     * of length, in big-endian order, followed by that many octets of the
+     * encoding.
+     * <p>
+     * Unlike {@link java.io.DataInputStream#readUTF(DataInput)}, which
+     * allocates new arrays for each string, this method reads the encoding
+     * into a scratch array that is reused by the current thread.
+     *
+     * @return  the decoded string
+     * @throws  java.io.EOFException
+     *          if the given input reaches its end before all octets are read
+     * @throws  IOException
+     *          if an I/O error occurs
+     * @throws  InvalidModifiedUtf8Exception
+     *          if the octets are not a valid encoding
+     */
+    public static String readUTF(final DataInput source) throws IOException {
+        final int length = source.readUnsignedShort();
+        final byte[] scratch = scratch(length);
+        source.readFully(scratch, 0, length);
+        return decode(scratch, 0, length);
+    }
+
+    /**
+     * Reads a string in the format of {@link DataInput#readUTF()} from the
+     * given buffer, starting at its position, as by
+     * {@link #decode(ByteBuffer, int, int)}.
+     *
+     * @return  the decoded string
+     * @throws  BufferUnderflowException
+     *          if the given buffer does not contain all octets, in which case
+     *          its position is unchanged
+     * @throws  InvalidModifiedUtf8Exception
+     *          if the octets are not a valid encoding, in which case the
+     *          position of the given buffer is unchanged, and the offset of
+     *          the exception is relative to that position
+     */
+    public static String readUTF(final ByteBuffer source) {
+        final int position = source.position();
+        if (source.remaining() < 2) {
+            throw new BufferUnderflowException();
+        }
+        final int length = (((source.get(position) & 0xFF) << 8) | (source.get(position + 1) & 0xFF));
+        if (source.remaining() - 2 < length) {
+            throw new BufferUnderflowException();
+        }
+        final String result;
+        try {
+            result = decode(source, position + 2, length);
+        } catch (final InvalidModifiedUtf8Exception e) {
+            throw new InvalidModifiedUtf8Exception((MalformedInputException)(e.getCause()), e.getOffset() - position);
+        }
+        source.position(position + 2 + length);
+        return result;
+    }
+
+    /**
+     * Writes the given string in the format of
+     * {@link DataOutput#writeUTF(String)}: two octets of length, in big-endian
+     * order, followed by that many octets of the encoding.
+     * <p>
+     * Unlike {@link java.io.DataOutputStream#writeUTF(String)}, which
+     * allocates a new array for each string (unless the output is a
+     * {@code DataOutputStream} and the string is short), this method encodes
+     * into a scratch array that is reused by the current thread, and writes it
+     * with a single invocation of {@link DataOutput#write(byte[], int, int)}.
+     *
+     * @throws  UTFDataFormatException
+     *          if the encoding is longer than 65535 octets, in which case no
+     *          octets are written
+     * @throws  IOException
+     *          if an I/O error occurs
+     */
+    public static void writeUTF(final String source, final DataOutput target) throws IOException {
+        final int length = utfLength(source);
+        final byte[] scratch = scratch(2 + length);
+        scratch[0] = (byte)(length >> 8);
+        scratch[1] = (byte)(length);
+        encode(source, 0, source.length(), scratch, 2);
+        target.write(scratch, 0, 2 + length);
+    }
+
+    /**
+     * Writes the given string in the format of
+     * {@link DataOutput#writeUTF(String)} to the given buffer, starting at its
+     * position.
+     *
+     * @throws  UTFDataFormatException
+     *          if the encoding is longer than 65535 octets, in which case no
+     *          octets are written
+     * @throws  BufferOverflowException
+     *          if the given buffer does not have room for all octets, in which
+     *          case no octets are written
+     * @throws  java.nio.ReadOnlyBufferException
+     *          if the given buffer is read-only
+     */
+    public static void writeUTF(final String source, final ByteBuffer target) throws UTFDataFormatException {
+        final int length = utfLength(source);
+        if (target.isReadOnly()) {
+            throw new ReadOnlyBufferException();
+        }
+        if (target.remaining() < 2 + length) {
+            throw new BufferOverflowException();
+        }
+        final int position = target.position();
+        if (target.hasArray()) {
+            final byte[] array = target.array();
+            final int index = target.arrayOffset() + position;
+            array[index] = (byte)(length >> 8);
+            array[index + 1] = (byte)(length);
+            encode(source, 0, source.length(), array, index + 2);
+            target.position(position + 2 + length);
+        } else {
+            final byte[] scratch = scratch(2 + length);
+            scratch[0] = (byte)(length >> 8);
+            scratch[1] = (byte)(length);
+            encode(source, 0, source.length(), scratch, 2);
+            target.put(scratch, 0, 2 + length);
+        }
+    }
+
+    private static int utfLength(final String source) throws UTFDataFormatException {
+        final long length = encodedLength(source);
+        if (length > MAX_UTF_LENGTH) {
+            throw new UTFDataFormatException("encoded string too long: " + length + " bytes");
+        }
+        return (int)(length);
+    }
+
+    /**
+     * @return  the scratch array of the current thread, if it has room for the
+     *          given number of octets; otherwise, a new scratch array for the
+     *          current thread that has room
+     */
+    private static byte[] scratch(final int length) {
+        byte[] scratch = SCRATCH.get();
+        if (scratch.length < length) {
+            // Grow geometrically, but never beyond the size of the largest
+            // encoding of the format of DataOutput.writeUTF.
+            scratch = new byte[Math.max(length, Math.min(2 * scratch.length, 2 + MAX_UTF_LENGTH))];
+            SCRATCH.set(scratch);
+        }
+        return scratch;
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+package mutf8;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CoderResult;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+
+/**
+ * Static methods for decoding modified UTF-8 from an asynchronous file
+ * channel, without blocking a thread while the file is read.
+ * <p>
+ * The file is read a block at a time into a direct buffer. Each block is
+ * decoded by an {@linkplain ModifiedUtf8IncrementalDecoder incremental
+ * decoder}, which keeps the octets of a sequence that is split by the end of
+ * a block, and the characters decoded from the block are passed to a
+ * consumer. The consumer returns a stage that completes when it has finished
+ * with the characters, and the next block is not read until then, so a slow
+ * consumer is never overrun, and at most one block of octets and one block of
+ * characters are held at a time.
+ * <p>
+ * The returned future can be composed with other futures, or, e.g., in a
+ * virtual thread, simply joined, which then blocks only that thread.
+ *
+ * @author  Nathan Ryan
+ * @see     ModifiedUtf8Reader
+ */
+public final class ModifiedUtf8AsyncDecoder {
+
+    /**
+     * The size of a block for which no size is given.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 1 << 16;
+
+    private ModifiedUtf8AsyncDecoder() {
+    }
+
+    /**
+     * Decodes the given channel, from the given position to its end, in
+     * blocks of the {@linkplain #DEFAULT_BLOCK_SIZE default size}.
+     *
+     * @return  a future that completes with the number of characters decoded
+     * @see     #decode(AsynchronousFileChannel, long, int, Function)
+     */
+    public static CompletableFuture<Long> decode(final AsynchronousFileChannel channel, final long position,
+                                                 final Function<? super CharBuffer, ? extends CompletionStage<?>> consumer) {
+        return decode(channel, position, DEFAULT_BLOCK_SIZE, consumer);
+    }
+
+    /**
+     * Decodes the given channel, from the given position to its end, in
+     * blocks of the given size, passing the characters decoded from each block
+     * to the given consumer.
+     * <p>
+     * The consumer is passed a buffer of characters, which it must not use
+     * after the stage that it returns has completed, since the buffer is then
+     * reused for the next block. The consumer is not passed an empty buffer,
+     * and is invoked by one thread at a time, in the order of the characters.
+     * <p>
+     * The returned future completes exceptionally with a
+     * {@link java.nio.charset.MalformedInputException} if the channel is not a
+     * valid encoding, once the characters that precede the malformed sequence
+     * have been passed to the consumer; with an {@link java.io.IOException} if
+     * the channel cannot be read; or with the exception of the stage returned
+     * by the consumer. If it is cancelled, no more blocks are read. The channel
+     * is not closed.
+     *
+     * @return  a future that completes with the number of characters decoded
+     * @throws  IllegalArgumentException
+     *          if the given position is negative, or if the given size is less
+     *          than one
+     */
+    public static CompletableFuture<Long> decode(final AsynchronousFileChannel channel, final long position, final int blockSize,
+                                                 final Function<? super CharBuffer, ? extends CompletionStage<?>> consumer) {
+        if (position < 0) {
+            throw new IllegalArgumentException("Negative position: " + position);
+        }
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Illegal block size: " + blockSize);
+        }
+        final Pipeline pipeline = new Pipeline(Objects.requireNonNull(channel), position, blockSize, Objects.requireNonNull(consumer));
+        pipeline.read();
+        return pipeline.result;
+    }
+
+    private static final class Pipeline implements CompletionHandler<Integer, Void> {
+
+        private final AsynchronousFileChannel channel;
+
+        private final Function<? super CharBuffer, ? extends CompletionStage<?>> consumer;
+
+        private final ByteBuffer source;
+
+        private final CharBuffer target;
+
+        private final ModifiedUtf8IncrementalDecoder decoder = new ModifiedUtf8IncrementalDecoder();
+
+        private final CompletableFuture<Long> result = new CompletableFuture<>();
+
+        // the position of the channel from which the next block is read
+        private long position;
+
+        private long count;
+
+        Pipeline(final AsynchronousFileChannel channel, final long position, final int blockSize,
+                 final Function<? super CharBuffer, ? extends CompletionStage<?>> consumer) {
+            this.channel = channel;
+            this.position = position;
+            this.consumer = consumer;
+            this.source = ByteBuffer.allocateDirect(blockSize);
+            // Each character is decoded from at least one octet, of which at
+            // most one is pending from the previous block, so the whole block
+            // is always decoded.
+            this.target = CharBuffer.allocate(blockSize + 1);
+        }
+
+        void read() {
+            if (result.isDone()) {
+                return;
+            }
+            source.clear();
+            try {
+                channel.read(source, position, null, this);
+            } catch (final RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        }
+
+        @Override
+        public void completed(final Integer n, final Void attachment) {
+            try {
+                if (n < 0) {
+                    final CoderResult finished = decoder.finish();
+                    if (finished.isError()) {
+                        finished.throwException();
+                    }
+                    result.complete(count);
+                    return;
+                }
+                position += n;
+                source.flip();
+                final CoderResult decoded = decoder.decode(source, target);
+                if (target.position() == 0) {
+                    if (decoded.isError()) {
+                        decoded.throwException();
+                    }
+                    // The block held only the start of a sequence.
+                    read();
+                    return;
+                }
+                // The characters that precede a malformed sequence are passed
+                // to the consumer before the future completes exceptionally.
+                target.flip();
+                count += target.remaining();
+                consumer.apply(target).whenComplete((ignored, e) -> {
+                    if (e != null) {
+                        result.completeExceptionally(((e instanceof CompletionException) && (e.getCause() != null)) ? e.getCause() : e);
+                    } else if (decoded.isError()) {
+                        fail(decoded);
+                    } else {
+                        target.clear();
+                        read();
+                    }
+                });
+            } catch (final Throwable e) {
+                result.completeExceptionally(e);
+            }
+        }
+
+        private void fail(final CoderResult decoded) {
+            try {
+                decoded.throwException();
+            } catch (final CharacterCodingException e) {
+                result.completeExceptionally(e);
+            }
+        }
+
+        @Override
+        public void failed(final Throwable e, final Void attachment) {
+            result.completeExceptionally(e);
+        }
+    }
+}
@@ -110,6 +110,11 @@ public class ModifiedUtf8Charset extends Charset {
 
     private static final String[] ALIASES = null;
 
+    // The length of the array through which a buffer that has no accessible
+    // array is transcoded: long enough that the cost of a chunk is dominated
+    // by transcoding, and short enough to remain in the first-level cache.
+    private static final int STAGING_LENGTH = 4096;
+
     public ModifiedUtf8Charset() {
         super(CANONICAL_NAME, ALIASES);
     }
@@ -126,16 +131,238 @@ public class ModifiedUtf8Charset extends Charset {
     }
 
     static class Decoder extends CharsetDecoder {
+
+        // whether an unpaired surrogate is malformed
+        private final boolean strict;
+
+        // the array through which a source that has no accessible array is
+        // decoded, allocated on first use
+        private byte[] staging;
+
+        Decoder(final ModifiedUtf8Charset charset) {
+            this(charset, false);
+        }
+
         // The average-characters-per-byte is actually something less than one.
         // However, a value of 1.0 will allow the decoder to allocate a
         // precisely sized character buffer in the common case of an encoding
         // that encode only 7-bit (non-null) character values.
-        Decoder(final ModifiedUtf8Charset charset) {
+        Decoder(final ModifiedUtf8Charset charset, final boolean strict) {
             super(charset, 1.0F, 1.0F);
+            this.strict = strict;
         }
 
         @Override
         protected CoderResult decodeLoop(final ByteBuffer source, final CharBuffer target) {
+            if (source.hasArray() && target.hasArray()) {
+                return decodeArrayLoop(source, target);
+            } else if (target.hasArray()) {
+                return decodeStagedLoop(source, target);
+            } else {
+                return decodeBufferLoop(source, target);
+            }
+        }
+
+        private CoderResult decodeStagedLoop(final ByteBuffer source, final CharBuffer target) {
+            // The source has no accessible array, as is the case for a direct
+            // buffer, each octet of which the buffer loop would read by a
+            // separately bounds-checked native access. Instead, copy the source
+            // into an array a chunk at a time, by a bulk get, which for a
+            // direct buffer is a single copy of native memory, and decode each
+            // chunk by the array loop, which decodes runs of one-octet
+            // sequences a word at a time.
+            //
+            // The source is then advanced past only the octets that the array
+            // loop consumed, so the positions and the results are exactly
+            // those of the array loop. A sequence that is split by the end of a
+            // chunk is left unused by the array loop, and is copied again at
+            // the start of the next chunk.
+            //
+            // The array loop consumes no more than three octets for each
+            // character for which the target has room, so no more than that
+            // is copied, which spares a caller that decodes a few characters
+            // at a time the copy of a whole chunk; but at least the longest
+            // sequence, a surrogate pair of a strict decoder, is copied, so
+            // that the array loop always makes progress.
+            byte[] array = staging;
+            if (array == null) {
+                array = new byte[STAGING_LENGTH];
+                staging = array;
+            }
+            while (true) {
+                final int position = source.position();
+                final int remaining = source.limit() - position;
+                final int room = Math.min(target.remaining(), array.length);
+                final int n = Math.min(remaining, Math.min(array.length, Math.max(6, 3 * room)));
+                source.get(array, 0, n);
+                final ByteBuffer chunk = ByteBuffer.wrap(array, 0, n);
+                final CoderResult result = decodeArrayLoop(chunk, target);
+                source.position(position + chunk.position());
+                if (!result.isUnderflow() || (n == remaining)) {
+                    return result;
+                }
+            }
+        }
+
+        private CoderResult decodeArrayLoop(final ByteBuffer source, final CharBuffer target) {
+            // Work directly on the backing arrays, rather than invoking the
+            // relative get and put methods for each octet and each character.
+            // The indexes are explicitly bounded, so that the end of the source
+            // or of the target is detected by a comparison rather than by an
+            // exception, and the positions of both buffers are written back
+            // exactly once, when the loop terminates.
+            //
+            // The order of the checks is the same as that of the buffer loop:
+            // An incomplete sequence is detected before a malformed sequence,
+            // which is detected before a lack of room in the target.
+            final byte[] sourceArray = source.array();
+            final int sourceOffset = source.arrayOffset();
+            final int sourceLimit = sourceOffset + source.limit();
+            int sourceIndex = sourceOffset + source.position();
+            final char[] targetArray = target.array();
+            final int targetOffset = target.arrayOffset();
+            final int targetLimit = targetOffset + target.limit();
+            int targetIndex = targetOffset + target.position();
+            CoderResult result = CoderResult.UNDERFLOW;
+            loop:
+            while (sourceIndex < sourceLimit) {
+                final byte a = sourceArray[sourceIndex];
+                // See the buffer loop regarding the switch expression.
+                switch ((a & 0xFF) >> 4) {
+                    case 0: case 1: case 2: case 3: case 4: case 5: case 6: case 7: {
+                        // first octet 0xxxxxxx
+                        // 000000000aaaaaaa as 0aaaaaaa
+                        if (targetIndex == targetLimit) {
+                            result = CoderResult.OVERFLOW;
+                            break loop;
+                        }
+                        // Decode this octet along with the rest of the run of
+                        // one-octet sequences that it begins, in bulk. A null
+                        // octet is decoded as the null character either way.
+                        final int n = Ascii.decode(sourceArray, sourceIndex, targetArray, targetIndex,
+                                Math.min(sourceLimit - sourceIndex, targetLimit - targetIndex));
+                        sourceIndex += n;
+                        targetIndex += n;
+                        break;
+                    }
+                    case 12: case 13: {
+                        // first octet 110xxxxx
+                        // 00000aaaaabbbbbb as 110aaaaa 10bbbbbb
+                        if (sourceLimit - sourceIndex < 2) {
+                            // Leave the octets of a partial character unused.
+                            break loop;
+                        }
+                        final byte b = sourceArray[sourceIndex + 1];
+                        if ((b & 0xC0) != 0x80) {
+                            sourceIndex += 2;
+                            result = CoderResult.malformedForLength(2);
+                            break loop;
+                        }
+                        if (targetIndex == targetLimit) {
+                            result = CoderResult.OVERFLOW;
+                            break loop;
+                        }
+                        targetArray[targetIndex++] = (char)(((a & 0x1F) << 6) | (b & 0x3F));
+                        sourceIndex += 2;
+                        break;
+                    }
+                    case 14: {
+                        // first octet 1110xxxx
+                        // aaaabbbbbbcccccc as 1110aaaa 10bbbbbb 10cccccc
+                        if (sourceLimit - sourceIndex < 2) {
+                            // Leave the octets of a partial character unused.
+                            break loop;
+                        }
+                        final byte b = sourceArray[sourceIndex + 1];
+                        if ((b & 0xC0) != 0x80) {
+                            sourceIndex += 2;
+                            result = CoderResult.malformedForLength(2);
+                            break loop;
+                        }
+                        if (sourceLimit - sourceIndex < 3) {
+                            // Leave the octets of a partial character unused.
+                            break loop;
+                        }
+                        final byte c = sourceArray[sourceIndex + 2];
+                        if ((c & 0xC0) != 0x80) {
+                            sourceIndex += 3;
+                            result = CoderResult.malformedForLength(3);
+                            break loop;
+                        }
+                        final char ch = (char)(((a & 0x0F) << 12) | ((b & 0x3F) << 6) | (c & 0x3F));
+                        if (strict && Character.isSurrogate(ch)) {
+                            // A high surrogate is decoded together with the low
+                            // surrogate that must immediately follow it, as a
+                            // six-octet sequence; any other surrogate is
+                            // unpaired, and is malformed.
+                            // 110110aaaabbbbbb 110111ccccdddddd as
+                            // 11101101 1010aaaa 10bbbbbb 11101101 1011cccc 10dddddd
+                            if (Character.isLowSurrogate(ch)) {
+                                sourceIndex += 3;
+                                result = CoderResult.malformedForLength(3);
+                                break loop;
+                            }
+                            if (sourceLimit - sourceIndex < 4) {
+                                // Leave the octets of a partial pair unused.
+                                break loop;
+                            }
+                            if (sourceArray[sourceIndex + 3] != (byte)(0xED)) {
+                                sourceIndex += 3;
+                                result = CoderResult.malformedForLength(3);
+                                break loop;
+                            }
+                            if (sourceLimit - sourceIndex < 5) {
+                                break loop;
+                            }
+                            final byte e = sourceArray[sourceIndex + 4];
+                            if ((e & 0xF0) != 0xB0) {
+                                sourceIndex += 3;
+                                result = CoderResult.malformedForLength(3);
+                                break loop;
+                            }
+                            if (sourceLimit - sourceIndex < 6) {
+                                break loop;
+                            }
+                            final byte f = sourceArray[sourceIndex + 5];
+                            if ((f & 0xC0) != 0x80) {
+                                sourceIndex += 3;
+                                result = CoderResult.malformedForLength(3);
+                                break loop;
+                            }
+                            if (targetLimit - targetIndex < 2) {
+                                result = CoderResult.OVERFLOW;
+                                break loop;
+                            }
+                            targetArray[targetIndex++] = ch;
+                            targetArray[targetIndex++] = (char)(0xD000 | ((e & 0x3F) << 6) | (f & 0x3F));
+                            sourceIndex += 6;
+                            break;
+                        }
+                        if (targetIndex == targetLimit) {
+                            result = CoderResult.OVERFLOW;
+                            break loop;
+                        }
+                        targetArray[targetIndex++] = ch;
+                        sourceIndex += 3;
+                        break;
+                    }
+                 // case 8: case 9: case 10: case 11:
+                        // first octet 10xxxxxx
+                 // case 15:
+                        // first octet 1111xxxx
+                    default: {
+                        sourceIndex += 1;
+                        result = CoderResult.malformedForLength(1);
+                        break loop;
+                    }
+                }
+            }
+            source.position(sourceIndex - sourceOffset);
+            target.position(targetIndex - targetOffset);
+            return result;
+        }
+
+        private CoderResult decodeBufferLoop(final ByteBuffer source, final CharBuffer target) {
             // Track the position of the source buffer, so that consumed but
             // unused octets can be "put back". The value of this variable is
             // explicitly incremented each time a character is successfully
@@ -191,9 +418,36 @@ public class ModifiedUtf8Charset extends Charset {
                             if ((c & 0xC0) != 0x80) {
                                 return CoderResult.malformedForLength(3);
                             }
-                         // final char ch = (char)(((a & 0x0F) << 12) | ((b & 0x3F) << 6) | (c & 0x3F));
-                         // target.put(ch);
-                            target.put((char)(((a & 0x0F) << 12) | ((b & 0x3F) << 6) | (c & 0x3F)));
+                            final char ch = (char)(((a & 0x0F) << 12) | ((b & 0x3F) << 6) | (c & 0x3F));
+                            if (strict && Character.isSurrogate(ch)) {
+                                // See the array loop regarding surrogates.
+                                if (Character.isLowSurrogate(ch)) {
+                                    return CoderResult.malformedForLength(3);
+                                }
+                                final byte d = source.get();
+                                if (d != (byte)(0xED)) {
+                                    source.position(sourcePosition + 3);
+                                    return CoderResult.malformedForLength(3);
+                                }
+                                final byte e = source.get();
+                                if ((e & 0xF0) != 0xB0) {
+                                    source.position(sourcePosition + 3);
+                                    return CoderResult.malformedForLength(3);
+                                }
+                                final byte f = source.get();
+                                if ((f & 0xC0) != 0x80) {
+                                    source.position(sourcePosition + 3);
+                                    return CoderResult.malformedForLength(3);
+                                }
+                                if (target.remaining() < 2) {
+                                    throw new BufferOverflowException();
+                                }
+                                target.put(ch)
+                                      .put((char)(0xD000 | ((e & 0x3F) << 6) | (f & 0x3F)));
+                                sourcePosition += 6;
+                                break;
+                            }
+                            target.put(ch);
                             sourcePosition += 3;
                             break;
                         }
@@ -223,73 +477,208 @@ public class ModifiedUtf8Charset extends Charset {
         return new Decoder(this);
     }
 
+    /**
+     * Constructs a new decoder for this charset that also validates the
+     * pairing of surrogates.
+     * <p>
+     * The encoder, like {@link java.io.DataOutput#writeUTF(String)}, encodes
+     * each surrogate of a supplementary character as a separate three-octet
+     * sequence, and encodes an unpaired surrogate in the same way. The decoder
+     * returned by {@link #newDecoder()} decodes any such sequence as a
+     * surrogate. The decoder returned by this method instead decodes a
+     * high-surrogate sequence only together with an immediately following
+     * low-surrogate sequence, as one six-octet sequence, and reports any
+     * other surrogate sequence as malformed input of length three.
+     *
+     * @return  a new strict decoder for this charset
+     */
+    public CharsetDecoder newStrictDecoder() {
+        return new Decoder(this, true);
+    }
+
     static class Encoder extends CharsetEncoder {
 
+        // the array through which the octets for a target that has no
+        // accessible array are encoded, allocated on first use
+        private byte[] staging;
+
         Encoder(final ModifiedUtf8Charset charset) {
             super(charset, 1.1F, 3.0F);
         }
 
         @Override
         protected CoderResult encodeLoop(final CharBuffer source, final ByteBuffer target) {
-            // Track the position of the source buffer, so that a consumed but
-            // unused character can be "put back". The value of this variable is
-            // explicitly incremented each time a character is successfully
-            // encoded, in order to avoid having to query the source buffer via
-            // an unnecessary method invocation inside the loop.
-            int sourcePosition = source.position();
+            if (source.hasArray() && target.hasArray()) {
+                return encodeArrayLoop(source, target);
+            } else if (source.hasArray()) {
+                return encodeStagedLoop(source, target);
+            } else {
+                return encodeBufferLoop(source, target);
+            }
+        }
+
+        private CoderResult encodeStagedLoop(final CharBuffer source, final ByteBuffer target) {
+            // The target has no accessible array, as is the case for a direct
+            // buffer. Encode the source by the array loop into an array a chunk
+            // at a time, and copy each chunk into the target by a bulk put,
+            // which for a direct buffer is a single copy to native memory.
+            // See the decoder regarding the staged loop.
+            //
+            // A chunk is no larger than the remaining capacity of the target,
+            // so an overflow of the last chunk is an overflow of the target.
+            byte[] array = staging;
+            if (array == null) {
+                array = new byte[STAGING_LENGTH];
+                staging = array;
+            }
             while (true) {
-                try {
-                    final char ch = source.get();
-                    if (ch == 0) {
-                        // 00000000 00000000 as 11000000 10000000
-                        if (target.remaining() < 2) {
-                            // Write no octets unless all octets fit.
-                            throw new BufferOverflowException();
-                        }
-                     // final byte a = (byte)(0xC0);
-                     // final byte b = (byte)(0x80);
-                     // target.put(a).put(b);
-                        target.put((byte)(0xC0))
-                              .put((byte)(0x80));
-                    } else if (ch < (1 << 7)) {
-                        // 00000000 0aaaaaaa as 0aaaaaaa
-                     // final byte a = (byte)(ch);
-                     // target.put(a);
-                        target.put((byte)(ch));
-                    } else if (ch < (1 << 11)) {
-                        // 00000aaa aabbbbbb as 110aaaaa 10bbbbbb
-                        if (target.remaining() < 2) {
-                            // Write no octets unless all octets fit.
-                            throw new BufferOverflowException();
-                        }
-                     // final byte a = (byte)(0xC0 | (ch >> 6));
-                     // final byte b = (byte)(0x80 | (ch & 0x3F));
-                     // target.put(a).put(b);
-                        target.put((byte)(0xC0 | (ch >> 6)))
-                              .put((byte)(0x80 | (ch & 0x3F)));
-                    } else {
-                        // aaaabbbb bbcccccc as 1110aaaa 10bbbbbb 10cccccc
-                        if (target.remaining() < 3) {
-                            // Write no octets unless all octets fit.
-                            throw new BufferOverflowException();
-                        }
-                     // final byte a = (byte)(0xE0 | (ch >> 12));
-                     // final byte b = (byte)(0x80 | ((ch >> 6) & 0x3F));
-                     // final byte c = (byte)(0x80 | (ch & 0x3F));
-                     // target.put(a).put(b).put(c);
-                        target.put((byte)(0xE0 | (ch >> 12)))
-                              .put((byte)(0x80 | ((ch >> 6) & 0x3F)))
-                              .put((byte)(0x80 | (ch & 0x3F)));
+                final int remaining = target.remaining();
+                final int n = Math.min(remaining, array.length);
+                final ByteBuffer chunk = ByteBuffer.wrap(array, 0, n);
+                final CoderResult result = encodeArrayLoop(source, chunk);
+                target.put(array, 0, chunk.position());
+                if (!result.isOverflow() || (n == remaining)) {
+                    return result;
+                }
+            }
+        }
+
+        private CoderResult encodeArrayLoop(final CharBuffer source, final ByteBuffer target) {
+            // Work directly on the backing arrays, rather than invoking the
+            // relative get and put methods for each character and each octet.
+            // The indexes are explicitly bounded, so that the end of the source
+            // or of the target is detected by a comparison rather than by an
+            // exception, and the positions of both buffers are written back
+            // exactly once, when the loop terminates.
+            final char[] sourceArray = source.array();
+            final int sourceOffset = source.arrayOffset();
+            final int sourceLimit = sourceOffset + source.limit();
+            int sourceIndex = sourceOffset + source.position();
+            final byte[] targetArray = target.array();
+            final int targetOffset = target.arrayOffset();
+            final int targetLimit = targetOffset + target.limit();
+            int targetIndex = targetOffset + target.position();
+            CoderResult result = CoderResult.UNDERFLOW;
+            while (sourceIndex < sourceLimit) {
+                final char ch = sourceArray[sourceIndex];
+                if (ch == 0) {
+                    // 00000000 00000000 as 11000000 10000000
+                    if (targetLimit - targetIndex < 2) {
+                        // Write no octets unless all octets fit.
+                        result = CoderResult.OVERFLOW;
+                        break;
                     }
-                    sourcePosition++;
-                } catch (final BufferUnderflowException e) {
-                    return CoderResult.UNDERFLOW;
-                } catch (final BufferOverflowException e) {
-                    // "Put back" an unused character.
-                    source.position(sourcePosition);
-                    return CoderResult.OVERFLOW;
+                    targetArray[targetIndex++] = (byte)(0xC0);
+                    targetArray[targetIndex++] = (byte)(0x80);
+                } else if (ch < (1 << 7)) {
+                    // 00000000 0aaaaaaa as 0aaaaaaa
+                    if (targetIndex == targetLimit) {
+                        result = CoderResult.OVERFLOW;
+                        break;
+                    }
+                    // Encode this character along with the rest of the run of
+                    // one-octet characters that it begins, in bulk.
+                    final int n = Ascii.encode(sourceArray, sourceIndex, targetArray, targetIndex,
+                            Math.min(sourceLimit - sourceIndex, targetLimit - targetIndex));
+                    sourceIndex += n;
+                    targetIndex += n;
+                    continue;
+                } else if (ch < (1 << 11)) {
+                    // 00000aaa aabbbbbb as 110aaaaa 10bbbbbb
+                    if (targetLimit - targetIndex < 2) {
+                        // Write no octets unless all octets fit.
+                        result = CoderResult.OVERFLOW;
+                        break;
+                    }
+                    targetArray[targetIndex++] = (byte)(0xC0 | (ch >> 6));
+                    targetArray[targetIndex++] = (byte)(0x80 | (ch & 0x3F));
+                } else {
+                    // aaaabbbb bbcccccc as 1110aaaa 10bbbbbb 10cccccc
+                    if (targetLimit - targetIndex < 3) {
+                        // Write no octets unless all octets fit.
+                        result = CoderResult.OVERFLOW;
+                        break;
+                    }
+                    targetArray[targetIndex++] = (byte)(0xE0 | (ch >> 12));
+                    targetArray[targetIndex++] = (byte)(0x80 | ((ch >> 6) & 0x3F));
+                    targetArray[targetIndex++] = (byte)(0x80 | (ch & 0x3F));
+                }
+                sourceIndex++;
+            }
+            source.position(sourceIndex - sourceOffset);
+            target.position(targetIndex - targetOffset);
+            return result;
+        }
+
+        private CoderResult encodeBufferLoop(final CharBuffer source, final ByteBuffer target) {
+            // Compute the bounds of the source and the remaining capacity of
+            // the target up front, so that the end of either is detected by a
+            // comparison rather than by an exception. The source is read by
+            // absolute index, and its position is written back exactly once,
+            // when the loop terminates; a character that does not fit is thus
+            // never consumed, and need not be "put back".
+            final int sourceLimit = source.limit();
+            int sourcePosition = source.position();
+            int targetRemaining = target.remaining();
+            CoderResult result = CoderResult.UNDERFLOW;
+            while (sourcePosition < sourceLimit) {
+                final char ch = source.get(sourcePosition);
+                if (ch == 0) {
+                    // 00000000 00000000 as 11000000 10000000
+                    if (targetRemaining < 2) {
+                        // Write no octets unless all octets fit.
+                        result = CoderResult.OVERFLOW;
+                        break;
+                    }
+                 // final byte a = (byte)(0xC0);
+                 // final byte b = (byte)(0x80);
+                 // target.put(a).put(b);
+                    target.put((byte)(0xC0))
+                          .put((byte)(0x80));
+                    targetRemaining -= 2;
+                } else if (ch < (1 << 7)) {
+                    // 00000000 0aaaaaaa as 0aaaaaaa
+                    if (targetRemaining < 1) {
+                        result = CoderResult.OVERFLOW;
+                        break;
+                    }
+                 // final byte a = (byte)(ch);
+                 // target.put(a);
+                    target.put((byte)(ch));
+                    targetRemaining -= 1;
+                } else if (ch < (1 << 11)) {
+                    // 00000aaa aabbbbbb as 110aaaaa 10bbbbbb
+                    if (targetRemaining < 2) {
+                        // Write no octets unless all octets fit.
+                        result = CoderResult.OVERFLOW;
+                        break;
+                    }
+                 // final byte a = (byte)(0xC0 | (ch >> 6));
+                 // final byte b = (byte)(0x80 | (ch & 0x3F));
+                 // target.put(a).put(b);
+                    target.put((byte)(0xC0 | (ch >> 6)))
+                          .put((byte)(0x80 | (ch & 0x3F)));
+                    targetRemaining -= 2;
+                } else {
+                    // aaaabbbb bbcccccc as 1110aaaa 10bbbbbb 10cccccc
+                    if (targetRemaining < 3) {
+                        // Write no octets unless all octets fit.
+                        result = CoderResult.OVERFLOW;
+                        break;
+                    }
+                 // final byte a = (byte)(0xE0 | (ch >> 12));
+                 // final byte b = (byte)(0x80 | ((ch >> 6) & 0x3F));
+                 // final byte c = (byte)(0x80 | (ch & 0x3F));
+                 // target.put(a).put(b).put(c);
+                    target.put((byte)(0xE0 | (ch >> 12)))
+                          .put((byte)(0x80 | ((ch >> 6) & 0x3F)))
+                          .put((byte)(0x80 | (ch & 0x3F)));
+                    targetRemaining -= 3;
                 }
+                sourcePosition++;
             }
+            source.position(sourcePosition);
+            return result;
         }
     }
 
@@ -0,0 +1,180 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+package mutf8;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+
+/**
+ * A decoder of modified UTF-8 to which an encoding is pushed in chunks of any
+ * size, and which keeps the octets of a sequence that is split by the end of a
+ * chunk, so that the caller never has to compact or re-read the source.
+ * <p>
+ * A {@link CharsetDecoder} leaves the octets of a split sequence unused, in the
+ * source, and expects them to be presented again at the start of the next
+ * source, which requires the caller to compact its buffer before reading more
+ * octets into it. This decoder instead moves such octets into an internal
+ * array, so that a result of underflow always means that the whole source was
+ * consumed. A source may then be refilled from its start, e.g., as a
+ * fixed-size buffer into which a {@link java.nio.channels.ReadableByteChannel}
+ * reads, or be discarded, e.g., as a chunk received from a network.
+ * <p>
+ * At most two octets are pending at a time, since a sequence is at most three
+ * octets long, or at most five, for a strict decoder, which decodes a pair of
+ * surrogates as one six-octet sequence.
+ * <p>
+ * Instances of this class are not safe for use by multiple concurrent
+ * threads.
+ *
+ * @author  Nathan Ryan
+ * @see     ModifiedUtf8Charset#newDecoder()
+ */
+public final class ModifiedUtf8IncrementalDecoder {
+
+    private final CharsetDecoder decoder;
+
+    // the octets of a partial sequence at the end of the previous source
+    private final byte[] pending;
+
+    private int pendingLength;
+
+    // the pending octets, followed by the next octets of the source, from
+    // which the pending sequence is completed
+    private final byte[] joined;
+
+    /**
+     * Constructs a new incremental decoder that decodes any surrogate sequence
+     * as a surrogate, like the decoder returned by
+     * {@link ModifiedUtf8Charset#newDecoder()}.
+     */
+    public ModifiedUtf8IncrementalDecoder() {
+        this(false);
+    }
+
+    /**
+     * Constructs a new incremental decoder that, if the given flag is set,
+     * decodes a surrogate sequence only as part of a pair, like the decoder
+     * returned by {@link ModifiedUtf8Charset#newStrictDecoder()}.
+     */
+    public ModifiedUtf8IncrementalDecoder(final boolean strict) {
+        final ModifiedUtf8Charset charset = new ModifiedUtf8Charset();
+        this.decoder = (strict ? charset.newStrictDecoder() : charset.newDecoder());
+        // the length of the longest sequence
+        final int maxLength = (strict ? 6 : 3);
+        this.pending = new byte[maxLength - 1];
+        this.joined = new byte[maxLength];
+    }
+
+    /**
+     * Decodes as many octets as possible from the given source into the given
+     * target, after the octets that are pending from the previous source.
+     * <p>
+     * The result is one of the following:
+     * <ul>
+     * <li>{@link CoderResult#UNDERFLOW}, if the whole source was consumed. The
+     *     octets of a partial sequence at the end of the source are pending,
+     *     and the source has no remaining octets.
+     * <li>{@link CoderResult#OVERFLOW}, if the target has no room for the next
+     *     character. The remaining octets of the source should be presented
+     *     again once the target has been drained.
+     * <li>A malformed-input result, if the next sequence is malformed. The
+     *     octets of the malformed sequence, of which the result's length is
+     *     the number, are consumed, so that decoding can resume with the
+     *     remaining octets of the source. Some of those octets may have been
+     *     pending from the previous source.
+     * </ul>
+     *
+     * @return  the result of decoding
+     */
+    public CoderResult decode(final ByteBuffer source, final CharBuffer target) {
+        if (pendingLength > 0) {
+            final CoderResult result = decodePending(source, target);
+            if (result != null) {
+                return result;
+            }
+        }
+        final CoderResult result = decoder.decode(source, target, false);
+        if (result.isUnderflow()) {
+            // The decoder leaves only the octets of a partial sequence unused.
+            pendingLength = source.remaining();
+            source.get(pending, 0, pendingLength);
+        }
+        return result;
+    }
+
+    /**
+     * Decodes the pending sequence, completed by the next octets of the given
+     * source.
+     *
+     * @return  the result of decoding, or {@code null} if the pending sequence
+     *          was decoded and decoding should continue with the given source
+     */
+    private CoderResult decodePending(final ByteBuffer source, final CharBuffer target) {
+        final int position = source.position();
+        final int p = pendingLength;
+        final int k = Math.min(source.remaining(), joined.length - p);
+        System.arraycopy(pending, 0, joined, 0, p);
+        for (int i = 0; i < k; i++) {
+            joined[p + i] = source.get(position + i);
+        }
+        final ByteBuffer in = ByteBuffer.wrap(joined, 0, p + k);
+        final CoderResult result = decoder.decode(in, target, false);
+        final int consumed = in.position();
+        if (consumed == 0) {
+            if (result.isUnderflow()) {
+                // The joined octets are not the longest sequence, so the
+                // source was exhausted before the sequence was complete.
+                System.arraycopy(joined, p, pending, p, k);
+                pendingLength = p + k;
+                source.position(position + k);
+            }
+            return result;
+        }
+        if (consumed < p) {
+            // Only a malformed sequence can end within the pending octets, as
+            // a strict decoder reports a high-surrogate sequence that is not
+            // followed by a low-surrogate sequence.
+            System.arraycopy(pending, consumed, pending, 0, p - consumed);
+            pendingLength = p - consumed;
+            return result;
+        }
+        // Any octets of the source that follow the pending sequence, and
+        // that were not consumed along with it, are decoded from the source.
+        pendingLength = 0;
+        source.position(position + consumed - p);
+        return (result.isUnderflow() ? null : result);
+    }
+
+    /**
+     * Ends the input, after which no more octets are pending.
+     *
+     * @return  {@link CoderResult#UNDERFLOW}, if no octets were pending; a
+     *          malformed-input result, of which the length is the number of
+     *          pending octets, otherwise
+     */
+    public CoderResult finish() {
+        final int n = pendingLength;
+        reset();
+        return ((n == 0) ? CoderResult.UNDERFLOW : CoderResult.malformedForLength(n));
+    }
+
+    /**
+     * @return  the number of octets of a partial sequence that are pending
+     *          from the previous source
+     */
+    public int pendingLength() {
+        return pendingLength;
+    }
+
+    /**
+     * Resets this decoder, discarding any pending octets.
+     */
+    public void reset() {
+        pendingLength = 0;
+        decoder.reset();
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+package mutf8;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache of the decodings of encodings of modified UTF-8, which
+ * returns the same string for each encoding of the same characters for as long
+ * as that string remains in the cache.
+ * <p>
+ * An encoding is looked up by its {@linkplain ModifiedUtf8#hashCode(byte[],
+ * int, int) hash code} and {@linkplain ModifiedUtf8#contentEquals(byte[], int,
+ * int, CharSequence) compared} with the cached strings without being decoded,
+ * so an encoding that is found in the cache is never decoded. This suits the
+ * names and descriptors of the constant pools of {@code class} files, which
+ * are repeated many times across a large number of files.
+ * <p>
+ * The cache is an open-addressing table of a fixed number of slots, in which
+ * each encoding can be stored only in one of a small set of slots selected by
+ * its hash code. When every slot of the set is occupied, one of them is evicted
+ * by the CLOCK algorithm: the first slot, in round-robin order, whose string
+ * has not been found since the hand last passed it. The sets are guarded by a
+ * fixed number of locks, so that threads interning different encodings rarely
+ * contend; an encoding that is not found is decoded without holding a lock.
+ * <p>
+ * The numbers of hits, misses and evictions are counted, so that the capacity
+ * of the cache can be tuned for a workload.
+ *
+ * @author  Nathan Ryan
+ */
+public final class ModifiedUtf8Interner {
+
+    // the number of slots in which an encoding can be stored
+    private static final int WAYS = 8;
+
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private final int setMask;
+
+    private final int[] hashes;
+
+    private final String[] strings;
+
+    private final boolean[] referenced;
+
+    // the next slot of each set to be examined for eviction
+    private final byte[] hands;
+
+    private final Object[] locks;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Creates an empty cache that has room for at least the given number of
+     * strings.
+     *
+     * @throws  IllegalArgumentException
+     *          if the given capacity is less than one or greater than
+     *          2<sup>30</sup>
+     */
+    public ModifiedUtf8Interner(final int capacity) {
+        if ((capacity < 1) || (capacity > MAX_CAPACITY)) {
+            throw new IllegalArgumentException("Illegal capacity: " + capacity);
+        }
+        final int sets = powerOfTwoAtLeast((capacity + WAYS - 1) / WAYS);
+        this.setMask = sets - 1;
+        this.hashes = new int[sets * WAYS];
+        this.strings = new String[sets * WAYS];
+        this.referenced = new boolean[sets * WAYS];
+        this.hands = new byte[sets];
+        this.locks = new Object[Math.min(sets, powerOfTwoAtLeast(4 * Runtime.getRuntime().availableProcessors()))];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    private static int powerOfTwoAtLeast(final int n) {
+        return (n <= 1) ? 1 : Integer.highestOneBit(n - 1) << 1;
+    }
+
+    /**
+     * @return  the number of strings for which this cache has room
+     */
+    public int capacity() {
+        return strings.length;
+    }
+
+    /**
+     * Returns the decoding of the given range of the given array, from this
+     * cache if an equal string is cached, or otherwise by decoding the given
+     * range and caching the result.
+     *
+     * @return  the decoded string
+     * @throws  IndexOutOfBoundsException
+     *          if the given range is out of the bounds of the given array
+     * @throws  InvalidModifiedUtf8Exception
+     *          if the given range is not a valid encoding
+     */
+    public String intern(final byte[] source, final int offset, final int length) {
+        final int hash = ModifiedUtf8.hashCode(source, offset, length);
+        final int set = (hash ^ (hash >>> 16)) & setMask;
+        final int base = set * WAYS;
+        final Object lock = locks[set & (locks.length - 1)];
+        synchronized (lock) {
+            for (int i = base; i < base + WAYS; i++) {
+                final String string = strings[i];
+                if ((string != null) && (hashes[i] == hash) && ModifiedUtf8.contentEquals(source, offset, length, string)) {
+                    referenced[i] = true;
+                    hits.increment();
+                    return string;
+                }
+            }
+        }
+        misses.increment();
+        final String result = ModifiedUtf8.decode(source, offset, length);
+        synchronized (lock) {
+            // Another thread may have cached an equal string in the meantime.
+            for (int i = base; i < base + WAYS; i++) {
+                final String string = strings[i];
+                if ((string != null) && (hashes[i] == hash) && string.equals(result)) {
+                    referenced[i] = true;
+                    return string;
+                }
+            }
+            final int i = base + victim(set, base);
+            hashes[i] = hash;
+            strings[i] = result;
+            referenced[i] = false;
+        }
+        return result;
+    }
+
+    // the index within the given set of an empty slot, or otherwise of the
+    // slot to be evicted
+    private int victim(final int set, final int base) {
+        for (int i = 0; i < WAYS; i++) {
+            if (strings[base + i] == null) {
+                return i;
+            }
+        }
+        int hand = hands[set];
+        while (referenced[base + hand]) {
+            referenced[base + hand] = false;
+            hand = (hand + 1) & (WAYS - 1);
+        }
+        hands[set] = (byte)((hand + 1) & (WAYS - 1));
+        evictions.increment();
+        return hand;
+    }
+
+    /**
+     * @return  the number of calls to {@link #intern(byte[], int, int)} that
+     *          found an equal string in this cache
+     */
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return  the number of calls to {@link #intern(byte[], int, int)} that
+     *          did not find an equal string in this cache, and so decoded the
+     *          given range
+     */
+    public long missCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return  the number of strings that have been removed from this cache
+     *          to make room for other strings
+     */
+    public long evictionCount() {
+        return evictions.sum();
+    }
+}
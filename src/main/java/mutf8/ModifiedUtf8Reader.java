@@ -0,0 +1,248 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+package mutf8;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CoderResult;
+import java.util.Objects;
+
+/**
+ * A reader that decodes modified UTF-8 from a channel.
+ * <p>
+ * Unlike a reader returned by
+ * {@link java.nio.channels.Channels#newReader(ReadableByteChannel, String)},
+ * this reader reads the channel into a direct buffer of a configurable size,
+ * which is typically far larger than the default, and decodes the buffer
+ * directly into the array of the caller, via the array loop of the decoder.
+ * Octets of a sequence that is split by the end of the buffer are kept by an
+ * {@linkplain ModifiedUtf8IncrementalDecoder incremental decoder}, so the
+ * buffer is never compacted. Alternatively, a file channel can be
+ * {@linkplain #map(FileChannel) memory-mapped}, so that the file is decoded
+ * without being read into a buffer at all.
+ * <p>
+ * The channel is expected to be in blocking mode.
+ * <p>
+ * Unlike other readers, this reader does not synchronize on its
+ * {@linkplain #lock lock}. Instances of this class are not safe for use by
+ * multiple concurrent threads.
+ *
+ * @author  Nathan Ryan
+ * @see     ModifiedUtf8Writer
+ */
+public final class ModifiedUtf8Reader extends Reader {
+
+    /**
+     * The size of the buffer of a reader for which no size is given.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+    // the greatest length of a region of a file that is mapped at once
+    private static final long MAX_REGION_LENGTH = 1L << 30;
+
+    private final ReadableByteChannel channel;
+
+    // the file channel that is mapped, or null if the channel is read
+    private final FileChannel file;
+
+    // the offset of the next region of the file that is mapped
+    private long regionOffset;
+
+    private final long fileSize;
+
+    // the octets that have been read from the channel, but not yet decoded
+    private ByteBuffer source;
+
+    private final ModifiedUtf8IncrementalDecoder decoder = new ModifiedUtf8IncrementalDecoder();
+
+    private final char[] single = new char[1];
+
+    // the error that followed the characters returned by the previous read,
+    // and that is thrown by the next read, or null if there is none
+    private CoderResult error;
+
+    private boolean endOfInput;
+
+    private boolean closed;
+
+    /**
+     * Constructs a new reader of the given channel, with a buffer of the
+     * {@linkplain #DEFAULT_BUFFER_SIZE default size}.
+     */
+    public ModifiedUtf8Reader(final ReadableByteChannel channel) {
+        this(channel, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Constructs a new reader of the given channel, with a buffer of the given
+     * size.
+     *
+     * @throws  IllegalArgumentException
+     *          if the given size is less than one
+     */
+    public ModifiedUtf8Reader(final ReadableByteChannel channel, final int bufferSize) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("Illegal buffer size: " + bufferSize);
+        }
+        this.channel = Objects.requireNonNull(channel);
+        this.file = null;
+        this.fileSize = 0;
+        this.source = ByteBuffer.allocateDirect(bufferSize);
+        this.source.limit(0);
+    }
+
+    private ModifiedUtf8Reader(final FileChannel file) throws IOException {
+        this.channel = file;
+        this.file = file;
+        this.regionOffset = file.position();
+        this.fileSize = file.size();
+        this.source = ByteBuffer.allocate(0);
+    }
+
+    /**
+     * Constructs a new reader that decodes the given file channel, from its
+     * current position to its current size, by mapping the file into memory,
+     * a region of at most 1 GB at a time.
+     * <p>
+     * Each region remains mapped until it is garbage-collected, which is
+     * typically some time after the reader has moved on to the next region.
+     * The position of the given channel is not changed.
+     *
+     * @return  the reader
+     * @throws  IOException
+     *          if an I/O error occurs
+     */
+    public static ModifiedUtf8Reader map(final FileChannel channel) throws IOException {
+        return new ModifiedUtf8Reader(channel);
+    }
+
+    /**
+     * @throws  java.nio.charset.MalformedInputException
+     *          if the input is not a valid encoding
+     * @throws  IOException
+     *          if another I/O error occurs
+     */
+    @Override
+    public int read() throws IOException {
+        return ((read(single, 0, 1) < 0) ? -1 : single[0]);
+    }
+
+    /**
+     * Reads characters into the given range of the given array, blocking until
+     * at least one character is available or the end of the channel is
+     * reached.
+     * <p>
+     * If the input is not a valid encoding, the characters that precede the
+     * malformed sequence are returned first, and the exception is thrown by
+     * the next read.
+     *
+     * @throws  java.nio.charset.MalformedInputException
+     *          if the input is not a valid encoding
+     * @throws  IOException
+     *          if another I/O error occurs
+     */
+    @Override
+    public int read(final char[] target, final int offset, final int length) throws IOException {
+        Objects.checkFromIndexSize(offset, length, target.length);
+        ensureOpen();
+        if (length == 0) {
+            return 0;
+        }
+        if (error != null) {
+            final CoderResult result = error;
+            error = null;
+            result.throwException();
+        }
+        // A lenient decoder decodes each sequence as one character, so the
+        // target is never too short for the next character.
+        final CharBuffer buffer = CharBuffer.wrap(target, offset, length);
+        while (true) {
+            if (source.hasRemaining()) {
+                final CoderResult result = decoder.decode(source, buffer);
+                if (result.isError()) {
+                    return fail(result, buffer.position() - offset);
+                }
+                if (buffer.position() > offset) {
+                    return buffer.position() - offset;
+                }
+            }
+            if (endOfInput || !fill()) {
+                endOfInput = true;
+                final CoderResult result = decoder.finish();
+                if (result.isError()) {
+                    return fail(result, buffer.position() - offset);
+                }
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Throws the exception of the given error, unless characters have been
+     * decoded before it, in which case the error is kept for the next read.
+     *
+     * @return  the given number of characters that have been decoded
+     */
+    private int fail(final CoderResult result, final int count) throws IOException {
+        if (count == 0) {
+            result.throwException();
+        }
+        error = result;
+        return count;
+    }
+
+    /**
+     * Reads or maps more octets into the source.
+     *
+     * @return  {@code true}, if there are more octets; {@code false}, if the
+     *          end of the channel was reached
+     */
+    private boolean fill() throws IOException {
+        if (file != null) {
+            if (regionOffset >= fileSize) {
+                return false;
+            }
+            final long length = Math.min(fileSize - regionOffset, MAX_REGION_LENGTH);
+            source = file.map(FileChannel.MapMode.READ_ONLY, regionOffset, length);
+            regionOffset += length;
+            return true;
+        }
+        // The decoder has consumed the whole buffer, so the buffer is reused
+        // from its start.
+        source.clear();
+        final int n = channel.read(source);
+        source.flip();
+        return (n >= 0);
+    }
+
+    /**
+     * @return  {@code true}, if octets that have been read are not yet
+     *          decoded, so that the next read does not block
+     */
+    @Override
+    public boolean ready() throws IOException {
+        ensureOpen();
+        return source.hasRemaining();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            source = ByteBuffer.allocate(0);
+            channel.close();
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+}
@@ -0,0 +1,378 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+package mutf8;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.MalformedInputException;
+import java.util.Arrays;
+
+/**
+ * A character sequence that is a view of an encoding of modified UTF-8.
+ * <p>
+ * An instance of this class shares the octets of the array or buffer from
+ * which it was created; the octets are not copied, and should not be modified
+ * for as long as the instance is in use. The octets are decoded only on
+ * demand: The {@linkplain #length() length}, the {@linkplain #hashCode() hash
+ * code}, and the results of {@link #equals(Object)},
+ * {@link #startsWith(ModifiedUtf8String)} and
+ * {@link #compareTo(ModifiedUtf8String)} are computed from the octets without
+ * creating a string, and only {@link #charAt(int)},
+ * {@link #subSequence(int, int)} and {@link #toString()} create one, which is
+ * then retained.
+ * <p>
+ * Because the decoder accepts more than one encoding of some characters (see
+ * {@link ModifiedUtf8Charset}), the octets of two equal instances are not
+ * necessarily equal. If the octets of both instances contain neither the octet
+ * {@code 0x00} nor an overlong sequence (including [{@code 0xC0}&nbsp;{@code
+ * 0x80}]), as is the case for the output of the encoder, then they are compared
+ * octet by octet; otherwise, they are compared character by character.
+ * <p>
+ * The octets are treated as a complete encoding, as by
+ * {@link ModifiedUtf8#decode(byte[], int, int)}. Each method that examines the
+ * octets throws {@link InvalidModifiedUtf8Exception} if they are not a valid
+ * encoding, with the index of the malformed sequence in the octets of this
+ * sequence as its {@linkplain InvalidModifiedUtf8Exception#getOffset()
+ * offset}.
+ *
+ * @author  Nathan Ryan
+ */
+public final class ModifiedUtf8String implements CharSequence, Comparable<ModifiedUtf8String> {
+
+    private static final long CANONICAL = Long.MIN_VALUE;
+
+    private final ByteBuffer octets;
+
+    // The hash code in the low 32 bits, the number of characters in the next
+    // 31 bits, and whether the encoding is canonical in the sign bit; zero if
+    // not yet computed, which is never the case after computation, because
+    // the empty encoding is canonical. Volatile, since a write of a long that
+    // is not volatile may be seen by another thread as two halves.
+    private volatile long summary;
+
+    private String string;
+
+    /**
+     * Creates a view of the given range of the given array.
+     *
+     * @throws  IndexOutOfBoundsException
+     *          if the given range is out of the bounds of the given array
+     */
+    public ModifiedUtf8String(final byte[] octets, final int offset, final int length) {
+        this.octets = ByteBuffer.wrap(octets, offset, length).slice();
+    }
+
+    /**
+     * Creates a view of the octets from the position to the limit of the
+     * given buffer. The position of the given buffer is unchanged.
+     */
+    public ModifiedUtf8String(final ByteBuffer octets) {
+        this.octets = octets.slice();
+    }
+
+    /**
+     * @return  a new read-only buffer that contains exactly the octets of this
+     *          sequence, and that shares them with the array or buffer from
+     *          which this sequence was created
+     */
+    public ByteBuffer octets() {
+        return octets.asReadOnlyBuffer();
+    }
+
+    /**
+     * @return  the number of characters in this sequence
+     * @throws  InvalidModifiedUtf8Exception
+     *          if the octets are not a valid encoding
+     */
+    @Override
+    public int length() {
+        return (int)((summary() & ~CANONICAL) >>> 32);
+    }
+
+    /**
+     * @throws  InvalidModifiedUtf8Exception
+     *          if the octets are not a valid encoding
+     */
+    @Override
+    public char charAt(final int index) {
+        return toString().charAt(index);
+    }
+
+    /**
+     * @throws  InvalidModifiedUtf8Exception
+     *          if the octets are not a valid encoding
+     */
+    @Override
+    public CharSequence subSequence(final int start, final int end) {
+        return toString().subSequence(start, end);
+    }
+
+    /**
+     * Returns whether this sequence begins with the given sequence.
+     *
+     * @throws  InvalidModifiedUtf8Exception
+     *          if the octets of either sequence are not a valid encoding
+     */
+    public boolean startsWith(final ModifiedUtf8String prefix) {
+        if (isCanonical() && prefix.isCanonical()) {
+            final int n = prefix.octets.capacity();
+            return (n <= octets.capacity()) && (mismatch(octets, prefix.octets, n) < 0);
+        }
+        int i = 0;
+        int j = 0;
+        while (j < prefix.octets.capacity()) {
+            if (i == octets.capacity()) {
+                return false;
+            }
+            final long x = decodeAt(octets, i);
+            final long y = decodeAt(prefix.octets, j);
+            if ((char)(x) != (char)(y)) {
+                return false;
+            }
+            i = (int)(x >>> 16);
+            j = (int)(y >>> 16);
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether this sequence contains the same characters as the given
+     * sequence, as by {@link ModifiedUtf8#contentEquals(byte[], int, int,
+     * CharSequence)}.
+     *
+     * @throws  InvalidModifiedUtf8Exception
+     *          if an examined sequence of the octets is malformed
+     */
+    public boolean contentEquals(final CharSequence chars) {
+        if (octets.hasArray()) {
+            try {
+                return ModifiedUtf8.contentEquals(octets.array(), octets.arrayOffset(), octets.capacity(), chars);
+            } catch (final InvalidModifiedUtf8Exception e) {
+                throw relative(e);
+            }
+        }
+        final int n = chars.length();
+        int i = 0;
+        int j = 0;
+        while (i < octets.capacity()) {
+            if (j == n) {
+                return false;
+            }
+            final long x = decodeAt(octets, i);
+            if (chars.charAt(j) != (char)(x)) {
+                return false;
+            }
+            i = (int)(x >>> 16);
+            j++;
+        }
+        return j == n;
+    }
+
+    /**
+     * Compares this sequence with the given sequence lexicographically, as by
+     * {@link String#compareTo(String)}. Only the sign of the result is
+     * significant.
+     *
+     * @throws  InvalidModifiedUtf8Exception
+     *          if the octets of either sequence are not a valid encoding
+     */
+    @Override
+    public int compareTo(final ModifiedUtf8String other) {
+        if (isCanonical() && other.isCanonical()) {
+            // In a canonical encoding, each character is encoded separately
+            // as the shortest sequence, so the order of the octets is the order
+            // of the characters.
+            final int n = Math.min(octets.capacity(), other.octets.capacity());
+            final int i = mismatch(octets, other.octets, n);
+            if (i >= 0) {
+                return (octets.get(i) & 0xFF) - (other.octets.get(i) & 0xFF);
+            }
+            return octets.capacity() - other.octets.capacity();
+        }
+        int i = 0;
+        int j = 0;
+        while ((i < octets.capacity()) && (j < other.octets.capacity())) {
+            final long x = decodeAt(octets, i);
+            final long y = decodeAt(other.octets, j);
+            if ((char)(x) != (char)(y)) {
+                return (char)(x) - (char)(y);
+            }
+            i = (int)(x >>> 16);
+            j = (int)(y >>> 16);
+        }
+        return length() - other.length();
+    }
+
+    /**
+     * Returns whether the given object is a {@code ModifiedUtf8String} that
+     * contains the same characters as this sequence.
+     *
+     * @throws  InvalidModifiedUtf8Exception
+     *          if the octets of either sequence are not a valid encoding
+     */
+    @Override
+    public boolean equals(final Object object) {
+        if (object == this) {
+            return true;
+        }
+        if (!(object instanceof ModifiedUtf8String)) {
+            return false;
+        }
+        final ModifiedUtf8String other = (ModifiedUtf8String)(object);
+        final long summary = summary();
+        final long otherSummary = other.summary();
+        if ((summary & ~CANONICAL) != (otherSummary & ~CANONICAL)) {
+            // different lengths or hash codes
+            return false;
+        }
+        if ((summary & otherSummary) < 0) {
+            final int n = octets.capacity();
+            return (n == other.octets.capacity()) && (mismatch(octets, other.octets, n) < 0);
+        }
+        return compareTo(other) == 0;
+    }
+
+    /**
+     * @return  the hash code of the decoded string, as by
+     *          {@link String#hashCode()}
+     * @throws  InvalidModifiedUtf8Exception
+     *          if the octets are not a valid encoding
+     */
+    @Override
+    public int hashCode() {
+        return (int)(summary());
+    }
+
+    /**
+     * @return  the decoded string
+     * @throws  InvalidModifiedUtf8Exception
+     *          if the octets are not a valid encoding
+     */
+    @Override
+    public String toString() {
+        String result = string;
+        if (result == null) {
+            result = ModifiedUtf8.decode(octets, 0, octets.capacity());
+            string = result;
+        }
+        return result;
+    }
+
+    private boolean isCanonical() {
+        return summary() < 0;
+    }
+
+    private long summary() {
+        long result = summary;
+        if (result == 0) {
+            result = summarize(octets);
+            summary = result;
+        }
+        return result;
+    }
+
+    private static long summarize(final ByteBuffer octets) {
+        boolean canonical = true;
+        int h = 0;
+        long n = 0;
+        int i = 0;
+        while (i < octets.capacity()) {
+            final long x = decodeAt(octets, i);
+            final int a = octets.get(i) & 0xFF;
+            if ((a == 0x00) || (a == 0xC0) || (a == 0xC1)) {
+                // null octet, or overlong two-octet sequence
+                canonical = false;
+            } else if ((a == 0xE0) && ((octets.get(i + 1) & 0xFF) < 0xA0)) {
+                // overlong three-octet sequence
+                canonical = false;
+            }
+            h = 31 * h + (char)(x);
+            n++;
+            i = (int)(x >>> 16);
+        }
+        return (canonical ? CANONICAL : 0) | (n << 32) | (h & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Decodes the sequence at the given index of the given octets, which are a
+     * complete encoding, as by {@link ModifiedUtf8#decode(byte[], int, int)}.
+     *
+     * @return  the decoded character in the low 16 bits, and the index of the
+     *          next sequence in the remaining bits
+     * @throws  InvalidModifiedUtf8Exception
+     *          if the sequence is malformed or incomplete
+     */
+    private static long decodeAt(final ByteBuffer octets, final int index) {
+        final int remaining = octets.capacity() - index;
+        final byte a = octets.get(index);
+        switch ((a & 0xFF) >> 4) {
+            case 0: case 1: case 2: case 3: case 4: case 5: case 6: case 7: {
+                // first octet 0xxxxxxx
+                return ((long)(index + 1) << 16) | a;
+            }
+            case 12: case 13: {
+                // first octet 110xxxxx
+                if (remaining < 2) {
+                    throw malformed(remaining, index);
+                }
+                final byte b = octets.get(index + 1);
+                if ((b & 0xC0) != 0x80) {
+                    throw malformed(2, index);
+                }
+                return ((long)(index + 2) << 16) | ((a & 0x1F) << 6) | (b & 0x3F);
+            }
+            case 14: {
+                // first octet 1110xxxx
+                if (remaining < 2) {
+                    throw malformed(remaining, index);
+                }
+                final byte b = octets.get(index + 1);
+                if ((b & 0xC0) != 0x80) {
+                    throw malformed(2, index);
+                }
+                if (remaining < 3) {
+                    throw malformed(remaining, index);
+                }
+                final byte c = octets.get(index + 2);
+                if ((c & 0xC0) != 0x80) {
+                    throw malformed(3, index);
+                }
+                return ((long)(index + 3) << 16) | ((a & 0x0F) << 12) | ((b & 0x3F) << 6) | (c & 0x3F);
+            }
+            default: {
+                // first octet 10xxxxxx or 1111xxxx
+                throw malformed(1, index);
+            }
+        }
+    }
+
+    // the given exception, thrown for the backing array of the octets, with its
+    // offset made relative to the octets
+    private InvalidModifiedUtf8Exception relative(final InvalidModifiedUtf8Exception e) {
+        if (octets.arrayOffset() == 0) {
+            return e;
+        }
+        return new InvalidModifiedUtf8Exception((MalformedInputException)(e.getCause()), e.getOffset() - octets.arrayOffset());
+    }
+
+    private static InvalidModifiedUtf8Exception malformed(final int length, final int offset) {
+        return new InvalidModifiedUtf8Exception(new MalformedInputException(length), offset);
+    }
+
+    // the index of the first of the given number of octets that differs, or
+    // -1 if none differs
+    private static int mismatch(final ByteBuffer a, final ByteBuffer b, final int length) {
+        if (a.hasArray() && b.hasArray()) {
+            return Arrays.mismatch(
+                    a.array(), a.arrayOffset(), a.arrayOffset() + length,
+                    b.array(), b.arrayOffset(), b.arrayOffset() + length);
+        }
+        for (int i = 0; i < length; i++) {
+            if (a.get(i) != b.get(i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+package mutf8;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.util.Objects;
+
+/**
+ * A writer that encodes modified UTF-8 to a channel.
+ * <p>
+ * Unlike a writer returned by
+ * {@link java.nio.channels.Channels#newWriter(WritableByteChannel, String)},
+ * this writer encodes into a direct buffer of a configurable size, which is
+ * typically far larger than the default, directly from the array of the
+ * caller, via the array loop of the encoder. A string is copied into an array
+ * a block at a time, so that it is encoded by the same loop.
+ * <p>
+ * The octets are written to the channel only when the buffer is full, or when
+ * this writer is flushed or closed. The channel is expected to be in blocking
+ * mode.
+ * <p>
+ * Unlike other writers, this writer does not synchronize on its
+ * {@linkplain #lock lock}. Instances of this class are not safe for use by
+ * multiple concurrent threads.
+ *
+ * @author  Nathan Ryan
+ * @see     ModifiedUtf8Reader
+ */
+public final class ModifiedUtf8Writer extends Writer {
+
+    /**
+     * The size of the buffer of a writer for which no size is given.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+    // the length of the array into which a string is copied
+    private static final int BLOCK_LENGTH = 1024;
+
+    // Each character is encoded as at most three octets, which must fit in
+    // the buffer at once.
+    private static final int MIN_BUFFER_SIZE = 3;
+
+    private final WritableByteChannel channel;
+
+    // the octets that have been encoded, but not yet written to the channel
+    private final ByteBuffer target;
+
+    private final CharsetEncoder encoder = new ModifiedUtf8Charset().newEncoder();
+
+    // the array into which a string is copied, allocated on first use
+    private char[] block;
+
+    private final char[] single = new char[1];
+
+    private boolean closed;
+
+    /**
+     * Constructs a new writer to the given channel, with a buffer of the
+     * {@linkplain #DEFAULT_BUFFER_SIZE default size}.
+     */
+    public ModifiedUtf8Writer(final WritableByteChannel channel) {
+        this(channel, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Constructs a new writer to the given channel, with a buffer of the given
+     * size.
+     *
+     * @throws  IllegalArgumentException
+     *          if the given size is less than three
+     */
+    public ModifiedUtf8Writer(final WritableByteChannel channel, final int bufferSize) {
+        if (bufferSize < MIN_BUFFER_SIZE) {
+            throw new IllegalArgumentException("Illegal buffer size: " + bufferSize);
+        }
+        this.channel = Objects.requireNonNull(channel);
+        this.target = ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    @Override
+    public void write(final int c) throws IOException {
+        ensureOpen();
+        single[0] = (char)(c);
+        encode(CharBuffer.wrap(single));
+    }
+
+    @Override
+    public void write(final char[] source, final int offset, final int length) throws IOException {
+        Objects.checkFromIndexSize(offset, length, source.length);
+        ensureOpen();
+        encode(CharBuffer.wrap(source, offset, length));
+    }
+
+    @Override
+    public void write(final String source, final int offset, final int length) throws IOException {
+        Objects.checkFromIndexSize(offset, length, source.length());
+        ensureOpen();
+        // A buffer that wraps a string has no accessible array, so the string
+        // is copied into an array, to be encoded by the array loop.
+        char[] array = block;
+        if (array == null) {
+            array = new char[BLOCK_LENGTH];
+            block = array;
+        }
+        final int limit = offset + length;
+        for (int i = offset; i < limit; i += array.length) {
+            final int n = Math.min(array.length, limit - i);
+            source.getChars(i, i + n, array, 0);
+            encode(CharBuffer.wrap(array, 0, n));
+        }
+    }
+
+    private void encode(final CharBuffer source) throws IOException {
+        while (true) {
+            // Every character can be encoded, and every surrogate is encoded
+            // as a separate sequence, so the encoder never reports an error,
+            // nor leaves a character unused for want of the next.
+            final CoderResult result = encoder.encode(source, target, false);
+            if (result.isUnderflow()) {
+                return;
+            }
+            drain();
+        }
+    }
+
+    /**
+     * Writes the buffer to the channel, blocking until it has been written.
+     */
+    private void drain() throws IOException {
+        target.flip();
+        while (target.hasRemaining()) {
+            channel.write(target);
+        }
+        target.clear();
+    }
+
+    /**
+     * Writes the octets that have been encoded to the channel. The channel
+     * itself is not forced to storage.
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        drain();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            try {
+                drain();
+            } finally {
+                closed = true;
+                channel.close();
+            }
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+}
@@ -0,0 +1,571 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+package mutf8;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CoderResult;
+import java.nio.charset.MalformedInputException;
+import java.nio.charset.UnmappableCharacterException;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Static methods for transcoding directly between modified UTF-8 and
+ * <a href="https://tools.ietf.org/html/rfc3629">UTF-8</a>, without an
+ * intermediate sequence of characters.
+ * <p>
+ * The two encodings differ only in the encoding of the null character and of
+ * supplementary characters, so most octets are copied as they are: Runs of
+ * one-octet sequences are copied in bulk, the modified UTF-8 encoding of the
+ * null character, [{@code 0xC0}&nbsp;{@code 0x80}], is rewritten as
+ * [{@code 0x00}] and vice versa, and the six-octet modified UTF-8 encoding of
+ * a surrogate pair is rewritten as the four-octet UTF-8 encoding of the
+ * supplementary character and vice versa. Any other sequence accepted by the
+ * decoder of {@link ModifiedUtf8Charset}, including an overlong sequence, is
+ * rewritten as the shortest UTF-8 sequence.
+ * <p>
+ * An unpaired surrogate cannot be encoded as UTF-8, so it is reported as an
+ * unmappable character of three octets. Modified UTF-8 is decoded according to
+ * the rules of the decoder of {@link ModifiedUtf8Charset}, and UTF-8 is
+ * decoded according to the well-formed octet sequences of
+ * <a href="https://www.unicode.org/versions/Unicode10.0.0/ch03.pdf#G7404">
+ *     <i>The Unicode Standard, Version 10.0</i>, section 3.9, table 3-7
+ * </a>.
+ * <p>
+ * The transcoding methods for buffers behave like
+ * {@link java.nio.charset.CharsetDecoder#decode(ByteBuffer, java.nio.CharBuffer, boolean)}:
+ * They transcode as many octets as possible, and return a result that
+ * describes why they stopped. An erroneous sequence begins at the position of
+ * the source buffer, and its length is that of the result.
+ *
+ * @author  Nathan Ryan
+ */
+public final class Utf8Transcoder {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private Utf8Transcoder() {
+    }
+
+    @FunctionalInterface
+    private interface Loop {
+        CoderResult transcode(ByteBuffer source, ByteBuffer target, boolean endOfInput);
+    }
+
+    /**
+     * Transcodes as many octets as possible from the given modified UTF-8
+     * source to the given UTF-8 target.
+     *
+     * @param   endOfInput
+     *          whether the given source contains the last of the input, in
+     *          which case an incomplete sequence at its end is malformed
+     * @return  {@link CoderResult#UNDERFLOW} if the source has been
+     *          transcoded as far as possible, {@link CoderResult#OVERFLOW} if
+     *          the target has insufficient room, or a result that describes
+     *          a malformed or unmappable sequence
+     */
+    public static CoderResult toUtf8(final ByteBuffer source, final ByteBuffer target, final boolean endOfInput) {
+        final int sourceLimit = source.limit();
+        int sourceIndex = source.position();
+        final int targetLimit = target.limit();
+        int targetIndex = target.position();
+        CoderResult result = CoderResult.UNDERFLOW;
+        loop:
+        while (sourceIndex < sourceLimit) {
+            final byte a = source.get(sourceIndex);
+            switch ((a & 0xFF) >> 4) {
+                case 0: case 1: case 2: case 3: case 4: case 5: case 6: case 7: {
+                    // first octet 0xxxxxxx, copied as is
+                    final int n = copyAscii(source, sourceIndex, target, targetIndex,
+                            Math.min(sourceLimit - sourceIndex, targetLimit - targetIndex));
+                    if (n == 0) {
+                        result = CoderResult.OVERFLOW;
+                        break loop;
+                    }
+                    sourceIndex += n;
+                    targetIndex += n;
+                    break;
+                }
+                case 12: case 13: {
+                    // first octet 110xxxxx
+                    if (sourceLimit - sourceIndex < 2) {
+                        break loop;
+                    }
+                    final byte b = source.get(sourceIndex + 1);
+                    if ((b & 0xC0) != 0x80) {
+                        result = CoderResult.malformedForLength(2);
+                        break loop;
+                    }
+                    final int n = putUtf8(target, targetIndex, targetLimit, ((a & 0x1F) << 6) | (b & 0x3F));
+                    if (n == 0) {
+                        result = CoderResult.OVERFLOW;
+                        break loop;
+                    }
+                    sourceIndex += 2;
+                    targetIndex += n;
+                    break;
+                }
+                case 14: {
+                    // first octet 1110xxxx
+                    if (sourceLimit - sourceIndex < 2) {
+                        break loop;
+                    }
+                    final byte b = source.get(sourceIndex + 1);
+                    if ((b & 0xC0) != 0x80) {
+                        result = CoderResult.malformedForLength(2);
+                        break loop;
+                    }
+                    if (sourceLimit - sourceIndex < 3) {
+                        break loop;
+                    }
+                    final byte c = source.get(sourceIndex + 2);
+                    if ((c & 0xC0) != 0x80) {
+                        result = CoderResult.malformedForLength(3);
+                        break loop;
+                    }
+                    final char ch = (char)(((a & 0x0F) << 12) | ((b & 0x3F) << 6) | (c & 0x3F));
+                    if (!Character.isSurrogate(ch)) {
+                        final int n = putUtf8(target, targetIndex, targetLimit, ch);
+                        if (n == 0) {
+                            result = CoderResult.OVERFLOW;
+                            break loop;
+                        }
+                        sourceIndex += 3;
+                        targetIndex += n;
+                        break;
+                    }
+                    // A high surrogate must be immediately followed by the
+                    // three-octet sequence of a low surrogate, and the pair is
+                    // transcoded together; any other surrogate is unpaired.
+                    // 11101101 1010aaaa 10bbbbbb 11101101 1011cccc 10dddddd
+                    if (Character.isLowSurrogate(ch)) {
+                        result = CoderResult.unmappableForLength(3);
+                        break loop;
+                    }
+                    final int available = Math.min(sourceLimit - sourceIndex, 6);
+                    if (((available > 3) && (source.get(sourceIndex + 3) != (byte)(0xED)))
+                            || ((available > 4) && ((source.get(sourceIndex + 4) & 0xF0) != 0xB0))
+                            || ((available > 5) && ((source.get(sourceIndex + 5) & 0xC0) != 0x80))) {
+                        result = CoderResult.unmappableForLength(3);
+                        break loop;
+                    }
+                    if (available < 6) {
+                        if (endOfInput) {
+                            result = CoderResult.unmappableForLength(3);
+                        }
+                        break loop;
+                    }
+                    final char low = (char)(0xD000 | ((source.get(sourceIndex + 4) & 0x3F) << 6) | (source.get(sourceIndex + 5) & 0x3F));
+                    final int n = putUtf8(target, targetIndex, targetLimit, Character.toCodePoint(ch, low));
+                    if (n == 0) {
+                        result = CoderResult.OVERFLOW;
+                        break loop;
+                    }
+                    sourceIndex += 6;
+                    targetIndex += n;
+                    break;
+                }
+             // case 8: case 9: case 10: case 11:
+                    // first octet 10xxxxxx
+             // case 15:
+                    // first octet 1111xxxx
+                default: {
+                    result = CoderResult.malformedForLength(1);
+                    break loop;
+                }
+            }
+        }
+        if (endOfInput && result.isUnderflow() && (sourceIndex < sourceLimit)) {
+            result = CoderResult.malformedForLength(sourceLimit - sourceIndex);
+        }
+        source.position(sourceIndex);
+        target.position(targetIndex);
+        return result;
+    }
+
+    /**
+     * Transcodes as many octets as possible from the given UTF-8 source to the
+     * given modified UTF-8 target.
+     *
+     * @param   endOfInput
+     *          whether the given source contains the last of the input, in
+     *          which case an incomplete sequence at its end is malformed
+     * @return  {@link CoderResult#UNDERFLOW} if the source has been
+     *          transcoded as far as possible, {@link CoderResult#OVERFLOW} if
+     *          the target has insufficient room, or a result that describes
+     *          a malformed sequence
+     */
+    public static CoderResult fromUtf8(final ByteBuffer source, final ByteBuffer target, final boolean endOfInput) {
+        final int sourceLimit = source.limit();
+        int sourceIndex = source.position();
+        final int targetLimit = target.limit();
+        int targetIndex = target.position();
+        CoderResult result = CoderResult.UNDERFLOW;
+        loop:
+        while (sourceIndex < sourceLimit) {
+            final byte a = source.get(sourceIndex);
+            // The length of an erroneous sequence is that of the longest
+            // prefix of a well-formed sequence, or one.
+            switch ((a & 0xFF) >> 4) {
+                case 0: case 1: case 2: case 3: case 4: case 5: case 6: case 7: {
+                    if (a == 0) {
+                        // 00000000 as 11000000 10000000
+                        if (targetLimit - targetIndex < 2) {
+                            result = CoderResult.OVERFLOW;
+                            break loop;
+                        }
+                        target.put(targetIndex, (byte)(0xC0));
+                        target.put(targetIndex + 1, (byte)(0x80));
+                        sourceIndex += 1;
+                        targetIndex += 2;
+                        break;
+                    }
+                    // first octet 0xxxxxxx, copied as is
+                    if (targetIndex == targetLimit) {
+                        result = CoderResult.OVERFLOW;
+                        break loop;
+                    }
+                    target.put(targetIndex++, a);
+                    sourceIndex++;
+                    break;
+                }
+                case 12: case 13: {
+                    // first octet 110xxxxx, copied as is
+                    if (a < (byte)(0xC2)) {
+                        // overlong
+                        result = CoderResult.malformedForLength(1);
+                        break loop;
+                    }
+                    if (sourceLimit - sourceIndex < 2) {
+                        break loop;
+                    }
+                    if (!isContinuation(source.get(sourceIndex + 1))) {
+                        result = CoderResult.malformedForLength(1);
+                        break loop;
+                    }
+                    if (targetLimit - targetIndex < 2) {
+                        result = CoderResult.OVERFLOW;
+                        break loop;
+                    }
+                    copy(source, sourceIndex, target, targetIndex, 2);
+                    sourceIndex += 2;
+                    targetIndex += 2;
+                    break;
+                }
+                case 14: {
+                    // first octet 1110xxxx, copied as is
+                    if (sourceLimit - sourceIndex < 2) {
+                        break loop;
+                    }
+                    final int b = source.get(sourceIndex + 1) & 0xFF;
+                    final boolean valid;
+                    if (a == (byte)(0xE0)) {
+                        // not overlong
+                        valid = (b >= 0xA0) && (b <= 0xBF);
+                    } else if (a == (byte)(0xED)) {
+                        // not a surrogate
+                        valid = (b >= 0x80) && (b <= 0x9F);
+                    } else {
+                        valid = (b >= 0x80) && (b <= 0xBF);
+                    }
+                    if (!valid) {
+                        result = CoderResult.malformedForLength(1);
+                        break loop;
+                    }
+                    if (sourceLimit - sourceIndex < 3) {
+                        break loop;
+                    }
+                    if (!isContinuation(source.get(sourceIndex + 2))) {
+                        result = CoderResult.malformedForLength(2);
+                        break loop;
+                    }
+                    if (targetLimit - targetIndex < 3) {
+                        result = CoderResult.OVERFLOW;
+                        break loop;
+                    }
+                    copy(source, sourceIndex, target, targetIndex, 3);
+                    sourceIndex += 3;
+                    targetIndex += 3;
+                    break;
+                }
+                case 15: {
+                    // first octet 11110xxx
+                    if (a > (byte)(0xF4)) {
+                        result = CoderResult.malformedForLength(1);
+                        break loop;
+                    }
+                    if (sourceLimit - sourceIndex < 2) {
+                        break loop;
+                    }
+                    final int b = source.get(sourceIndex + 1) & 0xFF;
+                    final boolean valid;
+                    if (a == (byte)(0xF0)) {
+                        // not overlong
+                        valid = (b >= 0x90) && (b <= 0xBF);
+                    } else if (a == (byte)(0xF4)) {
+                        // not greater than U+10FFFF
+                        valid = (b >= 0x80) && (b <= 0x8F);
+                    } else {
+                        valid = (b >= 0x80) && (b <= 0xBF);
+                    }
+                    if (!valid) {
+                        result = CoderResult.malformedForLength(1);
+                        break loop;
+                    }
+                    if (sourceLimit - sourceIndex < 3) {
+                        break loop;
+                    }
+                    final byte c = source.get(sourceIndex + 2);
+                    if (!isContinuation(c)) {
+                        result = CoderResult.malformedForLength(2);
+                        break loop;
+                    }
+                    if (sourceLimit - sourceIndex < 4) {
+                        break loop;
+                    }
+                    final byte d = source.get(sourceIndex + 3);
+                    if (!isContinuation(d)) {
+                        result = CoderResult.malformedForLength(3);
+                        break loop;
+                    }
+                    if (targetLimit - targetIndex < 6) {
+                        result = CoderResult.OVERFLOW;
+                        break loop;
+                    }
+                    final int codePoint = ((a & 0x07) << 18) | ((b & 0x3F) << 12) | ((c & 0x3F) << 6) | (d & 0x3F);
+                    putSurrogate(target, targetIndex, Character.highSurrogate(codePoint));
+                    putSurrogate(target, targetIndex + 3, Character.lowSurrogate(codePoint));
+                    sourceIndex += 4;
+                    targetIndex += 6;
+                    break;
+                }
+             // case 8: case 9: case 10: case 11:
+                    // first octet 10xxxxxx
+                default: {
+                    result = CoderResult.malformedForLength(1);
+                    break loop;
+                }
+            }
+        }
+        if (endOfInput && result.isUnderflow() && (sourceIndex < sourceLimit)) {
+            result = CoderResult.malformedForLength(sourceLimit - sourceIndex);
+        }
+        source.position(sourceIndex);
+        target.position(targetIndex);
+        return result;
+    }
+
+    /**
+     * Transcodes the given range of the given modified UTF-8 array to UTF-8.
+     *
+     * @return  the UTF-8 encoding
+     * @throws  IndexOutOfBoundsException
+     *          if the given range is out of the bounds of the given array
+     * @throws  MalformedInputException
+     *          if the given range is not a valid encoding of modified UTF-8
+     * @throws  UnmappableCharacterException
+     *          if the given range contains an unpaired surrogate
+     */
+    public static byte[] toUtf8(final byte[] source, final int offset, final int length) throws CharacterCodingException {
+        Objects.checkFromIndexSize(offset, length, source.length);
+        final int limit = offset + length;
+        // No sequence is transcoded to a longer sequence.
+        final byte[] target = new byte[length];
+        final ByteBuffer targetBuffer = ByteBuffer.wrap(target);
+        int sourceIndex = offset;
+        int targetIndex = 0;
+        try {
+            while (sourceIndex < limit) {
+                final int n = Ascii.count(source, sourceIndex, limit - sourceIndex);
+                if (n > 0) {
+                    System.arraycopy(source, sourceIndex, target, targetIndex, n);
+                    sourceIndex += n;
+                    targetIndex += n;
+                    continue;
+                }
+                final long x = ModifiedUtf8.decodeCodePointAt(source, sourceIndex, limit);
+                final int codePoint = (int)(x);
+                if ((codePoint >= Character.MIN_SURROGATE) && (codePoint <= Character.MAX_SURROGATE)) {
+                    throw new UnmappableCharacterException(3);
+                }
+                targetIndex += putUtf8(targetBuffer, targetIndex, target.length, codePoint);
+                sourceIndex = (int)(x >>> 32);
+            }
+        } catch (final InvalidModifiedUtf8Exception e) {
+            throw (MalformedInputException)(e.getCause());
+        }
+        return (targetIndex == length) ? target : Arrays.copyOf(target, targetIndex);
+    }
+
+    /**
+     * Transcodes the given range of the given UTF-8 array to modified UTF-8.
+     *
+     * @return  the modified UTF-8 encoding
+     * @throws  IndexOutOfBoundsException
+     *          if the given range is out of the bounds of the given array
+     * @throws  MalformedInputException
+     *          if the given range is not a valid encoding of UTF-8
+     */
+    public static byte[] fromUtf8(final byte[] source, final int offset, final int length) throws CharacterCodingException {
+        Objects.checkFromIndexSize(offset, length, source.length);
+        // Each null octet is transcoded as two octets, and each four-octet
+        // sequence as six octets; any other sequence is copied as is.
+        long n = length;
+        for (int i = offset; i < offset + length; i++) {
+            final byte b = source[i];
+            if (b == 0) {
+                n += 1;
+            } else if ((b & 0xF8) == 0xF0) {
+                n += 2;
+            }
+        }
+        if (n > Integer.MAX_VALUE - 8) {
+            throw new OutOfMemoryError("Required array length " + n + " exceeds implementation limit");
+        }
+        final ByteBuffer target = ByteBuffer.allocate((int)(n));
+        final CoderResult result = fromUtf8(ByteBuffer.wrap(source, offset, length), target, true);
+        if (!result.isUnderflow()) {
+            result.throwException();
+        }
+        return target.array();
+    }
+
+    /**
+     * Transcodes the given modified UTF-8 stream to the given UTF-8 stream,
+     * until the end of the given input stream. Neither stream is closed.
+     *
+     * @throws  MalformedInputException
+     *          if the input is not a valid encoding of modified UTF-8
+     * @throws  UnmappableCharacterException
+     *          if the input contains an unpaired surrogate
+     * @throws  IOException
+     *          if another I/O error occurs
+     */
+    public static void toUtf8(final InputStream source, final OutputStream target) throws IOException {
+        transcode(source, target, Utf8Transcoder::toUtf8);
+    }
+
+    /**
+     * Transcodes the given UTF-8 stream to the given modified UTF-8 stream,
+     * until the end of the given input stream. Neither stream is closed.
+     *
+     * @throws  MalformedInputException
+     *          if the input is not a valid encoding of UTF-8
+     * @throws  IOException
+     *          if another I/O error occurs
+     */
+    public static void fromUtf8(final InputStream source, final OutputStream target) throws IOException {
+        transcode(source, target, Utf8Transcoder::fromUtf8);
+    }
+
+    private static void transcode(final InputStream in, final OutputStream out, final Loop loop) throws IOException {
+        // The source buffer is kept ready for writing between iterations.
+        final ByteBuffer source = ByteBuffer.allocate(BUFFER_SIZE);
+        final ByteBuffer target = ByteBuffer.allocate(BUFFER_SIZE);
+        boolean endOfInput = false;
+        while (true) {
+            if (!endOfInput && source.hasRemaining()) {
+                final int n = in.read(source.array(), source.position(), source.remaining());
+                if (n < 0) {
+                    endOfInput = true;
+                } else {
+                    source.position(source.position() + n);
+                }
+            }
+            source.flip();
+            final CoderResult result = loop.transcode(source, target, endOfInput);
+            source.compact();
+            if (result.isError()) {
+                result.throwException();
+            }
+            out.write(target.array(), 0, target.position());
+            target.clear();
+            if (endOfInput && result.isUnderflow()) {
+                return;
+            }
+        }
+    }
+
+    private static boolean isContinuation(final byte b) {
+        return (b & 0xC0) == 0x80;
+    }
+
+    // Copies the run of one-octet sequences at the given index of the given
+    // source, of at most the given length, and returns its length.
+    private static int copyAscii(final ByteBuffer source, final int sourceIndex, final ByteBuffer target, final int targetIndex, final int length) {
+        if (source.hasArray() && target.hasArray()) {
+            final int n = Ascii.count(source.array(), source.arrayOffset() + sourceIndex, length);
+            System.arraycopy(source.array(), source.arrayOffset() + sourceIndex, target.array(), target.arrayOffset() + targetIndex, n);
+            return n;
+        }
+        int n = 0;
+        while (n < length) {
+            final byte b = source.get(sourceIndex + n);
+            if (b < 0) {
+                break;
+            }
+            target.put(targetIndex + n, b);
+            n++;
+        }
+        return n;
+    }
+
+    private static void copy(final ByteBuffer source, final int sourceIndex, final ByteBuffer target, final int targetIndex, final int length) {
+        for (int i = 0; i < length; i++) {
+            target.put(targetIndex + i, source.get(sourceIndex + i));
+        }
+    }
+
+    // Writes the shortest UTF-8 sequence of the given code point, and returns
+    // its length, or zero if it does not fit.
+    private static int putUtf8(final ByteBuffer target, final int targetIndex, final int targetLimit, final int codePoint) {
+        if (codePoint < (1 << 7)) {
+            // 00000000 0aaaaaaa as 0aaaaaaa
+            if (targetIndex == targetLimit) {
+                return 0;
+            }
+            target.put(targetIndex, (byte)(codePoint));
+            return 1;
+        } else if (codePoint < (1 << 11)) {
+            // 00000aaa aabbbbbb as 110aaaaa 10bbbbbb
+            if (targetLimit - targetIndex < 2) {
+                return 0;
+            }
+            target.put(targetIndex, (byte)(0xC0 | (codePoint >> 6)));
+            target.put(targetIndex + 1, (byte)(0x80 | (codePoint & 0x3F)));
+            return 2;
+        } else if (codePoint < (1 << 16)) {
+            // aaaabbbb bbcccccc as 1110aaaa 10bbbbbb 10cccccc
+            if (targetLimit - targetIndex < 3) {
+                return 0;
+            }
+            target.put(targetIndex, (byte)(0xE0 | (codePoint >> 12)));
+            target.put(targetIndex + 1, (byte)(0x80 | ((codePoint >> 6) & 0x3F)));
+            target.put(targetIndex + 2, (byte)(0x80 | (codePoint & 0x3F)));
+            return 3;
+        } else {
+            // 000aaabb bbbbcccc ccdddddd as 11110aaa 10bbbbbb 10cccccc 10dddddd
+            if (targetLimit - targetIndex < 4) {
+                return 0;
+            }
+            target.put(targetIndex, (byte)(0xF0 | (codePoint >> 18)));
+            target.put(targetIndex + 1, (byte)(0x80 | ((codePoint >> 12) & 0x3F)));
+            target.put(targetIndex + 2, (byte)(0x80 | ((codePoint >> 6) & 0x3F)));
+            target.put(targetIndex + 3, (byte)(0x80 | (codePoint & 0x3F)));
+            return 4;
+        }
+    }
+
+    // Writes the three-octet sequence of the given surrogate.
+    private static void putSurrogate(final ByteBuffer target, final int targetIndex, final char ch) {
+        target.put(targetIndex, (byte)(0xE0 | (ch >> 12)));
+        target.put(targetIndex + 1, (byte)(0x80 | ((ch >> 6) & 0x3F)));
+        target.put(targetIndex + 2, (byte)(0x80 | (ch & 0x3F)));
+    }
+}
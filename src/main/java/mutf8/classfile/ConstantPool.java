@@ -0,0 +1,226 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+package mutf8.classfile;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The {@code CONSTANT_Utf8_info} entries of the constant pool of a
+ * {@code class} file.
+ * <p>
+ * The constant pool is walked once, when it is read, to locate its
+ * {@code CONSTANT_Utf8_info} entries; each entry is then a
+ * {@linkplain Utf8Entry view} of the octets of the {@code class} file, which
+ * are neither copied nor decoded unless requested. Together with
+ * {@linkplain #map(Path) memory mapping}, this allows a large number of
+ * {@code class} files to be scanned for names and strings without copying each
+ * entry into the heap.
+ * <p>
+ * The structure of the constant pool is defined by
+ * <a href="https://docs.oracle.com/javase/specs/jvms/se10/html/jvms-4.html#jvms-4.4">
+ *     <i>The Java Virtual Machine Specification, Java SE 10 Edition</i>,
+ *     section 4.4: The Constant Pool
+ * </a>
+ * (and later editions, which define additional kinds of entries).
+ *
+ * @author  Nathan Ryan
+ */
+public final class ConstantPool {
+
+    private static final int MAGIC = 0xCAFEBABE;
+
+    private static final int CONSTANT_Utf8 = 1;
+    private static final int CONSTANT_Integer = 3;
+    private static final int CONSTANT_Float = 4;
+    private static final int CONSTANT_Long = 5;
+    private static final int CONSTANT_Double = 6;
+    private static final int CONSTANT_Class = 7;
+    private static final int CONSTANT_String = 8;
+    private static final int CONSTANT_Fieldref = 9;
+    private static final int CONSTANT_Methodref = 10;
+    private static final int CONSTANT_InterfaceMethodref = 11;
+    private static final int CONSTANT_NameAndType = 12;
+    private static final int CONSTANT_MethodHandle = 15;
+    private static final int CONSTANT_MethodType = 16;
+    private static final int CONSTANT_Dynamic = 17;
+    private static final int CONSTANT_InvokeDynamic = 18;
+    private static final int CONSTANT_Module = 19;
+    private static final int CONSTANT_Package = 20;
+
+    private final int count;
+
+    // indexed by constant-pool index; null unless the entry is a Utf8 entry
+    private final Utf8Entry[] entries;
+
+    private final List<Utf8Entry> utf8Entries;
+
+    private ConstantPool(final int count, final Utf8Entry[] entries, final int utf8Count) {
+        this.count = count;
+        this.entries = entries;
+        final Utf8Entry[] utf8Entries = new Utf8Entry[utf8Count];
+        int n = 0;
+        for (final Utf8Entry entry : entries) {
+            if (entry != null) {
+                utf8Entries[n++] = entry;
+            }
+        }
+        this.utf8Entries = Collections.unmodifiableList(Arrays.asList(utf8Entries));
+    }
+
+    /**
+     * Reads the constant pool of the {@code class} file that begins at the
+     * position of the given buffer.
+     * <p>
+     * The position of the given buffer is unchanged. The entries of the
+     * constant pool share the octets of the given buffer, so the contents of
+     * the given buffer should not be modified for as long as they are in use.
+     *
+     * @return  the constant pool
+     * @throws  IllegalArgumentException
+     *          if the given buffer does not contain a {@code class} file that
+     *          has a well-formed constant pool
+     */
+    public static ConstantPool read(final ByteBuffer classFile) {
+        final ByteBuffer source = classFile.slice().order(ByteOrder.BIG_ENDIAN);
+        try {
+            if (source.getInt() != MAGIC) {
+                throw new IllegalArgumentException("Not a class file");
+            }
+            source.getShort(); // minor_version
+            source.getShort(); // major_version
+            final int count = source.getShort() & 0xFFFF;
+            final Utf8Entry[] entries = new Utf8Entry[Math.max(count, 1)];
+            int utf8Count = 0;
+            for (int index = 1; index < count; index++) {
+                final int tag = source.get() & 0xFF;
+                switch (tag) {
+                    case CONSTANT_Utf8: {
+                        final int length = source.getShort() & 0xFFFF;
+                        final int position = source.position();
+                        if (length > source.remaining()) {
+                            throw new BufferUnderflowException();
+                        }
+                        final ByteBuffer octets = source.duplicate();
+                        octets.limit(position + length);
+                        entries[index] = new Utf8Entry(index, octets.slice());
+                        source.position(position + length);
+                        utf8Count++;
+                        break;
+                    }
+                    case CONSTANT_Class:
+                    case CONSTANT_String:
+                    case CONSTANT_MethodType:
+                    case CONSTANT_Module:
+                    case CONSTANT_Package: {
+                        skip(source, 2);
+                        break;
+                    }
+                    case CONSTANT_MethodHandle: {
+                        skip(source, 3);
+                        break;
+                    }
+                    case CONSTANT_Integer:
+                    case CONSTANT_Float:
+                    case CONSTANT_Fieldref:
+                    case CONSTANT_Methodref:
+                    case CONSTANT_InterfaceMethodref:
+                    case CONSTANT_NameAndType:
+                    case CONSTANT_Dynamic:
+                    case CONSTANT_InvokeDynamic: {
+                        skip(source, 4);
+                        break;
+                    }
+                    case CONSTANT_Long:
+                    case CONSTANT_Double: {
+                        // An eight-octet constant takes up two entries.
+                        skip(source, 8);
+                        index++;
+                        break;
+                    }
+                    default: {
+                        throw new IllegalArgumentException("Invalid constant pool tag " + tag + " at index " + index);
+                    }
+                }
+            }
+            return new ConstantPool(count, entries, utf8Count);
+        } catch (final BufferUnderflowException e) {
+            final IllegalArgumentException x = new IllegalArgumentException("Truncated class file");
+            x.initCause(e);
+            throw x;
+        }
+    }
+
+    private static void skip(final ByteBuffer source, final int length) {
+        if (length > source.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        source.position(source.position() + length);
+    }
+
+    /**
+     * Maps the given {@code class} file into memory, and reads its constant
+     * pool.
+     * <p>
+     * The file remains mapped for as long as the constant pool or any of its
+     * entries is reachable.
+     *
+     * @return  the constant pool
+     * @throws  IOException
+     *          if an I/O error occurs
+     * @throws  IllegalArgumentException
+     *          if the given file is not a {@code class} file that has a
+     *          well-formed constant pool
+     */
+    public static ConstantPool map(final Path classFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(classFile, StandardOpenOption.READ)) {
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * @return  the value of the {@code constant_pool_count} item of the
+     *          {@code class} file, which is one greater than the greatest index
+     *          of an entry
+     */
+    public int count() {
+        return count;
+    }
+
+    /**
+     * @return  the {@code CONSTANT_Utf8_info} entry at the given index
+     * @throws  IndexOutOfBoundsException
+     *          if the given index is not that of an entry
+     * @throws  IllegalArgumentException
+     *          if the entry at the given index is not a
+     *          {@code CONSTANT_Utf8_info} entry
+     */
+    public Utf8Entry utf8Entry(final int index) {
+        if ((index < 1) || (index >= count)) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for constant pool count " + count);
+        }
+        final Utf8Entry entry = entries[index];
+        if (entry == null) {
+            throw new IllegalArgumentException("Not a CONSTANT_Utf8_info entry at index " + index);
+        }
+        return entry;
+    }
+
+    /**
+     * @return  an unmodifiable list of the {@code CONSTANT_Utf8_info} entries,
+     *          in order of index
+     */
+    public List<Utf8Entry> utf8Entries() {
+        return utf8Entries;
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+package mutf8.classfile;
+
+import mutf8.InvalidModifiedUtf8Exception;
+import mutf8.ModifiedUtf8;
+import mutf8.ModifiedUtf8Charset;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+
+/**
+ * A {@code CONSTANT_Utf8_info} entry of the constant pool of a {@code class}
+ * file.
+ * <p>
+ * An instance of this class is a view of the octets of the entry in the buffer
+ * from which the constant pool was read; the octets are not copied. The octets
+ * are decoded only on demand, and the decoded string is retained.
+ *
+ * @author  Nathan Ryan
+ * @see     ConstantPool
+ */
+public final class Utf8Entry {
+
+    private static final ModifiedUtf8Charset MUTF_8 = new ModifiedUtf8Charset();
+
+    private final int index;
+
+    private final ByteBuffer octets;
+
+    private String string;
+
+    Utf8Entry(final int index, final ByteBuffer octets) {
+        this.index = index;
+        this.octets = octets;
+    }
+
+    /**
+     * @return  the index of this entry in the constant pool
+     */
+    public int index() {
+        return index;
+    }
+
+    /**
+     * @return  the number of octets of the encoding of this entry
+     */
+    public int length() {
+        return octets.capacity();
+    }
+
+    /**
+     * @return  a new read-only buffer that contains exactly the octets of the
+     *          encoding of this entry, and that shares them with the buffer
+     *          from which the constant pool was read
+     */
+    public ByteBuffer octets() {
+        return octets.asReadOnlyBuffer();
+    }
+
+    /**
+     * Decodes the octets of this entry, if they have not already been decoded,
+     * as by {@link ModifiedUtf8#decode(ByteBuffer, int, int)}, so that the
+     * octets of a mapped entry are not copied into a new array.
+     *
+     * @return  the decoded string
+     * @throws  InvalidModifiedUtf8Exception
+     *          if the octets of this entry are not a valid encoding, with the
+     *          index of the malformed sequence in the octets of this entry as
+     *          its {@linkplain InvalidModifiedUtf8Exception#getOffset() offset}
+     */
+    public String decode() {
+        String result = string;
+        if (result == null) {
+            result = ModifiedUtf8.decode(octets, 0, octets.capacity());
+            string = result;
+        }
+        return result;
+    }
+
+    /**
+     * @return  the decoded string, if the octets of this entry are a valid
+     *          encoding; otherwise, the string decoded with each malformed
+     *          sequence replaced by U+FFFD, which is not retained
+     * @see     #decode()
+     */
+    @Override
+    public String toString() {
+        try {
+            return decode();
+        } catch (final InvalidModifiedUtf8Exception e) {
+            // Each sequence, and each malformed sequence, is at least one
+            // octet, so the target is long enough.
+            final CharsetDecoder decoder = MUTF_8.newDecoder();
+            final ByteBuffer source = octets.duplicate();
+            final CharBuffer target = CharBuffer.allocate(octets.capacity());
+            while (true) {
+                final CoderResult result = decoder.decode(source, target, false);
+                if (result.isError()) {
+                    // The decoder leaves the source after the malformed
+                    // sequence.
+                    target.put('\uFFFD');
+                    continue;
+                }
+                if (source.hasRemaining()) {
+                    // a partial sequence at the end
+                    target.put('\uFFFD');
+                }
+                return target.flip().toString();
+            }
+        }
+    }
+}
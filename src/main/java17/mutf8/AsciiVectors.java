@@ -0,0 +1,112 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+package mutf8;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.util.Optional;
+
+/**
+ * Bulk operations on runs of one-octet sequences that use the Vector API to
+ * examine many octets or characters at once.
+ * <p>
+ * The Vector API is provided by the incubator module
+ * {@code jdk.incubator.vector}, which is not resolved unless it is requested,
+ * e.g., by the command-line option
+ * {@code --add-modules jdk.incubator.vector}. This class is available only if
+ * that module is present in the boot layer; otherwise, the callers of this
+ * class fall back to the scalar operations of {@link Ascii}.
+ * <p>
+ * Each operation handles only whole vectors. The remainder of a run, including
+ * the vector in which the run ends, is left to the scalar operations, which
+ * locate the exact end of the run.
+ *
+ * @author  Nathan Ryan
+ * @see     Ascii
+ */
+final class AsciiVectors {
+
+    private static final String MODULE_NAME = "jdk.incubator.vector";
+
+    static final boolean AVAILABLE = isAvailable();
+
+    private AsciiVectors() {
+    }
+
+    private static boolean isAvailable() {
+        final Optional<Module> module = ModuleLayer.boot().findModule(MODULE_NAME);
+        if (module.isEmpty()) {
+            return false;
+        }
+        // A named module reads only the modules that it requires, and this
+        // module cannot require an incubator module without making it
+        // mandatory. (For the unnamed module, this is a no-op.)
+        AsciiVectors.class.getModule().addReads(module.get());
+        return true;
+    }
+
+    /**
+     * @see     Ascii#decode(byte[], int, char[], int, int)
+     */
+    static int decode(final byte[] source, final int sourceIndex, final char[] target, final int targetIndex, final int length) {
+        return Kernels.decode(source, sourceIndex, target, targetIndex, length);
+    }
+
+    /**
+     * @see     Ascii#encode(char[], int, byte[], int, int)
+     */
+    static int encode(final char[] source, final int sourceIndex, final byte[] target, final int targetIndex, final int length) {
+        return Kernels.encode(source, sourceIndex, target, targetIndex, length);
+    }
+
+    // The Vector API is referenced only by this class, which is not initialized
+    // unless the Vector API is available.
+    private static final class Kernels {
+
+        private static final VectorSpecies<Byte> BYTES = ByteVector.SPECIES_PREFERRED;
+
+        // There are half as many lanes of shorts as of bytes in a vector of the
+        // same shape, so each vector of bytes is widened in two parts.
+        private static final VectorSpecies<Short> SHORTS = ShortVector.SPECIES_PREFERRED;
+
+        // A vector of shorts is narrowed to a vector of bytes of half the size.
+        private static final VectorSpecies<Byte> HALF_BYTES = VectorSpecies.of(byte.class, VectorShape.forBitSize(SHORTS.vectorBitSize() / 2));
+
+        static int decode(final byte[] source, final int sourceIndex, final char[] target, final int targetIndex, final int length) {
+            final int step = BYTES.length();
+            int n = 0;
+            while (length - n >= step) {
+                final ByteVector octets = ByteVector.fromArray(BYTES, source, sourceIndex + n);
+                if (octets.compare(VectorOperators.LT, (byte)(0)).anyTrue()) {
+                    break;
+                }
+                ((ShortVector)(octets.convertShape(VectorOperators.B2S, SHORTS, 0))).intoCharArray(target, targetIndex + n);
+                ((ShortVector)(octets.convertShape(VectorOperators.B2S, SHORTS, 1))).intoCharArray(target, targetIndex + n + SHORTS.length());
+                n += step;
+            }
+            return n;
+        }
+
+        static int encode(final char[] source, final int sourceIndex, final byte[] target, final int targetIndex, final int length) {
+            final int step = SHORTS.length();
+            int n = 0;
+            while (length - n >= step) {
+                final ShortVector chars = ShortVector.fromCharArray(SHORTS, source, sourceIndex + n);
+                // The characters U+0001 through U+007F are exactly those that
+                // are unsigned-less-than 0x80 after being decremented.
+                if (chars.sub((short)(1)).compare(VectorOperators.UNSIGNED_GE, (short)(0x7F)).anyTrue()) {
+                    break;
+                }
+                ((ByteVector)(chars.convertShape(VectorOperators.S2B, HALF_BYTES, 0))).intoArray(target, targetIndex + n);
+                n += step;
+            }
+            return n;
+        }
+    }
+}
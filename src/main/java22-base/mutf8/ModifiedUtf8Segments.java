@@ -0,0 +1,55 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+package mutf8;
+
+import java.lang.foreign.MemorySegment;
+
+/**
+ * Static methods for decoding and encoding modified UTF-8 directly between
+ * memory segments and strings, which are available only on the Java SE 22 or
+ * later.
+ * <p>
+ * This is the variant of the class in the base of a multi-release JAR, so
+ * that every layer of the JAR exports the same API. It is compiled for the
+ * base release, but against the API of the Java SE 22, and is therefore built
+ * only by the Java SE 22 or later. It is loaded only on an earlier release,
+ * on which every method throws {@link UnsupportedOperationException}; on the
+ * Java SE 22 or later, the variant in the Java SE 22 layer is loaded instead.
+ *
+ * @author  Nathan Ryan
+ * @see     ModifiedUtf8
+ */
+public final class ModifiedUtf8Segments {
+
+    private ModifiedUtf8Segments() {
+    }
+
+    /**
+     * Decodes the given range of the given segment.
+     *
+     * @return  the decoded string
+     * @throws  UnsupportedOperationException
+     *          always, since memory segments require the Java SE 22 or later
+     */
+    public static String decode(final MemorySegment source, final long offset, final long length) {
+        throw unsupported();
+    }
+
+    /**
+     * Encodes the given characters into the given segment, starting at the
+     * given offset.
+     *
+     * @return  the number of octets written
+     * @throws  UnsupportedOperationException
+     *          always, since memory segments require the Java SE 22 or later
+     */
+    public static long encode(final CharSequence source, final MemorySegment target, final long offset) {
+        throw unsupported();
+    }
+
+    private static UnsupportedOperationException unsupported() {
+        return new UnsupportedOperationException("Memory segments require the Java SE 22 or later");
+    }
+}
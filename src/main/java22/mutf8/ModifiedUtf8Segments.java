@@ -0,0 +1,172 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+package mutf8;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.MalformedInputException;
+import java.util.Objects;
+
+/**
+ * Static methods for decoding and encoding modified UTF-8 directly between
+ * memory segments and strings.
+ * <p>
+ * Unlike a buffer, a memory segment is addressed by a {@code long} offset, so
+ * these methods process an encoding in place anywhere in a segment of any
+ * size, e.g., a memory-mapped file of more than 2 GB. The octets are copied
+ * through a small array, a block at a time, and decoded and encoded by the
+ * same loops as those of the charset, so a segment is validated exactly as a
+ * buffer is.
+ * <p>
+ * The Foreign Function and Memory API is final as of the Java SE 22, so this
+ * class is implemented only in the Java SE 22 layer of a multi-release JAR.
+ * The base of the JAR contains a variant of the same API, each method of
+ * which throws {@link UnsupportedOperationException}.
+ *
+ * @author  Nathan Ryan
+ * @see     ModifiedUtf8
+ */
+public final class ModifiedUtf8Segments {
+
+    private static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
+    private static final int STAGING_LENGTH = 4096;
+
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    private ModifiedUtf8Segments() {
+    }
+
+    /**
+     * Decodes the given range of the given segment.
+     * <p>
+     * The {@linkplain InvalidModifiedUtf8Exception#getOffset() offset} of an
+     * exception thrown for a malformed sequence is the offset of its first
+     * octet in the given segment.
+     *
+     * @return  the decoded string
+     * @throws  IndexOutOfBoundsException
+     *          if the given range is out of the bounds of the given segment
+     * @throws  InvalidModifiedUtf8Exception
+     *          if the given range is not a valid encoding
+     * @throws  OutOfMemoryError
+     *          if the decoded string would be too long to be represented
+     */
+    public static String decode(final MemorySegment source, final long offset, final long length) {
+        Objects.checkFromIndexSize(offset, length, source.byteSize());
+        if (length <= STAGING_LENGTH) {
+            final byte[] octets = new byte[(int)(length)];
+            MemorySegment.copy(source, ValueLayout.JAVA_BYTE, offset, octets, 0, octets.length);
+            try {
+                return ModifiedUtf8.decode(octets, 0, octets.length);
+            } catch (final InvalidModifiedUtf8Exception e) {
+                throw new InvalidModifiedUtf8Exception((MalformedInputException)(e.getCause()), offset + e.getOffset());
+            }
+        }
+        // A malformed encoding decodes no more characters than it has octets
+        // that are not continuation octets, so the array is large enough.
+        final long n = length - continuations(source, offset, length);
+        if (n > MAX_ARRAY_LENGTH) {
+            throw new OutOfMemoryError("Required array length " + n + " exceeds implementation limit");
+        }
+        final CharBuffer target = CharBuffer.allocate((int)(n));
+        final CharsetDecoder decoder = new ModifiedUtf8Charset().newDecoder();
+        final byte[] staging = new byte[STAGING_LENGTH];
+        final long limit = offset + length;
+        long index = offset;
+        // the number of octets of a partial sequence at the end of the
+        // previous block, which are carried to the start of the next block
+        int carried = 0;
+        while (true) {
+            final int k = (int)(Math.min(staging.length - carried, limit - index));
+            MemorySegment.copy(source, ValueLayout.JAVA_BYTE, index, staging, carried, k);
+            index += k;
+            final ByteBuffer block = ByteBuffer.wrap(staging, 0, carried + k);
+            final CoderResult result = decoder.decode(block, target, false);
+            if (result.isMalformed()) {
+                // The decoder consumes the octets of a malformed sequence.
+                final long at = index - block.limit() + block.position() - result.length();
+                throw new InvalidModifiedUtf8Exception(new MalformedInputException(result.length()), at);
+            }
+            carried = block.remaining();
+            if (index == limit) {
+                if (carried > 0) {
+                    // The input is complete, so a partial sequence is
+                    // malformed.
+                    throw new InvalidModifiedUtf8Exception(new MalformedInputException(carried), limit - carried);
+                }
+                return new String(target.array(), 0, target.position());
+            }
+            System.arraycopy(staging, block.position(), staging, 0, carried);
+        }
+    }
+
+    /**
+     * Encodes the given characters into the given segment, starting at the
+     * given offset.
+     * <p>
+     * No octets are written unless all octets fit.
+     *
+     * @return  the number of octets written
+     * @throws  IndexOutOfBoundsException
+     *          if the given offset is out of the bounds of the given segment,
+     *          or if the encoding does not fit in the given segment
+     * @throws  IllegalArgumentException
+     *          if the given segment is read-only
+     */
+    public static long encode(final CharSequence source, final MemorySegment target, final long offset) {
+        final int length = source.length();
+        Objects.checkIndex(offset, target.byteSize() + 1);
+        if (target.isReadOnly()) {
+            throw new IllegalArgumentException("Segment is read-only");
+        }
+        // Compute the exact length of the encoding only if the segment could
+        // possibly be too short.
+        if ((3L * length) > (target.byteSize() - offset)) {
+            final long n = ModifiedUtf8.encodedLength(source);
+            if (n > (target.byteSize() - offset)) {
+                throw new IndexOutOfBoundsException("Encoding of length " + n + " out of bounds for length " + (target.byteSize() - offset));
+            }
+        }
+        // Each character is encoded as at most three octets, so a block of
+        // characters always fits in the array.
+        final byte[] staging = new byte[STAGING_LENGTH];
+        final int blockLength = STAGING_LENGTH / 3;
+        long targetIndex = offset;
+        for (int sourceIndex = 0; sourceIndex < length; sourceIndex += blockLength) {
+            final int n = ModifiedUtf8.encode(source, sourceIndex, Math.min(length, sourceIndex + blockLength), staging, 0);
+            MemorySegment.copy(staging, 0, target, ValueLayout.JAVA_BYTE, targetIndex, n);
+            targetIndex += n;
+        }
+        return targetIndex - offset;
+    }
+
+    /**
+     * @return  the number of continuation octets, i.e., octets of the form
+     *          10xxxxxx, in the given range of the given segment
+     */
+    private static long continuations(final MemorySegment source, final long offset, final long length) {
+        final long limit = offset + length;
+        long n = 0;
+        long i = offset;
+        for (; limit - i >= Long.BYTES; i += Long.BYTES) {
+            final long x = source.get(ValueLayout.JAVA_LONG_UNALIGNED, i);
+            // An octet of the form 10xxxxxx has its high bit set and, shifted
+            // left by one, its high bit clear. The order of the octets in the
+            // word does not matter to the count.
+            n += Long.bitCount(x & ~(x << 1) & HIGH_BITS);
+        }
+        for (; i < limit; i++) {
+            if ((source.get(ValueLayout.JAVA_BYTE, i) & 0xC0) == 0x80) {
+                n++;
+            }
+        }
+        return n;
+    }
+}
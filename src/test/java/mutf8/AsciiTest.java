@@ -0,0 +1,184 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+package mutf8;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AsciiTest {
+
+    @Nested
+    class MethodCount {
+
+        @Test
+        void emptyRun() {
+            assertEquals(0, Ascii.count(new byte[] { (byte)(0xC3), (byte)(0x80) }, 0, 2));
+        }
+
+        @Test
+        void longRunEndedByLength() {
+            final byte[] source = "java/lang/Object;java/lang/String".getBytes(StandardCharsets.US_ASCII);
+            assertEquals(source.length - 1, Ascii.count(source, 1, source.length - 1));
+        }
+
+        @Test
+        void longRunEndedByMultipleOctetSequence() {
+            for (int i = 0; i < 24; i++) {
+                final byte[] source = new byte[32];
+                source[i] = (byte)(0xE1);
+                assertEquals(i, Ascii.count(source, 0, source.length));
+            }
+        }
+    }
+
+    @Nested
+    class MethodCountBuffer {
+
+        @Test
+        void longRunEndedByMultipleOctetSequence() {
+            for (int i = 0; i < 24; i++) {
+                final ByteBuffer source = ByteBuffer.allocateDirect(32);
+                source.put(i, (byte)(0xE1));
+                assertEquals(i, Ascii.count(source, 0, source.capacity()));
+                assertEquals(Math.max(i - 3, 0), Ascii.count(source, 3, Math.max(i - 3, 0)));
+            }
+        }
+    }
+
+    @Nested
+    class MethodDecode {
+
+        @Test
+        void emptyRun() {
+            final char[] target = new char[4];
+            assertEquals(0, Ascii.decode(new byte[] { (byte)(0xC3), (byte)(0x80) }, 0, target, 0, 2));
+            assertArrayEquals(new char[4], target);
+        }
+
+        @Test
+        void shortRun() {
+            final char[] target = new char[4];
+            assertEquals(3, Ascii.decode(new byte[] { 'A', 0x00, 'B', (byte)(0xC3), (byte)(0x80) }, 0, target, 1, 5));
+            assertArrayEquals(new char[] { 0, 'A', 0, 'B' }, target);
+        }
+
+        @Test
+        void longRunEndedByLength() {
+            final byte[] source = "java/lang/Object;java/lang/String".getBytes(StandardCharsets.US_ASCII);
+            final char[] target = new char[source.length];
+            assertEquals(source.length, Ascii.decode(source, 0, target, 0, source.length));
+            assertEquals("java/lang/Object;java/lang/String", new String(target));
+        }
+
+        @Test
+        void longRunEndedByLimit() {
+            final byte[] source = "java/lang/Object;java/lang/String".getBytes(StandardCharsets.US_ASCII);
+            final char[] target = new char[source.length];
+            assertEquals(11, Ascii.decode(source, 1, target, 0, 11));
+            assertEquals("ava/lang/Ob", new String(target, 0, 11));
+            assertArrayEquals(new char[source.length - 11], Arrays.copyOfRange(target, 11, source.length));
+        }
+
+        @Test
+        void longRunEndedByMultipleOctetSequence() {
+            for (int i = 0; i < 24; i++) {
+                final byte[] source = new byte[32];
+                Arrays.fill(source, (byte)('A'));
+                source[i] = (byte)(0xC3);
+                source[i + 1] = (byte)(0x80);
+                final char[] target = new char[32];
+                assertEquals(i, Ascii.decode(source, 0, target, 0, source.length));
+            }
+        }
+
+        @Test
+        void runLongerThanVectorEndedByMultipleOctetSequence() {
+            for (int i = 0; i < 80; i++) {
+                final byte[] source = new byte[96];
+                Arrays.fill(source, (byte)('A'));
+                source[i] = (byte)(0xE1);
+                final char[] target = new char[96];
+                assertEquals(i, Ascii.decode(source, 0, target, 0, source.length));
+                for (int j = 0; j < i; j++) {
+                    assertEquals('A', target[j]);
+                }
+                assertEquals(0, target[i]);
+            }
+        }
+    }
+
+    @Nested
+    class MethodEncode {
+
+        @Test
+        void emptyRun() {
+            final byte[] target = new byte[4];
+            assertEquals(0, Ascii.encode(new char[] { '\u00C0', 'A' }, 0, target, 0, 2));
+            assertEquals(0, Ascii.encode(new char[] { '\u0000', 'A' }, 0, target, 0, 2));
+            assertArrayEquals(new byte[4], target);
+        }
+
+        @Test
+        void shortRun() {
+            final byte[] target = new byte[4];
+            assertEquals(2, Ascii.encode(new char[] { 'A', 'B', '\u0000', 'C' }, 0, target, 1, 4));
+            assertArrayEquals(new byte[] { 0, 'A', 'B', 0 }, target);
+        }
+
+        @Test
+        void longRunEndedByLength() {
+            final char[] source = "java/lang/Object;java/lang/String".toCharArray();
+            final byte[] target = new byte[source.length];
+            assertEquals(source.length, Ascii.encode(source, 0, target, 0, source.length));
+            assertEquals("java/lang/Object;java/lang/String", new String(target, StandardCharsets.US_ASCII));
+        }
+
+        @Test
+        void longRunEndedByLimit() {
+            final char[] source = "java/lang/Object;java/lang/String".toCharArray();
+            final byte[] target = new byte[source.length];
+            assertEquals(11, Ascii.encode(source, 1, target, 0, 11));
+            assertEquals("ava/lang/Ob", new String(target, 0, 11, StandardCharsets.US_ASCII));
+            assertArrayEquals(new byte[source.length - 11], Arrays.copyOfRange(target, 11, source.length));
+        }
+
+        @Test
+        void longRunEndedByCharacterOutsideOfRange() {
+            // Runs longer than a vector of any shape, ended at every index by
+            // each kind of character that is not encoded as one octet.
+            for (final char ch : new char[] { '\u0000', '\u0080', '\u1E00', '\uFF41' }) {
+                for (int i = 0; i < 80; i++) {
+                    final char[] source = new char[96];
+                    Arrays.fill(source, 'A');
+                    source[i] = ch;
+                    final byte[] target = new byte[96];
+                    assertEquals(i, Ascii.encode(source, 0, target, 0, source.length));
+                    for (int j = 0; j < i; j++) {
+                        assertEquals('A', target[j]);
+                    }
+                    assertEquals(0, target[i]);
+                }
+            }
+        }
+    }
+
+    @Nested
+    class ClassAsciiVectors {
+
+        @Test
+        void availability() {
+            // The build sets this property when it runs the tests against the
+            // multi-release JAR with the incubator module resolved, in which
+            // case the Vector API kernels must be the ones under test.
+            assertEquals(Boolean.getBoolean("mutf8.vectors"), AsciiVectors.AVAILABLE);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+package mutf8;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.MalformedInputException;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DexStringDataTest {
+
+    // string_data_item of the given string, preceded by the given number of
+    // octets of padding
+    static byte[] item(final int padding, final String s) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < padding; i++) {
+            out.write('!');
+        }
+        int size = s.length();
+        while (size >= 0x80) {
+            out.write(0x80 | (size & 0x7F));
+            size >>>= 7;
+        }
+        out.write(size);
+        final byte[] encoding = ModifiedUtf8.encode(s);
+        out.write(encoding, 0, encoding.length);
+        out.write(0);
+        return out.toByteArray();
+    }
+
+    @Nested
+    class MethodReadFromArray {
+
+        @Test
+        void stringIsEmpty() {
+            assertEquals("", DexStringData.read(new byte[] { 0x00, 0x00 }, 0));
+        }
+
+        @Test
+        void stringContainsOnly1OctetSequences() {
+            assertEquals("Ljava/lang/Object;", DexStringData.read(item(0, "Ljava/lang/Object;"), 0));
+        }
+
+        @Test
+        void stringContainsVarious() {
+            assertEquals(ModifiedUtf8Test.VARIOUS, DexStringData.read(item(3, ModifiedUtf8Test.VARIOUS), 3));
+        }
+
+        @Test
+        void stringIsLong() {
+            // both the scan by words and the length of more than one octet
+            final String s = ModifiedUtf8Test.repeat("ab\u00C0\u1E00\u0000", 100);
+            assertEquals(s, DexStringData.read(item(1, s), 1));
+        }
+
+        @Test
+        void stringIsFollowedByOtherItems() {
+            final byte[] first = item(0, "\u1E00bc");
+            final byte[] second = item(0, "defghijklmnop");
+            final byte[] source = new byte[first.length + second.length];
+            System.arraycopy(first, 0, source, 0, first.length);
+            System.arraycopy(second, 0, source, first.length, second.length);
+            assertEquals("\u1E00bc", DexStringData.read(source, 0));
+            assertEquals("defghijklmnop", DexStringData.read(source, first.length));
+        }
+
+        @Test
+        void sizeDiffers() {
+            final byte[] source = item(0, "abc\u00C0");
+            source[0] = 3;
+            assertThrows(IllegalArgumentException.class, () -> DexStringData.read(source, 0));
+        }
+
+        @Test
+        void sizeIsTooLong() {
+            assertThrows(IllegalArgumentException.class, () -> DexStringData.read(new byte[] { (byte)(0x80), (byte)(0x80), (byte)(0x80), (byte)(0x80), (byte)(0x80), 0x00, 0x00 }, 0));
+        }
+
+        @Test
+        void sizeIsTruncated() {
+            assertThrows(IllegalArgumentException.class, () -> DexStringData.read(new byte[] { (byte)(0x80) }, 0));
+        }
+
+        @Test
+        void stringIsUnterminated() {
+            final byte[] source = item(0, "abcdefghijklmnop");
+            assertThrows(IllegalArgumentException.class, () -> DexStringData.read(Arrays.copyOf(source, source.length - 1), 0));
+        }
+
+        @Test
+        void stringIsMalformed() {
+            final byte[] source = { 0x03, 'A', (byte)(0xC3), 'B', 0x00 };
+            final InvalidModifiedUtf8Exception e = assertThrows(InvalidModifiedUtf8Exception.class, () -> DexStringData.read(source, 0));
+            assertEquals(2, ((MalformedInputException)(e.getCause())).getInputLength());
+            assertEquals(2, e.getOffset());
+        }
+
+        @Test
+        void offsetIsOutOfBounds() {
+            assertThrows(IndexOutOfBoundsException.class, () -> DexStringData.read(new byte[] { 0x00, 0x00 }, 2));
+        }
+    }
+
+    @Nested
+    class MethodReadFromBuffer {
+
+        @Test
+        void bufferIsHeap() {
+            final ByteBuffer source = ByteBuffer.wrap(item(4, ModifiedUtf8Test.VARIOUS), 2, 12).slice();
+            assertEquals(ModifiedUtf8Test.VARIOUS, DexStringData.read(source, 2));
+            assertEquals(0, source.position());
+        }
+
+        @Test
+        void bufferIsDirect() {
+            assertEquals(ModifiedUtf8Test.VARIOUS, DexStringData.read(ModifiedUtf8CharsetTest.direct(item(4, ModifiedUtf8Test.VARIOUS)), 4));
+        }
+
+        @Test
+        void bufferIsDirectAndItemIsLongerThanChunks() {
+            // sequences that span the ends of the chunks copied from the
+            // buffer, whatever their length
+            for (final int length : new int[] { 100, 1000, 10000 }) {
+                final String s = ModifiedUtf8Test.repeat(ModifiedUtf8Test.VARIOUS + "abc", length);
+                assertEquals(s, DexStringData.read(ModifiedUtf8CharsetTest.direct(item(3, s)), 3));
+            }
+        }
+
+        @Test
+        void stringIsEmpty() {
+            assertEquals("", DexStringData.read(ModifiedUtf8CharsetTest.direct(new byte[] { '!', 0x00, 0x00 }), 1));
+        }
+
+        @Test
+        void stringIsUnterminatedWithinLimit() {
+            final byte[] octets = item(2, "abc");
+            final IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> DexStringData.read(ByteBuffer.wrap(octets, 1, octets.length - 2).slice(), 1));
+            assertEquals("Unterminated string_data_item at offset 1", e.getMessage());
+            assertThrows(IllegalArgumentException.class, () -> DexStringData.read(ModifiedUtf8CharsetTest.direct(octets).limit(octets.length - 1), 0));
+            final byte[] longer = item(2, ModifiedUtf8Test.repeat("abc", 1000));
+            final IllegalArgumentException f = assertThrows(IllegalArgumentException.class, () -> DexStringData.read(ModifiedUtf8CharsetTest.direct(longer).limit(longer.length - 1), 2));
+            assertEquals("Unterminated string_data_item at offset 2", f.getMessage());
+        }
+
+        @Test
+        void stringIsMalformed() {
+            final byte[] octets = { '!', 0x03, 'A', (byte)(0xC3), 'B', 0x00 };
+            final InvalidModifiedUtf8Exception e = assertThrows(InvalidModifiedUtf8Exception.class, () -> DexStringData.read(ModifiedUtf8CharsetTest.direct(octets), 1));
+            assertEquals(3, e.getOffset());
+            final ByteBuffer slice = ByteBuffer.wrap(octets, 1, 5).slice();
+            assertEquals(2, assertThrows(InvalidModifiedUtf8Exception.class, () -> DexStringData.read(slice, 0)).getOffset());
+        }
+    }
+}
@@ -29,6 +29,26 @@ class InvalidModifiedUtf8ExceptionTest {
             MalformedInputException cause = new MalformedInputException(0);
             assertSame(cause, new InvalidModifiedUtf8Exception(cause).getCause());
         }
+
+        @Test
+        void offset() {
+            MalformedInputException cause = new MalformedInputException(0);
+            assertSame(cause, new InvalidModifiedUtf8Exception(cause, 7).getCause());
+        }
+    }
+
+    @Nested
+    class MethodGetOffset {
+
+        @Test
+        void offsetIsUnknown() {
+            assertEquals(-1, new InvalidModifiedUtf8Exception(new MalformedInputException(0)).getOffset());
+        }
+
+        @Test
+        void offsetIsKnown() {
+            assertEquals(7, new InvalidModifiedUtf8Exception(new MalformedInputException(0), 7).getOffset());
+        }
     }
 
     @Nested
@@ -0,0 +1,233 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+package mutf8;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.charset.MalformedInputException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ModifiedUtf8AsyncDecoderTest {
+
+    static final String TEXT = ModifiedUtf8Test.repeat(ModifiedUtf8Test.VARIOUS + "abcdefghijklm", 40);
+
+    static Path file(final byte[] octets) throws IOException {
+        final Path path = Files.createTempFile("mutf8", ".bin");
+        Files.write(path, octets);
+        return path;
+    }
+
+    static String decode(final Path path, final long position, final int blockSize) throws Exception {
+        final StringBuilder builder = new StringBuilder();
+        try (AsynchronousFileChannel channel = AsynchronousFileChannel.open(path, StandardOpenOption.READ)) {
+            final long n = ModifiedUtf8AsyncDecoder.decode(channel, position, blockSize, append(builder)).get(10, TimeUnit.SECONDS);
+            assertEquals(builder.length(), n);
+        }
+        return builder.toString();
+    }
+
+    static Function<CharBuffer, CompletableFuture<Void>> append(final StringBuilder builder) {
+        return chars -> {
+            assertTrue(chars.hasRemaining());
+            builder.append(chars);
+            return CompletableFuture.completedFuture(null);
+        };
+    }
+
+    static Throwable failure(final CompletableFuture<?> future) {
+        return assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS)).getCause();
+    }
+
+    @Nested
+    class MethodDecode {
+
+        @Test
+        void blockIsDefault() throws Exception {
+            final Path path = file(ModifiedUtf8.encode(TEXT));
+            final StringBuilder builder = new StringBuilder();
+            try (AsynchronousFileChannel channel = AsynchronousFileChannel.open(path, StandardOpenOption.READ)) {
+                assertEquals(TEXT.length(), (long)(ModifiedUtf8AsyncDecoder.decode(channel, 0, append(builder)).get(10, TimeUnit.SECONDS)));
+            } finally {
+                Files.delete(path);
+            }
+            assertEquals(TEXT, builder.toString());
+        }
+
+        @Test
+        void blocksSplitSequences() throws Exception {
+            final Path path = file(ModifiedUtf8.encode(TEXT));
+            try {
+                for (int blockSize = 1; blockSize <= 10; blockSize++) {
+                    assertEquals(TEXT, decode(path, 0, blockSize));
+                }
+            } finally {
+                Files.delete(path);
+            }
+        }
+
+        @Test
+        void positionIsNotZero() throws Exception {
+            final byte[] octets = ModifiedUtf8.encode(TEXT);
+            final byte[] padded = new byte[octets.length + 3];
+            System.arraycopy(octets, 0, padded, 3, octets.length);
+            final Path path = file(padded);
+            try {
+                assertEquals(TEXT, decode(path, 3, 64));
+            } finally {
+                Files.delete(path);
+            }
+        }
+
+        @Test
+        void fileIsEmpty() throws Exception {
+            final Path path = file(new byte[0]);
+            try {
+                assertEquals("", decode(path, 0, 16));
+            } finally {
+                Files.delete(path);
+            }
+        }
+
+        @Test
+        void consumerIsSlow() throws Exception {
+            // The stages returned by the consumer are completed by this
+            // thread, one at a time; the consumer must not be invoked again
+            // before the previous stage has completed.
+            final Path path = file(ModifiedUtf8.encode(TEXT));
+            final BlockingQueue<CompletableFuture<Void>> stages = new LinkedBlockingQueue<>();
+            final AtomicReference<CompletableFuture<Void>> current = new AtomicReference<>(CompletableFuture.completedFuture(null));
+            final AtomicBoolean overrun = new AtomicBoolean();
+            final StringBuilder builder = new StringBuilder();
+            try (AsynchronousFileChannel channel = AsynchronousFileChannel.open(path, StandardOpenOption.READ)) {
+                final CompletableFuture<Long> future = ModifiedUtf8AsyncDecoder.decode(channel, 0, 32, chars -> {
+                    if (!current.get().isDone()) {
+                        overrun.set(true);
+                    }
+                    builder.append(chars);
+                    final CompletableFuture<Void> stage = new CompletableFuture<>();
+                    current.set(stage);
+                    stages.add(stage);
+                    return stage;
+                });
+                while (!future.isDone()) {
+                    final CompletableFuture<Void> stage = stages.poll(10, TimeUnit.MILLISECONDS);
+                    if (stage != null) {
+                        stage.complete(null);
+                    }
+                }
+                assertEquals(TEXT.length(), (long)(future.get()));
+            } finally {
+                Files.delete(path);
+            }
+            assertFalse(overrun.get());
+            assertEquals(TEXT, builder.toString());
+        }
+
+        @Test
+        void futureIsCancelledByConsumer() throws Exception {
+            // The stage returned by the consumer is completed by this thread
+            // after the future has been cancelled; no more blocks may then be
+            // read, nor passed to the consumer.
+            final Path path = file(ModifiedUtf8.encode(TEXT));
+            final CompletableFuture<CompletableFuture<Long>> cancelled = new CompletableFuture<>();
+            final CompletableFuture<Void> stage = new CompletableFuture<>();
+            final AtomicInteger invocations = new AtomicInteger();
+            try (AsynchronousFileChannel channel = AsynchronousFileChannel.open(path, StandardOpenOption.READ)) {
+                final CompletableFuture<Long> future = ModifiedUtf8AsyncDecoder.decode(channel, 0, 16, chars -> {
+                    invocations.incrementAndGet();
+                    cancelled.join().cancel(false);
+                    return stage;
+                });
+                cancelled.complete(future);
+                assertThrows(CancellationException.class, () -> future.get(10, TimeUnit.SECONDS));
+                stage.complete(null);
+                Thread.sleep(100);
+            } finally {
+                Files.delete(path);
+            }
+            assertEquals(1, invocations.get());
+        }
+
+        @Test
+        void sequenceIsMalformed() throws Exception {
+            final Path path = file(new byte[] { 'A', 'B', (byte)(0xE1), 'C', 'D' });
+            try (AsynchronousFileChannel channel = AsynchronousFileChannel.open(path, StandardOpenOption.READ)) {
+                final CompletableFuture<Long> future = ModifiedUtf8AsyncDecoder.decode(channel, 0, 2, chars -> CompletableFuture.completedFuture(null));
+                assertEquals(2, ((MalformedInputException)(failure(future))).getInputLength());
+            } finally {
+                Files.delete(path);
+            }
+        }
+
+        @Test
+        void sequenceIsMalformedAfterCharacters() throws Exception {
+            final Path path = file(new byte[] { 'A', 'B', (byte)(0xE1), 'C', 'D' });
+            final StringBuilder builder = new StringBuilder();
+            try (AsynchronousFileChannel channel = AsynchronousFileChannel.open(path, StandardOpenOption.READ)) {
+                final CompletableFuture<Long> future = ModifiedUtf8AsyncDecoder.decode(channel, 0, 16, append(builder));
+                assertEquals(2, ((MalformedInputException)(failure(future))).getInputLength());
+            } finally {
+                Files.delete(path);
+            }
+            assertEquals("AB", builder.toString());
+        }
+
+        @Test
+        void sequenceIsPartialAtEnd() throws Exception {
+            final Path path = file(new byte[] { 'A', (byte)(0xE1), (byte)(0xB8) });
+            try (AsynchronousFileChannel channel = AsynchronousFileChannel.open(path, StandardOpenOption.READ)) {
+                final CompletableFuture<Long> future = ModifiedUtf8AsyncDecoder.decode(channel, 0, chars -> CompletableFuture.completedFuture(null));
+                assertEquals(2, ((MalformedInputException)(failure(future))).getInputLength());
+            } finally {
+                Files.delete(path);
+            }
+        }
+
+        @Test
+        void consumerFails() throws Exception {
+            final Path path = file(ModifiedUtf8.encode(TEXT));
+            final IllegalStateException e = new IllegalStateException();
+            try (AsynchronousFileChannel channel = AsynchronousFileChannel.open(path, StandardOpenOption.READ)) {
+                final CompletableFuture<Void> stage = new CompletableFuture<>();
+                stage.completeExceptionally(e);
+                assertSame(e, failure(ModifiedUtf8AsyncDecoder.decode(channel, 0, 16, chars -> stage)));
+                assertSame(e, failure(ModifiedUtf8AsyncDecoder.decode(channel, 0, 16, chars -> {
+                    throw e;
+                })));
+            } finally {
+                Files.delete(path);
+            }
+        }
+
+        @Test
+        void argumentIsIllegal() throws Exception {
+            final Path path = file(new byte[0]);
+            try (AsynchronousFileChannel channel = AsynchronousFileChannel.open(path, StandardOpenOption.READ)) {
+                assertThrows(IllegalArgumentException.class, () -> ModifiedUtf8AsyncDecoder.decode(channel, -1, chars -> null));
+                assertThrows(IllegalArgumentException.class, () -> ModifiedUtf8AsyncDecoder.decode(channel, 0, 0, chars -> null));
+            } finally {
+                Files.delete(path);
+            }
+        }
+    }
+}
@@ -10,16 +10,25 @@ import org.junit.jupiter.api.Test;
 
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CharsetEncoder;
 import java.nio.charset.CoderResult;
+import java.nio.charset.MalformedInputException;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 class ModifiedUtf8CharsetTest {
 
+    static ByteBuffer direct(final byte[] octets) {
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(octets.length);
+        buffer.put(octets).flip();
+        return buffer;
+    }
+
     ModifiedUtf8Charset charset;
 
     @Nested
@@ -260,6 +269,255 @@ class ModifiedUtf8CharsetTest {
                 assertEquals(ByteBuffer.wrap(new byte[] { }), source);
                 assertEquals(CharBuffer.wrap("\u0000A\u00C0\u1E00"), target.flip());
             }
+
+            @Test
+            void sourceContainsLongRunsAndTargetCanFitFewer() {
+                final ByteBuffer source = ByteBuffer.wrap("java/lang/Object\u00C0java/lang/String".getBytes(StandardCharsets.UTF_8));
+                final CharBuffer target = CharBuffer.allocate(20);
+                assertEquals(CoderResult.OVERFLOW, decoder.decodeLoop(source, target));
+                assertEquals(ByteBuffer.wrap("a/lang/String".getBytes(StandardCharsets.UTF_8)), source);
+                assertEquals(CharBuffer.wrap("java/lang/Object\u00C0jav"), target.flip());
+            }
+
+            @Test
+            void sourceAndTargetHaveArrayOffsets() {
+                final ByteBuffer source = ByteBuffer.wrap(new byte[] { 'X', 'X', (byte)(0xC0), (byte)(0x80), 'A', (byte)(0xC3), (byte)(0x80), (byte)(0xE1), (byte)(0xB8), (byte)(0x80), 'X' }, 2, 8).slice();
+                final CharBuffer target = CharBuffer.wrap(new char[16], 3, 8).slice();
+                assertEquals(CoderResult.UNDERFLOW, decoder.decodeLoop(source, target));
+                assertEquals(ByteBuffer.wrap(new byte[] { }), source);
+                assertEquals(CharBuffer.wrap("\u0000A\u00C0\u1E00"), target.flip());
+            }
+
+            @Test
+            void sourceIsReadOnlyAndContainsVariousAndTargetCanFitMore() {
+                final ByteBuffer source = ByteBuffer.wrap(new byte[] { (byte)(0xC0), (byte)(0x80), 'A', (byte)(0xC3), (byte)(0x80), (byte)(0xE1), (byte)(0xB8), (byte)(0x80) }).asReadOnlyBuffer();
+                final CharBuffer target = CharBuffer.allocate(16);
+                assertEquals(CoderResult.UNDERFLOW, decoder.decodeLoop(source, target));
+                assertEquals(ByteBuffer.wrap(new byte[] { }), source);
+                assertEquals(CharBuffer.wrap("\u0000A\u00C0\u1E00"), target.flip());
+            }
+
+            @Test
+            void sourceIsReadOnlyAndContainsVariousAndTargetCanFitFewer() {
+                final ByteBuffer source = ByteBuffer.wrap(new byte[] { (byte)(0xC0), (byte)(0x80), 'A', (byte)(0xC3), (byte)(0x80), (byte)(0xE1), (byte)(0xB8), (byte)(0x80) }).asReadOnlyBuffer();
+                final CharBuffer target = CharBuffer.allocate(3);
+                assertEquals(CoderResult.OVERFLOW, decoder.decodeLoop(source, target));
+                assertEquals(ByteBuffer.wrap(new byte[] { (byte)(0xE1), (byte)(0xB8), (byte)(0x80) }), source);
+                assertEquals(CharBuffer.wrap("\u0000A\u00C0"), target.flip());
+            }
+
+            @Test
+            void sourceIsReadOnlyAndContainsPartialSequence() {
+                final ByteBuffer source = ByteBuffer.wrap(new byte[] { 'A', (byte)(0xE1), (byte)(0xB8) }).asReadOnlyBuffer();
+                final CharBuffer target = CharBuffer.allocate(16);
+                assertEquals(CoderResult.UNDERFLOW, decoder.decodeLoop(source, target));
+                assertEquals(ByteBuffer.wrap(new byte[] { (byte)(0xE1), (byte)(0xB8) }), source);
+                assertEquals(CharBuffer.wrap("A"), target.flip());
+            }
+
+            @Test
+            void sourceContainsPartialSequence() {
+                final ByteBuffer source = ByteBuffer.wrap(new byte[] { 'A', (byte)(0xE1), (byte)(0xB8) });
+                final CharBuffer target = CharBuffer.allocate(16);
+                assertEquals(CoderResult.UNDERFLOW, decoder.decodeLoop(source, target));
+                assertEquals(ByteBuffer.wrap(new byte[] { (byte)(0xE1), (byte)(0xB8) }), source);
+                assertEquals(CharBuffer.wrap("A"), target.flip());
+            }
+
+            @Test
+            void sourceIsDirectAndContainsVariousAndTargetCanFitFewer() {
+                final ByteBuffer source = direct(new byte[] { (byte)(0xC0), (byte)(0x80), 'A', (byte)(0xC3), (byte)(0x80), (byte)(0xE1), (byte)(0xB8), (byte)(0x80) });
+                final CharBuffer target = CharBuffer.allocate(3);
+                assertEquals(CoderResult.OVERFLOW, decoder.decodeLoop(source, target));
+                assertEquals(ByteBuffer.wrap(new byte[] { (byte)(0xE1), (byte)(0xB8), (byte)(0x80) }), source);
+                assertEquals(CharBuffer.wrap("\u0000A\u00C0"), target.flip());
+            }
+
+            @Test
+            void sourceIsDirectAndContainsLongRunsAndTargetCanFitFewer() {
+                final ByteBuffer source = direct("java/lang/Object\u00C0java/lang/String".getBytes(StandardCharsets.UTF_8));
+                final CharBuffer target = CharBuffer.allocate(20);
+                assertEquals(CoderResult.OVERFLOW, decoder.decodeLoop(source, target));
+                assertEquals(ByteBuffer.wrap("a/lang/String".getBytes(StandardCharsets.UTF_8)), source);
+                assertEquals(CharBuffer.wrap("java/lang/Object\u00C0jav"), target.flip());
+            }
+
+            @Test
+            void sourceAndTargetAreDirectAndContainLongRuns() {
+                final ByteBuffer source = direct("java/lang/Object\u00C0java/lang/String".getBytes(StandardCharsets.UTF_8));
+                final CharBuffer target = ByteBuffer.allocateDirect(128).asCharBuffer();
+                assertEquals(CoderResult.UNDERFLOW, decoder.decodeLoop(source, target));
+                assertFalse(source.hasRemaining());
+                assertEquals(CharBuffer.wrap("java/lang/Object\u00C0java/lang/String"), target.flip());
+            }
+
+            @Test
+            void sourceIsDirectAndContainsMalformedSequenceAfterLongRun() {
+                final ByteBuffer source = direct("java/lang/Object\u00C0java".getBytes(StandardCharsets.UTF_8));
+                source.put(17, (byte)('A'));
+                final CharBuffer target = CharBuffer.allocate(32);
+                assertEquals(CoderResult.malformedForLength(2), decoder.decodeLoop(source, target));
+                assertEquals(18, source.position());
+                assertEquals(CharBuffer.wrap("java/lang/Object"), target.flip());
+            }
+
+            @Test
+            void sourceIsDirectAndLongerThanStagingArray() {
+                // sequences that span the ends of the chunks copied from the
+                // source, whatever their length
+                final StringBuilder builder = new StringBuilder();
+                for (int i = 0; i < 5000; i++) {
+                    builder.append((i % 7 == 0) ? '\u1E00' : (i % 5 == 0) ? '\u00C0' : 'a');
+                }
+                final String expected = builder.toString();
+                final ByteBuffer source = direct(ModifiedUtf8.encode(expected));
+                final CharBuffer target = CharBuffer.allocate(expected.length());
+                assertEquals(CoderResult.UNDERFLOW, decoder.decodeLoop(source, target));
+                assertFalse(source.hasRemaining());
+                assertEquals(CharBuffer.wrap(expected), target.flip());
+            }
+
+            @Test
+            void sourceIsDirectAndContainsMalformedSequenceAfterStagingArray() {
+                final byte[] octets = new byte[10000];
+                Arrays.fill(octets, (byte)('a'));
+                octets[9000] = (byte)(0xE1);
+                final ByteBuffer source = direct(octets);
+                final CharBuffer target = CharBuffer.allocate(octets.length);
+                assertEquals(CoderResult.malformedForLength(2), decoder.decodeLoop(source, target));
+                assertEquals(9002, source.position());
+                assertEquals(9000, target.position());
+            }
+
+            @Test
+            void sourceIsDirectAndLongerThanTarget() {
+                final byte[] octets = new byte[10000];
+                Arrays.fill(octets, (byte)('a'));
+                final ByteBuffer source = direct(octets);
+                final CharBuffer target = CharBuffer.allocate(5000);
+                assertEquals(CoderResult.OVERFLOW, decoder.decodeLoop(source, target));
+                assertEquals(5000, source.position());
+                assertFalse(target.hasRemaining());
+            }
+
+            @Test
+            void sourceIsDirectAndContainsNullCharacterInLongRun() {
+                final ByteBuffer source = direct(ModifiedUtf8.encode("java/lang\u0000Object;"));
+                final CharBuffer target = CharBuffer.wrap(new char[32]);
+                assertEquals(CoderResult.UNDERFLOW, decoder.decodeLoop(source, target));
+                assertFalse(source.hasRemaining());
+                assertEquals(CharBuffer.wrap("java/lang\u0000Object;"), target.flip());
+            }
+
+            @Test
+            void sourceIsDirectAndTargetCanFitOneCharacter() {
+                final String expected = ModifiedUtf8Test.repeat("\u1E00a\u00C0", 2000);
+                final ByteBuffer source = direct(ModifiedUtf8.encode(expected));
+                final StringBuilder builder = new StringBuilder();
+                final CharBuffer target = CharBuffer.allocate(1);
+                while (source.hasRemaining()) {
+                    target.clear();
+                    decoder.decodeLoop(source, target);
+                    builder.append(target.flip());
+                }
+                assertEquals(expected, builder.toString());
+            }
+
+            @Test
+            void sourceIsDirectAndContainsPartialSequence() {
+                final ByteBuffer source = direct(new byte[] { 'A', (byte)(0xE1), (byte)(0xB8) });
+                final CharBuffer target = CharBuffer.allocate(16);
+                assertEquals(CoderResult.UNDERFLOW, decoder.decodeLoop(source, target));
+                assertEquals(ByteBuffer.wrap(new byte[] { (byte)(0xE1), (byte)(0xB8) }), source);
+                assertEquals(CharBuffer.wrap("A"), target.flip());
+            }
+        }
+
+        @Nested
+        class MethodDecodeLoopStrict {
+
+            // U+1D400 as a surrogate pair
+            final byte[] pair = { (byte)(0xED), (byte)(0xA0), (byte)(0xB5), (byte)(0xED), (byte)(0xB0), (byte)(0x80) };
+
+            @BeforeEach
+            void newDecoder() {
+                charset = new ModifiedUtf8Charset();
+                decoder = new ModifiedUtf8Charset.Decoder(charset, true);
+            }
+
+            // Asserts the same result from the array loop, the staged loop and
+            // the buffer loop, for heap and direct sources and targets.
+            void assertDecodeLoop(final byte[] octets, final int capacity, final CoderResult result, final byte[] remaining, final String decoded) {
+                for (final ByteBuffer source : new ByteBuffer[] { ByteBuffer.wrap(octets), ByteBuffer.wrap(octets).asReadOnlyBuffer(), direct(octets) }) {
+                    for (final CharBuffer target : new CharBuffer[] { CharBuffer.allocate(capacity), ByteBuffer.allocateDirect(2 * capacity).asCharBuffer() }) {
+                        final ByteBuffer duplicate = source.duplicate();
+                        assertEquals(result, decoder.decodeLoop(duplicate, target));
+                        assertEquals(ByteBuffer.wrap(remaining), duplicate);
+                        assertEquals(CharBuffer.wrap(decoded), target.flip());
+                    }
+                }
+            }
+
+            byte[] concat(final byte[] a, final byte... b) {
+                final byte[] result = Arrays.copyOf(a, a.length + b.length);
+                System.arraycopy(b, 0, result, a.length, b.length);
+                return result;
+            }
+
+            @Test
+            void sourceContainsSurrogatePair() {
+                assertDecodeLoop(concat(pair, (byte)('A')), 16, CoderResult.UNDERFLOW, new byte[] { }, "\uD835\uDC00A");
+            }
+
+            @Test
+            void sourceContainsSurrogatePairAndTargetCanFitFewer() {
+                assertDecodeLoop(concat(new byte[] { 'A' }, pair), 2, CoderResult.OVERFLOW, pair, "A");
+            }
+
+            @Test
+            void sourceContainsUnpairedHighSurrogate() {
+                assertDecodeLoop(new byte[] { (byte)(0xED), (byte)(0xA0), (byte)(0xB5), 'A' }, 16, CoderResult.malformedForLength(3), new byte[] { 'A' }, "");
+            }
+
+            @Test
+            void sourceContainsHighSurrogateFollowedByHighSurrogate() {
+                final byte[] octets = concat(new byte[] { (byte)(0xED), (byte)(0xA0), (byte)(0xB5) }, pair);
+                assertDecodeLoop(octets, 16, CoderResult.malformedForLength(3), pair, "");
+            }
+
+            @Test
+            void sourceContainsHighSurrogateFollowedByMalformedSequence() {
+                assertDecodeLoop(concat(Arrays.copyOf(pair, 5), (byte)('A')), 16, CoderResult.malformedForLength(3), new byte[] { (byte)(0xED), (byte)(0xB0), 'A' }, "");
+            }
+
+            @Test
+            void sourceContainsUnpairedLowSurrogate() {
+                assertDecodeLoop(new byte[] { 'A', (byte)(0xED), (byte)(0xB0), (byte)(0x80), 'B' }, 16, CoderResult.malformedForLength(3), new byte[] { 'B' }, "A");
+            }
+
+            @Test
+            void sourceContainsPartialSurrogatePair() {
+                for (int length = 3; length < 6; length++) {
+                    final byte[] partial = Arrays.copyOf(pair, length);
+                    assertDecodeLoop(concat(new byte[] { 'A' }, partial), 16, CoderResult.UNDERFLOW, partial, "A");
+                }
+            }
+
+            @Test
+            void sourceContainsSurrogatePairThatSpansStagingArray() {
+                for (int n = 4090; n < 4096; n++) {
+                    final byte[] octets = new byte[n];
+                    Arrays.fill(octets, (byte)('a'));
+                    final String expected = new String(octets, StandardCharsets.US_ASCII) + "\uD835\uDC00";
+                    assertDecodeLoop(concat(octets, pair), n + 2, CoderResult.UNDERFLOW, new byte[] { }, expected);
+                }
+            }
+
+            @Test
+            void sourceContainsOtherCharacters() {
+                final byte[] octets = { (byte)(0xC0), (byte)(0x80), 'A', (byte)(0xC3), (byte)(0x80), (byte)(0xE1), (byte)(0xB8), (byte)(0x80) };
+                assertDecodeLoop(octets, 16, CoderResult.UNDERFLOW, new byte[] { }, "\u0000A\u00C0\u1E00");
+            }
         }
     }
 
@@ -277,6 +535,45 @@ class ModifiedUtf8CharsetTest {
         }
     }
 
+    @Nested
+    class MethodNewStrictDecoder {
+
+        @BeforeEach
+        void newCharset() {
+            charset = new ModifiedUtf8Charset();
+        }
+
+        @Test
+        void returnsDistinct() {
+            assertNotSame(charset.newStrictDecoder(), charset.newStrictDecoder());
+        }
+
+        @Test
+        void decodesSurrogatePair() throws CharacterCodingException {
+            final ByteBuffer source = ByteBuffer.wrap(new byte[] { 'A', (byte)(0xED), (byte)(0xA0), (byte)(0xB5), (byte)(0xED), (byte)(0xB0), (byte)(0x80) });
+            assertEquals("A\uD835\uDC00", charset.newStrictDecoder().decode(source).toString());
+        }
+
+        @Test
+        void reportsUnpairedSurrogate() {
+            final ByteBuffer source = ByteBuffer.wrap(new byte[] { 'A', (byte)(0xED), (byte)(0xB0), (byte)(0x80) });
+            final MalformedInputException e = assertThrows(MalformedInputException.class, () -> charset.newStrictDecoder().decode(source.duplicate()));
+            assertEquals(3, e.getInputLength());
+        }
+
+        @Test
+        void reportsUnpairedSurrogateAtEndOfInput() {
+            final ByteBuffer source = ByteBuffer.wrap(new byte[] { 'A', (byte)(0xED), (byte)(0xA0), (byte)(0xB5) });
+            assertThrows(MalformedInputException.class, () -> charset.newStrictDecoder().decode(source));
+        }
+
+        @Test
+        void nonStrictDecoderDecodesUnpairedSurrogate() throws CharacterCodingException {
+            final ByteBuffer source = ByteBuffer.wrap(new byte[] { 'A', (byte)(0xED), (byte)(0xB0), (byte)(0x80) });
+            assertEquals("A\uDC00", charset.newDecoder().decode(source).toString());
+        }
+    }
+
     @Nested
     class ClassEncoder {
 
@@ -433,6 +730,86 @@ class ModifiedUtf8CharsetTest {
                 assertEquals(CharBuffer.wrap(""), source);
                 assertEquals(ByteBuffer.wrap(new byte[] { (byte)(0xC0), (byte)(0x80), 'A', (byte)(0xC3), (byte)(0x80), (byte)(0xE1), (byte)(0xB8), (byte)(0x80) }), target.flip());
             }
+
+            @Test
+            void sourceHasArrayAndContainsVariousAndTargetCanFitMore() {
+                final CharBuffer source = CharBuffer.wrap("\u0000A\u00C0\u1E00".toCharArray());
+                final ByteBuffer target = ByteBuffer.allocate(16);
+                assertEquals(CoderResult.UNDERFLOW, encoder.encodeLoop(source, target));
+                assertEquals(CharBuffer.wrap(""), source);
+                assertEquals(ByteBuffer.wrap(new byte[] { (byte)(0xC0), (byte)(0x80), 'A', (byte)(0xC3), (byte)(0x80), (byte)(0xE1), (byte)(0xB8), (byte)(0x80) }), target.flip());
+            }
+
+            @Test
+            void sourceHasArrayAndContainsVariousAndTargetCanFitFewer() {
+                final CharBuffer source = CharBuffer.wrap("\u0000A\u00C0\u1E00".toCharArray());
+                final ByteBuffer target = ByteBuffer.allocate(7);
+                assertEquals(CoderResult.OVERFLOW, encoder.encodeLoop(source, target));
+                assertEquals(CharBuffer.wrap("\u1E00"), source);
+                assertEquals(ByteBuffer.wrap(new byte[] { (byte)(0xC0), (byte)(0x80), 'A', (byte)(0xC3), (byte)(0x80) }), target.flip());
+            }
+
+            @Test
+            void sourceAndTargetHaveArrayOffsets() {
+                final CharBuffer source = CharBuffer.wrap("XX\u0000A\u00C0\u1E00X".toCharArray(), 2, 4).slice();
+                final ByteBuffer target = ByteBuffer.wrap(new byte[16], 3, 8).slice();
+                assertEquals(CoderResult.UNDERFLOW, encoder.encodeLoop(source, target));
+                assertEquals(CharBuffer.wrap(""), source);
+                assertEquals(ByteBuffer.wrap(new byte[] { (byte)(0xC0), (byte)(0x80), 'A', (byte)(0xC3), (byte)(0x80), (byte)(0xE1), (byte)(0xB8), (byte)(0x80) }), target.flip());
+            }
+
+            @Test
+            void targetIsDirectAndSourceHasArrayAndContainsLongRunsAndTargetCanFitFewer() {
+                final CharBuffer source = CharBuffer.wrap("java/lang/Object\u00C0java/lang/String".toCharArray());
+                final ByteBuffer target = ByteBuffer.allocateDirect(21);
+                assertEquals(CoderResult.OVERFLOW, encoder.encodeLoop(source, target));
+                assertEquals(CharBuffer.wrap("a/lang/String"), source);
+                assertEquals(ByteBuffer.wrap("java/lang/Object\u00C0jav".getBytes(StandardCharsets.UTF_8)), target.flip());
+            }
+
+            @Test
+            void targetIsDirectAndLongerThanStagingArray() {
+                final StringBuilder builder = new StringBuilder();
+                for (int i = 0; i < 5000; i++) {
+                    builder.append((i % 7 == 0) ? '\u1E00' : (i % 5 == 0) ? '\u0000' : 'a');
+                }
+                final String text = builder.toString();
+                final byte[] expected = ModifiedUtf8.encode(text);
+                final CharBuffer source = CharBuffer.wrap(text.toCharArray());
+                final ByteBuffer target = ByteBuffer.allocateDirect(expected.length);
+                assertEquals(CoderResult.UNDERFLOW, encoder.encodeLoop(source, target));
+                assertFalse(source.hasRemaining());
+                assertEquals(ByteBuffer.wrap(expected), target.flip());
+            }
+
+            @Test
+            void targetIsDirectAndLongerThanStagingArrayAndCanFitFewer() {
+                final char[] chars = new char[5000];
+                Arrays.fill(chars, '\u1E00');
+                final CharBuffer source = CharBuffer.wrap(chars);
+                final ByteBuffer target = ByteBuffer.allocateDirect(10000);
+                assertEquals(CoderResult.OVERFLOW, encoder.encodeLoop(source, target));
+                assertEquals(3333, source.position());
+                assertEquals(9999, target.position());
+            }
+
+            @Test
+            void targetIsDirectAndSourceContainsNullCharacterInLongRun() {
+                final CharBuffer source = CharBuffer.wrap("java/lang\u0000Object;".toCharArray());
+                final ByteBuffer target = ByteBuffer.allocateDirect(32);
+                assertEquals(CoderResult.UNDERFLOW, encoder.encodeLoop(source, target));
+                assertEquals(CharBuffer.wrap(""), source);
+                assertEquals(ByteBuffer.wrap(ModifiedUtf8.encode("java/lang\u0000Object;")), target.flip());
+            }
+
+            @Test
+            void targetIsDirectAndSourceContainsVariousAndTargetCanFitFewer() {
+                final CharBuffer source = CharBuffer.wrap("\u0000A\u00C0\u1E00");
+                final ByteBuffer target = ByteBuffer.allocateDirect(7);
+                assertEquals(CoderResult.OVERFLOW, encoder.encodeLoop(source, target));
+                assertEquals(CharBuffer.wrap("\u1E00"), source);
+                assertEquals(ByteBuffer.wrap(new byte[] { (byte)(0xC0), (byte)(0x80), 'A', (byte)(0xC3), (byte)(0x80) }), target.flip());
+            }
         }
     }
 
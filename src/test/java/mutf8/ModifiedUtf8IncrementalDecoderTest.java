@@ -0,0 +1,174 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+package mutf8;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CoderResult;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ModifiedUtf8IncrementalDecoderTest {
+
+    // Decodes the given octets in chunks of the given length, each of which is
+    // read into the same buffer, which is never compacted.
+    static String decodeInChunks(final ModifiedUtf8IncrementalDecoder decoder, final byte[] octets, final int chunkLength, final boolean direct) {
+        final ByteBuffer source = (direct ? ByteBuffer.allocateDirect(chunkLength) : ByteBuffer.allocate(chunkLength));
+        final CharBuffer target = CharBuffer.allocate(octets.length);
+        for (int i = 0; i < octets.length; i += chunkLength) {
+            source.clear();
+            source.put(octets, i, Math.min(chunkLength, octets.length - i)).flip();
+            assertEquals(CoderResult.UNDERFLOW, decoder.decode(source, target));
+            assertFalse(source.hasRemaining());
+        }
+        assertEquals(CoderResult.UNDERFLOW, decoder.finish());
+        return target.flip().toString();
+    }
+
+    @Nested
+    class MethodDecode {
+
+        @Test
+        void sourceIsSplitAtEveryLength() {
+            final String s = ModifiedUtf8Test.repeat(ModifiedUtf8Test.VARIOUS + "abcdefgh", 5);
+            final byte[] octets = ModifiedUtf8.encode(s);
+            final ModifiedUtf8IncrementalDecoder decoder = new ModifiedUtf8IncrementalDecoder();
+            for (int chunkLength = 1; chunkLength <= octets.length; chunkLength++) {
+                assertEquals(s, decodeInChunks(decoder, octets, chunkLength, false));
+                assertEquals(s, decodeInChunks(decoder, octets, chunkLength, true));
+            }
+        }
+
+        @Test
+        void sourceIsSplitWithinSurrogatePairAndDecoderIsStrict() {
+            final String s = ModifiedUtf8Test.repeat("A\uD800\uDC00\u00C0", 3);
+            final byte[] octets = ModifiedUtf8.encode(s);
+            final ModifiedUtf8IncrementalDecoder decoder = new ModifiedUtf8IncrementalDecoder(true);
+            for (int chunkLength = 1; chunkLength <= octets.length; chunkLength++) {
+                assertEquals(s, decodeInChunks(decoder, octets, chunkLength, false));
+            }
+        }
+
+        @Test
+        void sequenceIsPending() {
+            final ModifiedUtf8IncrementalDecoder decoder = new ModifiedUtf8IncrementalDecoder();
+            final CharBuffer target = CharBuffer.allocate(4);
+            final ByteBuffer source = ByteBuffer.wrap(new byte[] { 'A', (byte)(0xE1), (byte)(0xB8) });
+            assertEquals(CoderResult.UNDERFLOW, decoder.decode(source, target));
+            assertEquals(3, source.position());
+            assertEquals(2, decoder.pendingLength());
+            assertEquals(CoderResult.UNDERFLOW, decoder.decode(ByteBuffer.wrap(new byte[] { (byte)(0x80), 'B' }), target));
+            assertEquals(0, decoder.pendingLength());
+            assertEquals("A\u1E00B", target.flip().toString());
+        }
+
+        @Test
+        void targetIsFullWhileSequenceIsPending() {
+            final ModifiedUtf8IncrementalDecoder decoder = new ModifiedUtf8IncrementalDecoder();
+            final CharBuffer target = CharBuffer.allocate(1);
+            assertEquals(CoderResult.UNDERFLOW, decoder.decode(ByteBuffer.wrap(new byte[] { 'A', (byte)(0xC3) }), target));
+            final ByteBuffer source = ByteBuffer.wrap(new byte[] { (byte)(0x80), 'B' });
+            assertEquals(CoderResult.OVERFLOW, decoder.decode(source, target));
+            assertEquals(0, source.position());
+            assertEquals(1, decoder.pendingLength());
+            assertEquals("A", target.flip().toString());
+            target.clear();
+            assertEquals(CoderResult.OVERFLOW, decoder.decode(source, target));
+            assertEquals(1, source.position());
+            assertEquals("\u00C0", target.flip().toString());
+            target.clear();
+            assertEquals(CoderResult.UNDERFLOW, decoder.decode(source, target));
+            assertEquals("B", target.flip().toString());
+        }
+
+        @Test
+        void sequenceIsMalformedAcrossSources() {
+            final ModifiedUtf8IncrementalDecoder decoder = new ModifiedUtf8IncrementalDecoder();
+            final CharBuffer target = CharBuffer.allocate(4);
+            assertEquals(CoderResult.UNDERFLOW, decoder.decode(ByteBuffer.wrap(new byte[] { 'A', (byte)(0xE1) }), target));
+            final ByteBuffer source = ByteBuffer.wrap(new byte[] { 'B', 'C' });
+            assertEquals(CoderResult.malformedForLength(2), decoder.decode(source, target));
+            assertEquals(1, source.position());
+            assertEquals(0, decoder.pendingLength());
+            assertEquals(CoderResult.UNDERFLOW, decoder.decode(source, target));
+            assertEquals("AC", target.flip().toString());
+        }
+
+        @Test
+        void sequenceIsMalformedAfterSequenceThatWasPending() {
+            final ModifiedUtf8IncrementalDecoder decoder = new ModifiedUtf8IncrementalDecoder();
+            final CharBuffer target = CharBuffer.allocate(4);
+            assertEquals(CoderResult.UNDERFLOW, decoder.decode(ByteBuffer.wrap(new byte[] { (byte)(0xC3) }), target));
+            final ByteBuffer source = ByteBuffer.wrap(new byte[] { (byte)(0x80), (byte)(0x80), 'B' });
+            assertEquals(CoderResult.malformedForLength(1), decoder.decode(source, target));
+            assertEquals(2, source.position());
+            assertEquals("\u00C0", target.flip().toString());
+        }
+
+        @Test
+        void highSurrogateIsUnpairedAcrossSourcesAndDecoderIsStrict() {
+            final ModifiedUtf8IncrementalDecoder decoder = new ModifiedUtf8IncrementalDecoder(true);
+            final CharBuffer target = CharBuffer.allocate(4);
+            // U+D800, followed by the first octet of another sequence
+            assertEquals(CoderResult.UNDERFLOW, decoder.decode(ByteBuffer.wrap(new byte[] { (byte)(0xED), (byte)(0xA0), (byte)(0x80), (byte)(0xED) }), target));
+            assertEquals(4, decoder.pendingLength());
+            final ByteBuffer source = ByteBuffer.wrap(new byte[] { 'A', 'B' });
+            assertEquals(CoderResult.malformedForLength(3), decoder.decode(source, target));
+            assertEquals(0, source.position());
+            assertEquals(1, decoder.pendingLength());
+            assertEquals(CoderResult.malformedForLength(2), decoder.decode(source, target));
+            assertEquals(1, source.position());
+            assertEquals(CoderResult.UNDERFLOW, decoder.decode(source, target));
+            assertEquals("B", target.flip().toString());
+        }
+
+        @Test
+        void sourceIsEmpty() {
+            final ModifiedUtf8IncrementalDecoder decoder = new ModifiedUtf8IncrementalDecoder();
+            final CharBuffer target = CharBuffer.allocate(4);
+            assertEquals(CoderResult.UNDERFLOW, decoder.decode(ByteBuffer.wrap(new byte[] { (byte)(0xE1) }), target));
+            assertEquals(CoderResult.UNDERFLOW, decoder.decode(ByteBuffer.allocate(0), target));
+            assertEquals(1, decoder.pendingLength());
+        }
+    }
+
+    @Nested
+    class MethodFinish {
+
+        @Test
+        void nothingIsPending() {
+            final ModifiedUtf8IncrementalDecoder decoder = new ModifiedUtf8IncrementalDecoder();
+            assertEquals(CoderResult.UNDERFLOW, decoder.decode(ByteBuffer.wrap(ModifiedUtf8Test.VARIOUS_ENCODED), CharBuffer.allocate(8)));
+            assertEquals(CoderResult.UNDERFLOW, decoder.finish());
+        }
+
+        @Test
+        void sequenceIsPending() {
+            final ModifiedUtf8IncrementalDecoder decoder = new ModifiedUtf8IncrementalDecoder();
+            assertEquals(CoderResult.UNDERFLOW, decoder.decode(ByteBuffer.wrap(new byte[] { 'A', (byte)(0xE1), (byte)(0xB8) }), CharBuffer.allocate(4)));
+            assertEquals(CoderResult.malformedForLength(2), decoder.finish());
+            assertEquals(0, decoder.pendingLength());
+            assertEquals(CoderResult.UNDERFLOW, decoder.finish());
+        }
+    }
+
+    @Nested
+    class MethodReset {
+
+        @Test
+        void sequenceIsPending() {
+            final ModifiedUtf8IncrementalDecoder decoder = new ModifiedUtf8IncrementalDecoder();
+            final CharBuffer target = CharBuffer.allocate(4);
+            assertEquals(CoderResult.UNDERFLOW, decoder.decode(ByteBuffer.wrap(new byte[] { (byte)(0xC3) }), target));
+            decoder.reset();
+            assertEquals(0, decoder.pendingLength());
+            assertEquals(CoderResult.UNDERFLOW, decoder.decode(ByteBuffer.wrap(new byte[] { 'A' }), target));
+            assertEquals("A", target.flip().toString());
+        }
+    }
+}
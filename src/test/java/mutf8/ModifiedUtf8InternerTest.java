@@ -0,0 +1,135 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+package mutf8;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ModifiedUtf8InternerTest {
+
+    static byte[] encode(final String s) {
+        return ModifiedUtf8.encode(s);
+    }
+
+    @Nested
+    class Constructor {
+
+        @Test
+        void capacityIsRoundedUp() {
+            assertEquals(8, new ModifiedUtf8Interner(1).capacity());
+            assertEquals(16, new ModifiedUtf8Interner(9).capacity());
+            assertEquals(1024, new ModifiedUtf8Interner(1000).capacity());
+        }
+
+        @Test
+        void capacityIsIllegal() {
+            assertThrows(IllegalArgumentException.class, () -> new ModifiedUtf8Interner(0));
+            assertThrows(IllegalArgumentException.class, () -> new ModifiedUtf8Interner((1 << 30) + 1));
+        }
+    }
+
+    @Nested
+    class MethodIntern {
+
+        @Test
+        void stringIsDecoded() {
+            final byte[] source = ModifiedUtf8Test.VARIOUS_ENCODED;
+            assertEquals(ModifiedUtf8Test.VARIOUS, new ModifiedUtf8Interner(16).intern(source, 0, source.length));
+        }
+
+        @Test
+        void stringIsReused() {
+            final ModifiedUtf8Interner interner = new ModifiedUtf8Interner(16);
+            final byte[] source = "Ljava/lang/Object;java/lang/Object".getBytes();
+            final String first = interner.intern(source, 1, 16);
+            assertSame(first, interner.intern(source, 18, 16));
+            assertSame(first, interner.intern(encode("java/lang/Object"), 0, 16));
+            assertEquals(2, interner.hitCount());
+            assertEquals(1, interner.missCount());
+        }
+
+        @Test
+        void stringIsReusedForNonCanonicalEncoding() {
+            final ModifiedUtf8Interner interner = new ModifiedUtf8Interner(16);
+            final String first = interner.intern(new byte[] { (byte)(0xC0), (byte)(0x80), 'A' }, 0, 3);
+            assertSame(first, interner.intern(new byte[] { 0x00, (byte)(0xC1), (byte)(0x81) }, 0, 3));
+            assertEquals("\u0000A", first);
+        }
+
+        @Test
+        void stringsAreEvicted() {
+            final ModifiedUtf8Interner interner = new ModifiedUtf8Interner(8);
+            for (int i = 0; i < 100; i++) {
+                final byte[] source = encode("name" + i);
+                assertEquals("name" + i, interner.intern(source, 0, source.length));
+            }
+            assertEquals(0, interner.hitCount());
+            assertEquals(100, interner.missCount());
+            assertEquals(92, interner.evictionCount());
+        }
+
+        @Test
+        void referencedStringIsRetained() {
+            final ModifiedUtf8Interner interner = new ModifiedUtf8Interner(8);
+            final byte[] code = encode("Code");
+            final String first = interner.intern(code, 0, code.length);
+            for (int i = 0; i < 100; i++) {
+                final byte[] source = encode("name" + i);
+                interner.intern(source, 0, source.length);
+                assertSame(first, interner.intern(code, 0, code.length));
+            }
+            assertEquals(100, interner.hitCount());
+        }
+
+        @Test
+        void sourceIsMalformed() {
+            final ModifiedUtf8Interner interner = new ModifiedUtf8Interner(8);
+            assertThrows(InvalidModifiedUtf8Exception.class, () -> interner.intern(new byte[] { 'A', (byte)(0x80) }, 0, 2));
+            assertEquals(0, interner.missCount());
+        }
+
+        @Test
+        void rangeIsOutOfBounds() {
+            assertThrows(IndexOutOfBoundsException.class, () -> new ModifiedUtf8Interner(8).intern(new byte[] { 'A' }, 0, 2));
+        }
+
+        @Test
+        void threadsShareStrings() throws Exception {
+            final ModifiedUtf8Interner interner = new ModifiedUtf8Interner(1024);
+            final ExecutorService executor = Executors.newFixedThreadPool(4);
+            try {
+                final List<Future<String[]>> futures = new ArrayList<>();
+                for (int t = 0; t < 4; t++) {
+                    futures.add(executor.submit(() -> {
+                        final String[] result = new String[100];
+                        for (int i = 0; i < 100; i++) {
+                            final byte[] source = encode("name" + i);
+                            result[i] = interner.intern(source, 0, source.length);
+                        }
+                        return result;
+                    }));
+                }
+                final String[] first = futures.get(0).get();
+                for (final Future<String[]> future : futures) {
+                    final String[] strings = future.get();
+                    for (int i = 0; i < 100; i++) {
+                        assertSame(first[i], strings[i]);
+                    }
+                }
+                assertEquals(400, interner.hitCount() + interner.missCount());
+            } finally {
+                executor.shutdown();
+            }
+        }
+    }
+}
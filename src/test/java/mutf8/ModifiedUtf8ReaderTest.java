@@ -0,0 +1,208 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+package mutf8;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.MalformedInputException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ModifiedUtf8ReaderTest {
+
+    static final String TEXT = ModifiedUtf8Test.repeat(ModifiedUtf8Test.VARIOUS + "abcdefghijklm", 40);
+
+    static ReadableByteChannel channel(final byte[] octets) {
+        return Channels.newChannel(new ByteArrayInputStream(octets));
+    }
+
+    // a channel that reads at most one octet at a time
+    static ReadableByteChannel trickle(final byte[] octets) {
+        return new ReadableByteChannel() {
+
+            private int index;
+
+            @Override
+            public int read(final ByteBuffer target) {
+                if (index == octets.length) {
+                    return -1;
+                }
+                target.put(octets[index++]);
+                return 1;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    static String readAll(final ModifiedUtf8Reader reader, final int arrayLength) throws IOException {
+        final StringBuilder builder = new StringBuilder();
+        final char[] array = new char[arrayLength];
+        int n;
+        while ((n = reader.read(array, 0, array.length)) >= 0) {
+            builder.append(array, 0, n);
+        }
+        return builder.toString();
+    }
+
+    @Nested
+    class Constructor {
+
+        @Test
+        void bufferSizeIsIllegal() {
+            assertThrows(IllegalArgumentException.class, () -> new ModifiedUtf8Reader(channel(new byte[0]), 0));
+        }
+    }
+
+    @Nested
+    class MethodRead {
+
+        @Test
+        void bufferIsDefault() throws IOException {
+            try (ModifiedUtf8Reader reader = new ModifiedUtf8Reader(channel(ModifiedUtf8.encode(TEXT)))) {
+                assertEquals(TEXT, readAll(reader, 100));
+            }
+        }
+
+        @Test
+        void bufferSplitsSequences() throws IOException {
+            final byte[] octets = ModifiedUtf8.encode(TEXT);
+            for (int bufferSize = 1; bufferSize <= 10; bufferSize++) {
+                try (ModifiedUtf8Reader reader = new ModifiedUtf8Reader(channel(octets), bufferSize)) {
+                    assertEquals(TEXT, readAll(reader, 7));
+                }
+            }
+        }
+
+        @Test
+        void channelReadsOneOctetAtATime() throws IOException {
+            try (ModifiedUtf8Reader reader = new ModifiedUtf8Reader(trickle(ModifiedUtf8.encode(TEXT)), 16)) {
+                assertEquals(TEXT, readAll(reader, 1000));
+            }
+        }
+
+        @Test
+        void charactersAreReadSingly() throws IOException {
+            try (ModifiedUtf8Reader reader = new ModifiedUtf8Reader(channel(ModifiedUtf8Test.VARIOUS_ENCODED), 3)) {
+                for (int i = 0; i < ModifiedUtf8Test.VARIOUS.length(); i++) {
+                    assertEquals(ModifiedUtf8Test.VARIOUS.charAt(i), reader.read());
+                }
+                assertEquals(-1, reader.read());
+                assertEquals(-1, reader.read());
+            }
+        }
+
+        @Test
+        void lengthIsZero() throws IOException {
+            try (ModifiedUtf8Reader reader = new ModifiedUtf8Reader(channel(ModifiedUtf8Test.VARIOUS_ENCODED))) {
+                assertEquals(0, reader.read(new char[4], 2, 0));
+            }
+        }
+
+        @Test
+        void sequenceIsMalformed() throws IOException {
+            try (ModifiedUtf8Reader reader = new ModifiedUtf8Reader(channel(new byte[] { 'A', (byte)(0xE1), 'B' }), 2)) {
+                assertEquals('A', reader.read());
+                assertEquals(2, assertThrows(MalformedInputException.class, reader::read).getInputLength());
+            }
+        }
+
+        @Test
+        void sequenceIsMalformedAfterCharacters() throws IOException {
+            try (ModifiedUtf8Reader reader = new ModifiedUtf8Reader(channel(new byte[] { 'A', 'B', (byte)(0xE1), 'C', 'D' }))) {
+                final char[] target = new char[4];
+                assertEquals(2, reader.read(target, 0, 4));
+                assertEquals("AB", new String(target, 0, 2));
+                assertEquals(2, assertThrows(MalformedInputException.class, () -> reader.read(target, 0, 4)).getInputLength());
+                assertEquals('D', reader.read());
+                assertEquals(-1, reader.read());
+            }
+        }
+
+        @Test
+        void sequenceIsPartialAtEnd() throws IOException {
+            try (ModifiedUtf8Reader reader = new ModifiedUtf8Reader(channel(new byte[] { 'A', (byte)(0xE1), (byte)(0xB8) }))) {
+                assertEquals('A', reader.read());
+                assertEquals(2, assertThrows(MalformedInputException.class, reader::read).getInputLength());
+            }
+        }
+
+        @Test
+        void readerIsClosed() throws IOException {
+            final ModifiedUtf8Reader reader = new ModifiedUtf8Reader(channel(ModifiedUtf8Test.VARIOUS_ENCODED));
+            reader.close();
+            reader.close();
+            assertThrows(IOException.class, reader::read);
+        }
+    }
+
+    @Nested
+    class MethodMap {
+
+        @Test
+        void fileContainsVarious() throws IOException {
+            final Path path = Files.createTempFile("mutf8", ".bin");
+            try {
+                final byte[] octets = ModifiedUtf8.encode(TEXT);
+                final byte[] padded = new byte[octets.length + 5];
+                System.arraycopy(octets, 0, padded, 5, octets.length);
+                Files.write(path, padded);
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                    channel.position(5);
+                    final ModifiedUtf8Reader reader = ModifiedUtf8Reader.map(channel);
+                    assertEquals(TEXT, readAll(reader, 64));
+                    assertEquals(5, channel.position());
+                    reader.close();
+                    assertFalse(channel.isOpen());
+                }
+            } finally {
+                Files.delete(path);
+            }
+        }
+
+        @Test
+        void fileIsEmpty() throws IOException {
+            final Path path = Files.createTempFile("mutf8", ".bin");
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+                 ModifiedUtf8Reader reader = ModifiedUtf8Reader.map(channel)) {
+                assertEquals(-1, reader.read());
+            } finally {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Nested
+    class MethodReady {
+
+        @Test
+        void octetsAreBuffered() throws IOException {
+            try (ModifiedUtf8Reader reader = new ModifiedUtf8Reader(channel(new byte[] { 'A', 'B' }))) {
+                assertFalse(reader.ready());
+                assertEquals('A', reader.read());
+                assertTrue(reader.ready());
+                assertEquals('B', reader.read());
+                assertFalse(reader.ready());
+            }
+        }
+    }
+}
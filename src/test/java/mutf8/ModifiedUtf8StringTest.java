@@ -0,0 +1,256 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+package mutf8;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ModifiedUtf8StringTest {
+
+    // "A\u00C0\u1E00" canonically encoded
+    static final byte[] CANONICAL = { 'A', (byte)(0xC3), (byte)(0x80), (byte)(0xE1), (byte)(0xB8), (byte)(0x80) };
+
+    // "A\u00C0\u1E00" with an overlong encoding of "A"
+    static final byte[] OVERLONG = { (byte)(0xC1), (byte)(0x81), (byte)(0xC3), (byte)(0x80), (byte)(0xE1), (byte)(0xB8), (byte)(0x80) };
+
+    static ModifiedUtf8String of(final byte... octets) {
+        return new ModifiedUtf8String(octets, 0, octets.length);
+    }
+
+    static ModifiedUtf8String of(final String string) {
+        final byte[] octets = ModifiedUtf8.encode(string);
+        return new ModifiedUtf8String(octets, 0, octets.length);
+    }
+
+    static ModifiedUtf8String direct(final byte... octets) {
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(octets.length);
+        buffer.put(octets).flip();
+        return new ModifiedUtf8String(buffer);
+    }
+
+    @Nested
+    class Constructor {
+
+        @Test
+        void rangeIsOutOfBounds() {
+            assertThrows(IndexOutOfBoundsException.class, () -> new ModifiedUtf8String(CANONICAL, 4, 3));
+        }
+
+        @Test
+        void bufferPositionIsUnchanged() {
+            final ByteBuffer buffer = ByteBuffer.wrap(CANONICAL, 1, 2);
+            assertEquals("\u00C0", new ModifiedUtf8String(buffer).toString());
+            assertEquals(1, buffer.position());
+        }
+    }
+
+    @Nested
+    class MethodOctets {
+
+        @Test
+        void octetsAreShared() {
+            final byte[] octets = CANONICAL.clone();
+            final ByteBuffer view = new ModifiedUtf8String(octets, 1, 2).octets();
+            assertEquals(2, view.remaining());
+            octets[1] = 'B';
+            assertEquals('B', view.get(0));
+        }
+
+        @Test
+        void octetsAreReadOnly() {
+            assertThrows(ReadOnlyBufferException.class, () -> of(CANONICAL).octets().put((byte)(0)));
+        }
+    }
+
+    @Nested
+    class MethodLength {
+
+        @Test
+        void lengthIsNumberOfCharacters() {
+            assertEquals(0, of().length());
+            assertEquals(3, of(CANONICAL).length());
+            assertEquals(3, of(OVERLONG).length());
+            assertEquals(3, direct(CANONICAL).length());
+        }
+
+        @Test
+        void octetsAreMalformed() {
+            assertThrows(InvalidModifiedUtf8Exception.class, () -> of((byte)('A'), (byte)(0x80)).length());
+        }
+
+        @Test
+        void octetsAreIncomplete() {
+            assertThrows(InvalidModifiedUtf8Exception.class, () -> of((byte)('A'), (byte)(0xE1), (byte)(0xB8)).length());
+        }
+    }
+
+    @Nested
+    class MethodCharAt {
+
+        @Test
+        void indexIsInBounds() {
+            assertEquals('\u1E00', of(CANONICAL).charAt(2));
+        }
+
+        @Test
+        void indexIsOutOfBounds() {
+            assertThrows(IndexOutOfBoundsException.class, () -> of(CANONICAL).charAt(3));
+        }
+    }
+
+    @Nested
+    class MethodSubSequence {
+
+        @Test
+        void rangeIsInBounds() {
+            assertEquals("\u00C0\u1E00", of(OVERLONG).subSequence(1, 3).toString());
+        }
+    }
+
+    @Nested
+    class MethodToString {
+
+        @Test
+        void octetsAreHeap() {
+            assertEquals("A\u00C0\u1E00", of(OVERLONG).toString());
+        }
+
+        @Test
+        void octetsAreDirect() {
+            assertEquals("A\u00C0\u1E00", direct(CANONICAL).toString());
+        }
+
+        @Test
+        void octetsAreMalformed() {
+            final byte[] octets = { 'A', 'B', 'C', (byte)(0xE1), 'D' };
+            final InvalidModifiedUtf8Exception e = assertThrows(InvalidModifiedUtf8Exception.class, () -> new ModifiedUtf8String(octets, 1, 4).toString());
+            assertEquals(2, e.getOffset());
+        }
+
+        @Test
+        void directOctetsAreMalformed() {
+            final ByteBuffer buffer = ModifiedUtf8CharsetTest.direct(new byte[] { 'A', 'B', 'C', (byte)(0xE1), 'D' });
+            buffer.position(1);
+            final InvalidModifiedUtf8Exception e = assertThrows(InvalidModifiedUtf8Exception.class, () -> new ModifiedUtf8String(buffer).toString());
+            assertEquals(2, e.getOffset());
+        }
+
+        @Test
+        void stringIsRetained() {
+            final ModifiedUtf8String string = of(CANONICAL);
+            assertSame(string.toString(), string.toString());
+        }
+    }
+
+    @Nested
+    class MethodHashCode {
+
+        @Test
+        void hashCodeIsThatOfString() {
+            assertEquals("".hashCode(), of().hashCode());
+            assertEquals("A\u00C0\u1E00".hashCode(), of(CANONICAL).hashCode());
+            assertEquals("A\u00C0\u1E00".hashCode(), of(OVERLONG).hashCode());
+            assertEquals("\u0000".hashCode(), of((byte)(0x00)).hashCode());
+            assertEquals("\u0000".hashCode(), of((byte)(0xC0), (byte)(0x80)).hashCode());
+        }
+    }
+
+    @Nested
+    class MethodEquals {
+
+        @Test
+        void otherIsCanonical() {
+            assertEquals(of(CANONICAL), direct(CANONICAL));
+            assertNotEquals(of(CANONICAL), of("A\u00C0\u1E01"));
+            assertNotEquals(of(CANONICAL), of("A\u00C0"));
+        }
+
+        @Test
+        void otherIsNotCanonical() {
+            assertEquals(of(CANONICAL), of(OVERLONG));
+            assertEquals(of((byte)(0x00)), of((byte)(0xC0), (byte)(0x80)));
+            assertEquals(of((byte)(0xE0), (byte)(0x81), (byte)(0x81)), of((byte)('A')));
+            assertNotEquals(of(OVERLONG), of("B\u00C0\u1E00"));
+        }
+
+        @Test
+        void otherIsString() {
+            assertNotEquals(of(CANONICAL), "A\u00C0\u1E00");
+        }
+    }
+
+    @Nested
+    class MethodStartsWith {
+
+        @Test
+        void prefixIsCanonical() {
+            assertTrue(of(CANONICAL).startsWith(of("A\u00C0")));
+            assertTrue(of(CANONICAL).startsWith(of("")));
+            assertTrue(of(CANONICAL).startsWith(of(CANONICAL)));
+            assertFalse(of(CANONICAL).startsWith(of("A\u00C1")));
+            assertFalse(of("A").startsWith(of(CANONICAL)));
+        }
+
+        @Test
+        void prefixIsNotCanonical() {
+            assertTrue(of(CANONICAL).startsWith(of((byte)(0xC1), (byte)(0x81))));
+            assertTrue(of(OVERLONG).startsWith(of("A\u00C0")));
+            assertFalse(of(OVERLONG).startsWith(of("B")));
+            assertFalse(of((byte)(0xC1), (byte)(0x81)).startsWith(of(CANONICAL)));
+        }
+    }
+
+    @Nested
+    class MethodContentEquals {
+
+        @Test
+        void octetsAreHeap() {
+            assertTrue(of(OVERLONG).contentEquals("A\u00C0\u1E00"));
+            assertFalse(of(OVERLONG).contentEquals("A\u00C0"));
+        }
+
+        @Test
+        void octetsAreDirect() {
+            assertTrue(direct(OVERLONG).contentEquals("A\u00C0\u1E00"));
+            assertFalse(direct(OVERLONG).contentEquals("A\u00C0\u1E00\u0000"));
+            assertFalse(direct(OVERLONG).contentEquals("B"));
+        }
+
+        @Test
+        void octetsAreMalformed() {
+            final byte[] octets = { 'A', 'B', 'C', (byte)(0xE1), 'D' };
+            final InvalidModifiedUtf8Exception e = assertThrows(InvalidModifiedUtf8Exception.class, () -> new ModifiedUtf8String(octets, 1, 4).contentEquals("BCDE"));
+            assertEquals(2, e.getOffset());
+        }
+    }
+
+    @Nested
+    class MethodCompareTo {
+
+        @Test
+        void orderIsThatOfString() {
+            final String[] strings = { "", "\u0000", "\u0000\u0000", "A", "AB", "\u007F", "\u00C0", "\u07FF", "\u0800", "\uD800", "\uDFFF", "\uE000", "\uFFFF" };
+            for (final String x : strings) {
+                for (final String y : strings) {
+                    final int expected = Integer.signum(x.compareTo(y));
+                    assertEquals(expected, Integer.signum(of(x).compareTo(of(y))), () -> x + " " + y);
+                }
+            }
+        }
+
+        @Test
+        void otherIsNotCanonical() {
+            assertEquals(0, of(CANONICAL).compareTo(of(OVERLONG)));
+            assertTrue(of((byte)(0x00)).compareTo(of("A")) < 0);
+            assertTrue(of((byte)(0xC1), (byte)(0x81)).compareTo(of("\u0001")) > 0);
+            assertTrue(of(OVERLONG).compareTo(of("A\u00C0\u1E00\u0000")) < 0);
+        }
+    }
+}
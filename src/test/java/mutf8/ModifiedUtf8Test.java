@@ -0,0 +1,928 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+package mutf8;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.MalformedInputException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ModifiedUtf8Test {
+
+    static final String VARIOUS = "\u0000A\u00C0\u1E00";
+
+    static final byte[] VARIOUS_ENCODED = { (byte)(0xC0), (byte)(0x80), 'A', (byte)(0xC3), (byte)(0x80), (byte)(0xE1), (byte)(0xB8), (byte)(0x80) };
+
+    static int malformedLength(final InvalidModifiedUtf8Exception e) {
+        return ((MalformedInputException)(e.getCause())).getInputLength();
+    }
+
+    @Nested
+    class MethodDecode {
+
+        @Test
+        void emptySource() {
+            assertEquals("", ModifiedUtf8.decode(new byte[] { }, 0, 0));
+        }
+
+        @Test
+        void sourceContainsNullOctet() {
+            assertEquals("\u0000", ModifiedUtf8.decode(new byte[] { 0x00 }, 0, 1));
+        }
+
+        @Test
+        void sourceContainsOnly1OctetSequences() {
+            assertEquals("java/lang/Object", ModifiedUtf8.decode("Ljava/lang/Object;".getBytes(), 1, 16));
+        }
+
+        @Test
+        void sourceContainsVarious() {
+            assertEquals(VARIOUS, ModifiedUtf8.decode(VARIOUS_ENCODED, 0, VARIOUS_ENCODED.length));
+        }
+
+        @Test
+        void sourceContainsVariousAtOffset() {
+            assertEquals("A\u00C0", ModifiedUtf8.decode(VARIOUS_ENCODED, 2, 3));
+        }
+
+        @Test
+        void sourceContainsOnlyLatin1Characters() {
+            assertEquals("A\u0000\u0000\u00A0\u00FF\u0040", ModifiedUtf8.decode(new byte[] { 'A', 0x00, (byte)(0xC0), (byte)(0x80), (byte)(0xC2), (byte)(0xA0), (byte)(0xC3), (byte)(0xBF), (byte)(0xC1), (byte)(0x80) }, 0, 10));
+        }
+
+        @Test
+        void sourceContainsLatin1CharactersFollowedByOthers() {
+            assertEquals("A\u00A0\u0100\u00FFB", ModifiedUtf8.decode(new byte[] { 'A', (byte)(0xC2), (byte)(0xA0), (byte)(0xC4), (byte)(0x80), (byte)(0xC3), (byte)(0xBF), 'B' }, 0, 8));
+        }
+
+        @Test
+        void sourceContainsLatin1CharactersFollowedByInvalidOctet() {
+            final InvalidModifiedUtf8Exception e = assertThrows(InvalidModifiedUtf8Exception.class,
+                    () -> ModifiedUtf8.decode(new byte[] { 'A', (byte)(0xC2), (byte)(0xA0), (byte)(0xC2), 'B' }, 0, 5));
+            assertEquals(2, malformedLength(e));
+            assertEquals(3, e.getOffset());
+        }
+
+        @Test
+        void sourceContainsOverlongSequences() {
+            assertEquals("A\u0000", ModifiedUtf8.decode(new byte[] { (byte)(0xE0), (byte)(0x81), (byte)(0x81), 0x00 }, 0, 4));
+        }
+
+        @Test
+        void sourceContainsInvalidOctet0() {
+            final InvalidModifiedUtf8Exception e = assertThrows(InvalidModifiedUtf8Exception.class,
+                    () -> ModifiedUtf8.decode(new byte[] { 'A', (byte)(0x80) }, 0, 2));
+            assertEquals(1, malformedLength(e));
+            assertEquals(1, e.getOffset());
+        }
+
+        @Test
+        void sourceContains4OctetSequence() {
+            final InvalidModifiedUtf8Exception e = assertThrows(InvalidModifiedUtf8Exception.class,
+                    () -> ModifiedUtf8.decode(new byte[] { (byte)(0xF0), (byte)(0x9D), (byte)(0x90), (byte)(0x80) }, 0, 4));
+            assertEquals(1, malformedLength(e));
+        }
+
+        @Test
+        void sourceContains2OctetSequenceWithInvalidOctet1() {
+            final InvalidModifiedUtf8Exception e = assertThrows(InvalidModifiedUtf8Exception.class,
+                    () -> ModifiedUtf8.decode(new byte[] { (byte)(0xC3), (byte)(0xC0) }, 0, 2));
+            assertEquals(2, malformedLength(e));
+        }
+
+        @Test
+        void sourceContains3OctetSequenceWithInvalidOctet2() {
+            final InvalidModifiedUtf8Exception e = assertThrows(InvalidModifiedUtf8Exception.class,
+                    () -> ModifiedUtf8.decode(new byte[] { (byte)(0xE1), (byte)(0xB8), (byte)(0xC0) }, 0, 3));
+            assertEquals(3, malformedLength(e));
+        }
+
+        @Test
+        void sourceContainsPartialSequence() {
+            final InvalidModifiedUtf8Exception e = assertThrows(InvalidModifiedUtf8Exception.class,
+                    () -> ModifiedUtf8.decode(new byte[] { 'A', (byte)(0xE1), (byte)(0xB8), (byte)(0x80) }, 0, 3));
+            assertEquals(2, malformedLength(e));
+            assertEquals(1, e.getOffset());
+        }
+
+        @Test
+        void rangeOutOfBounds() {
+            assertThrows(IndexOutOfBoundsException.class, () -> ModifiedUtf8.decode(new byte[] { 'A' }, 1, 1));
+            assertThrows(IndexOutOfBoundsException.class, () -> ModifiedUtf8.decode(new byte[] { 'A' }, -1, 1));
+        }
+    }
+
+    @Nested
+    class MethodDecodeBuffer {
+
+        @Test
+        void bufferIsHeap() {
+            final byte[] padded = new byte[VARIOUS_ENCODED.length + 3];
+            System.arraycopy(VARIOUS_ENCODED, 0, padded, 2, VARIOUS_ENCODED.length);
+            final ByteBuffer source = ByteBuffer.wrap(padded, 1, padded.length - 1).slice();
+            assertEquals(VARIOUS, ModifiedUtf8.decode(source, 1, VARIOUS_ENCODED.length));
+            assertEquals(0, source.position());
+        }
+
+        @Test
+        void bufferIsDirect() {
+            final ByteBuffer source = ModifiedUtf8CharsetTest.direct(VARIOUS_ENCODED);
+            assertEquals(VARIOUS, ModifiedUtf8.decode(source, 0, VARIOUS_ENCODED.length));
+            assertEquals(0, source.position());
+            assertEquals(VARIOUS_ENCODED.length, source.limit());
+        }
+
+        @Test
+        void bufferIsDirectAndLongerThanScratch() {
+            final String s = repeat(VARIOUS + "abcdefghijklm", 8000);
+            final byte[] octets = ModifiedUtf8.encode(s);
+            assertTrue(octets.length > 0xFFFF);
+            assertEquals(s, ModifiedUtf8.decode(ModifiedUtf8CharsetTest.direct(octets), 0, octets.length));
+        }
+
+        @Test
+        void sequenceIsMalformed() {
+            final byte[] octets = { 'A', 'B', 'C', (byte)(0xE1), 'D' };
+            final ByteBuffer heap = ByteBuffer.wrap(octets, 1, 4).slice();
+            final ByteBuffer direct = ModifiedUtf8CharsetTest.direct(octets);
+            assertEquals(2, assertThrows(InvalidModifiedUtf8Exception.class, () -> ModifiedUtf8.decode(heap, 1, 3)).getOffset());
+            assertEquals(3, assertThrows(InvalidModifiedUtf8Exception.class, () -> ModifiedUtf8.decode(direct, 2, 3)).getOffset());
+        }
+
+        @Test
+        void sequenceIsMalformedInLongRange() {
+            final byte[] octets = new byte[0x20000];
+            Arrays.fill(octets, (byte)('a'));
+            octets[0x18000] = (byte)(0xE1);
+            final InvalidModifiedUtf8Exception e = assertThrows(InvalidModifiedUtf8Exception.class, () -> ModifiedUtf8.decode(ModifiedUtf8CharsetTest.direct(octets), 1, octets.length - 1));
+            assertEquals(0x18000, e.getOffset());
+            assertEquals(2, ((MalformedInputException)(e.getCause())).getInputLength());
+        }
+
+        @Test
+        void sequenceIsPartialAtEndOfLongRange() {
+            final byte[] octets = new byte[0x20000];
+            Arrays.fill(octets, (byte)('a'));
+            octets[octets.length - 2] = (byte)(0xE1);
+            octets[octets.length - 1] = (byte)(0xB8);
+            final InvalidModifiedUtf8Exception e = assertThrows(InvalidModifiedUtf8Exception.class, () -> ModifiedUtf8.decode(ModifiedUtf8CharsetTest.direct(octets), 0, octets.length));
+            assertEquals(octets.length - 2, e.getOffset());
+            assertEquals(2, ((MalformedInputException)(e.getCause())).getInputLength());
+        }
+
+        @Test
+        void rangeIsOutOfBounds() {
+            final ByteBuffer source = ModifiedUtf8CharsetTest.direct(VARIOUS_ENCODED);
+            source.limit(4);
+            assertThrows(IndexOutOfBoundsException.class, () -> ModifiedUtf8.decode(source, 2, 3));
+        }
+    }
+
+    @Nested
+    class MethodDecodeParallel {
+
+        // long enough to be split into four chunks in a pool of two threads
+        static final int LENGTH = 4 << 16;
+
+        final ForkJoinPool pool = new ForkJoinPool(2);
+
+        @AfterEach
+        void shutdownPool() {
+            pool.shutdown();
+        }
+
+        byte[] ascii() {
+            final byte[] source = new byte[LENGTH];
+            Arrays.fill(source, (byte)('A'));
+            return source;
+        }
+
+        void assertSameMalformation(final byte[] source, final int offset, final int length) {
+            final InvalidModifiedUtf8Exception expected = assertThrows(InvalidModifiedUtf8Exception.class, () -> ModifiedUtf8.decode(source, offset, length));
+            final InvalidModifiedUtf8Exception actual = assertThrows(InvalidModifiedUtf8Exception.class, () -> ModifiedUtf8.decodeParallel(source, offset, length, pool));
+            assertEquals(malformedLength(expected), malformedLength(actual));
+            assertEquals(expected.getOffset(), actual.getOffset());
+        }
+
+        @Test
+        void sourceIsShort() {
+            assertEquals(VARIOUS, ModifiedUtf8.decodeParallel(VARIOUS_ENCODED, 0, VARIOUS_ENCODED.length, pool));
+        }
+
+        @Test
+        void sourceContainsVarious() {
+            final String expected = repeat(VARIOUS, LENGTH / 4);
+            final byte[] source = ModifiedUtf8.encode(expected);
+            assertEquals(expected, ModifiedUtf8.decodeParallel(source, 0, source.length, pool));
+            assertEquals(expected, ModifiedUtf8.decodeParallel(source, 0, source.length));
+        }
+
+        @Test
+        void sourceContainsVariousAtOffset() {
+            final String expected = repeat(VARIOUS, LENGTH / 4);
+            final byte[] source = ModifiedUtf8.encode("A" + expected + "A");
+            assertEquals(expected, ModifiedUtf8.decodeParallel(source, 1, source.length - 2, pool));
+        }
+
+        @Test
+        void sourceContainsOnly3OctetSequences() {
+            final String expected = repeat("\u1E00", LENGTH / 3);
+            final byte[] source = ModifiedUtf8.encode(expected);
+            assertEquals(expected, ModifiedUtf8.decodeParallel(source, 0, source.length, pool));
+        }
+
+        @Test
+        void sourceContainsInvalidOctetInLastChunk() {
+            final byte[] source = ascii();
+            source[LENGTH - 10] = (byte)(0x80);
+            source[LENGTH - 5] = (byte)(0x80);
+            assertSameMalformation(source, 0, LENGTH);
+        }
+
+        @Test
+        void sourceContainsInvalidOctetsInSeveralChunks() {
+            final byte[] source = ascii();
+            source[LENGTH / 2 + 1] = (byte)(0xF0);
+            source[LENGTH - 1] = (byte)(0x80);
+            assertSameMalformation(source, 0, LENGTH);
+        }
+
+        @Test
+        void sourceContainsMalformedSequenceAtChunkBoundary() {
+            // The chunk boundary moves past the continuation octet, so the
+            // sequence is incomplete within its chunk but malformed overall.
+            final byte[] source = ascii();
+            source[LENGTH / 4 - 1] = (byte)(0xE1);
+            source[LENGTH / 4] = (byte)(0x80);
+            assertSameMalformation(source, 0, LENGTH);
+        }
+
+        @Test
+        void sourceContainsPartialSequence() {
+            final byte[] source = ascii();
+            source[LENGTH - 1] = (byte)(0xE1);
+            assertSameMalformation(source, 0, LENGTH);
+        }
+
+        @Test
+        void rangeOutOfBounds() {
+            assertThrows(IndexOutOfBoundsException.class, () -> ModifiedUtf8.decodeParallel(new byte[] { 'A' }, 1, 1, pool));
+        }
+    }
+
+    @Nested
+    class MethodDecodeAll {
+
+        @Test
+        void noRanges() {
+            assertArrayEquals(new String[] { }, ModifiedUtf8.decodeAll(VARIOUS_ENCODED, new int[] { }, new int[] { }));
+        }
+
+        @Test
+        void rangesAreVarious() {
+            final String[] expected = { VARIOUS, "", "A", "A\u00C0", "\u1E00" };
+            final int[] offsets = { 0, 3, 2, 2, 5 };
+            final int[] lengths = { 8, 0, 1, 3, 3 };
+            assertArrayEquals(expected, ModifiedUtf8.decodeAll(VARIOUS_ENCODED, offsets, lengths));
+        }
+
+        @Test
+        void rangesOverlap() {
+            final byte[] source = "java/lang/Object".getBytes();
+            assertArrayEquals(new String[] { "java/lang/Object", "lang/Object", "Object" }, ModifiedUtf8.decodeAll(source, new int[] { 0, 5, 10 }, new int[] { 16, 11, 6 }));
+        }
+
+        @Test
+        void rangeIsMalformed() {
+            final InvalidModifiedUtf8Exception e = assertThrows(InvalidModifiedUtf8Exception.class,
+                    () -> ModifiedUtf8.decodeAll(VARIOUS_ENCODED, new int[] { 0, 2 }, new int[] { 8, 2 }));
+            assertEquals(1, malformedLength(e));
+            assertEquals(3, e.getOffset());
+        }
+
+        @Test
+        void rangeIsOutOfBounds() {
+            assertThrows(IndexOutOfBoundsException.class, () -> ModifiedUtf8.decodeAll(VARIOUS_ENCODED, new int[] { 0, 7 }, new int[] { 1, 2 }));
+        }
+
+        @Test
+        void offsetsAndLengthsDiffer() {
+            assertThrows(IllegalArgumentException.class, () -> ModifiedUtf8.decodeAll(VARIOUS_ENCODED, new int[] { 0, 1 }, new int[] { 1 }));
+        }
+    }
+
+    @Nested
+    class MethodCodePoints {
+
+        // "A", U+1D400 as a surrogate pair, "B"
+        final byte[] pair = { 'A', (byte)(0xED), (byte)(0xA0), (byte)(0xB5), (byte)(0xED), (byte)(0xB0), (byte)(0x80), 'B' };
+
+        @Test
+        void emptySource() {
+            assertArrayEquals(new int[] { }, ModifiedUtf8.codePoints(new byte[] { }, 0, 0).toArray());
+        }
+
+        @Test
+        void sourceContainsVarious() {
+            assertArrayEquals(VARIOUS.codePoints().toArray(), ModifiedUtf8.codePoints(VARIOUS_ENCODED, 0, VARIOUS_ENCODED.length).toArray());
+        }
+
+        @Test
+        void sourceContainsSurrogatePair() {
+            assertArrayEquals(new int[] { 'A', 0x1D400, 'B' }, ModifiedUtf8.codePoints(pair, 0, pair.length).toArray());
+        }
+
+        @Test
+        void sourceContainsSurrogatePairOneAtATime() {
+            final PrimitiveIterator.OfInt iterator = ModifiedUtf8.codePoints(pair, 0, pair.length).iterator();
+            assertEquals('A', iterator.nextInt());
+            assertEquals(0x1D400, iterator.nextInt());
+            assertEquals('B', iterator.nextInt());
+            assertFalse(iterator.hasNext());
+        }
+
+        @Test
+        void sourceContainsUnpairedSurrogates() {
+            // the high surrogate alone, and the low surrogate alone
+            assertArrayEquals(new int[] { 0xD835 }, ModifiedUtf8.codePoints(pair, 1, 3).toArray());
+            assertArrayEquals(new int[] { 0xDC00, 'B' }, ModifiedUtf8.codePoints(pair, 4, 4).toArray());
+            assertArrayEquals("\uD835\uD835\uDC00".codePoints().toArray(), ModifiedUtf8.codePoints(ModifiedUtf8.encode("\uD835\uD835\uDC00"), 0, 9).toArray());
+        }
+
+        @Test
+        void sourceIsMalformed() {
+            final IntStream codePoints = ModifiedUtf8.codePoints(new byte[] { 'A', (byte)(0x80) }, 0, 2);
+            final InvalidModifiedUtf8Exception e = assertThrows(InvalidModifiedUtf8Exception.class, codePoints::toArray);
+            assertEquals(1, e.getOffset());
+        }
+
+        @Test
+        void sourceIsMalformedAfterLimitOfStream() {
+            assertArrayEquals(new int[] { 'A' }, ModifiedUtf8.codePoints(new byte[] { 'A', (byte)(0x80) }, 0, 2).limit(1).toArray());
+        }
+
+        @Test
+        void rangeOutOfBounds() {
+            assertThrows(IndexOutOfBoundsException.class, () -> ModifiedUtf8.codePoints(pair, 4, 5));
+        }
+    }
+
+    @Nested
+    class MethodEncodeToArray {
+
+        @Test
+        void emptySource() {
+            assertArrayEquals(new byte[] { }, ModifiedUtf8.encode(""));
+        }
+
+        @Test
+        void sourceContainsOnly1OctetCharacters() {
+            assertArrayEquals("java/lang/Object".getBytes(), ModifiedUtf8.encode("java/lang/Object"));
+        }
+
+        @Test
+        void sourceContainsVarious() {
+            assertArrayEquals(VARIOUS_ENCODED, ModifiedUtf8.encode(VARIOUS));
+        }
+
+        @Test
+        void sourceContainsOnlyLatin1Characters() {
+            assertArrayEquals(new byte[] { 'A', (byte)(0xC0), (byte)(0x80), (byte)(0xC2), (byte)(0xA0), (byte)(0xC3), (byte)(0xBF), '?' },
+                    ModifiedUtf8.encode("A\u0000\u00A0\u00FF?"));
+        }
+
+        @Test
+        void sourceContainsQuestionMarkAndNonLatin1Character() {
+            assertArrayEquals(new byte[] { '?', (byte)(0xE1), (byte)(0xB8), (byte)(0x80), '?' }, ModifiedUtf8.encode("?\u1E00?"));
+        }
+
+        @Test
+        void sourceIsStringBuilder() {
+            assertArrayEquals(VARIOUS_ENCODED, ModifiedUtf8.encode(new StringBuilder(VARIOUS)));
+        }
+    }
+
+    @Nested
+    class MethodEncode {
+
+        @Test
+        void emptySource() {
+            final byte[] target = new byte[0];
+            assertEquals(0, ModifiedUtf8.encode("", target, 0));
+        }
+
+        @Test
+        void sourceContainsVarious() {
+            final byte[] target = new byte[VARIOUS_ENCODED.length];
+            assertEquals(VARIOUS_ENCODED.length, ModifiedUtf8.encode(VARIOUS, target, 0));
+            assertArrayEquals(VARIOUS_ENCODED, target);
+        }
+
+        @Test
+        void sourceContainsVariousAtOffset() {
+            final byte[] target = new byte[VARIOUS_ENCODED.length + 2];
+            assertEquals(VARIOUS_ENCODED.length, ModifiedUtf8.encode(VARIOUS, target, 1));
+            assertEquals(0, target[0]);
+            assertEquals(0, target[target.length - 1]);
+            assertEquals(VARIOUS, ModifiedUtf8.decode(target, 1, VARIOUS_ENCODED.length));
+        }
+
+        @Test
+        void sourceContainsOnly1OctetCharacters() {
+            final byte[] target = new byte[17];
+            assertEquals(16, ModifiedUtf8.encode("java/lang/Object", target, 1));
+            assertEquals("java/lang/Object", ModifiedUtf8.decode(target, 1, 16));
+        }
+
+        @Test
+        void sourceContainsOnlyLatin1Characters() {
+            final byte[] target = new byte[8];
+            assertEquals(8, ModifiedUtf8.encode("A\u0000\u00A0\u00FF?", target, 0));
+            assertArrayEquals(new byte[] { 'A', (byte)(0xC0), (byte)(0x80), (byte)(0xC2), (byte)(0xA0), (byte)(0xC3), (byte)(0xBF), '?' }, target);
+        }
+
+        @Test
+        void sourceContainsOnlyLatin1CharactersAndTargetTooShort() {
+            final byte[] target = new byte[7];
+            assertThrows(IndexOutOfBoundsException.class, () -> ModifiedUtf8.encode("A\u0000\u00A0\u00FF?", target, 0));
+            assertArrayEquals(new byte[7], target);
+        }
+
+        @Test
+        void sourceContainsQuestionMarkAndNonLatin1Character() {
+            final byte[] target = new byte[5];
+            assertEquals(5, ModifiedUtf8.encode("?\u1E00?", target, 0));
+            assertArrayEquals(new byte[] { '?', (byte)(0xE1), (byte)(0xB8), (byte)(0x80), '?' }, target);
+        }
+
+        @Test
+        void targetTooShort() {
+            final byte[] target = new byte[VARIOUS_ENCODED.length - 1];
+            assertThrows(IndexOutOfBoundsException.class, () -> ModifiedUtf8.encode(VARIOUS, target, 0));
+            assertArrayEquals(new byte[target.length], target);
+        }
+
+        @Test
+        void offsetOutOfBounds() {
+            assertThrows(IndexOutOfBoundsException.class, () -> ModifiedUtf8.encode("", new byte[1], 2));
+            assertThrows(IndexOutOfBoundsException.class, () -> ModifiedUtf8.encode("", new byte[1], -1));
+        }
+    }
+
+    @Nested
+    class MethodEncodeAll {
+
+        @Test
+        void noSources() {
+            assertArrayEquals(new byte[] { }, ModifiedUtf8.encodeAll(new CharSequence[] { }, new int[] { }, new int[] { }));
+        }
+
+        @Test
+        void sourcesAreVarious() {
+            final CharSequence[] sources = { "A", "", VARIOUS, new StringBuilder("\u1E00") };
+            final int[] offsets = new int[5];
+            final int[] lengths = new int[5];
+            final byte[] target = ModifiedUtf8.encodeAll(sources, offsets, lengths);
+            assertEquals(12, target.length);
+            assertArrayEquals(new int[] { 0, 1, 1, 9, 0 }, offsets);
+            assertArrayEquals(new int[] { 1, 0, 8, 3, 0 }, lengths);
+            assertArrayEquals(VARIOUS_ENCODED, Arrays.copyOfRange(target, 1, 9));
+            assertArrayEquals(new String[] { "A", "", VARIOUS, "\u1E00" }, ModifiedUtf8.decodeAll(target, Arrays.copyOf(offsets, 4), Arrays.copyOf(lengths, 4)));
+        }
+
+        @Test
+        void offsetsAreTooShort() {
+            assertThrows(IllegalArgumentException.class, () -> ModifiedUtf8.encodeAll(new CharSequence[] { "A", "B" }, new int[1], new int[2]));
+        }
+    }
+
+    @Nested
+    class MethodEncodedLength {
+
+        @Test
+        void emptySource() {
+            assertEquals(0L, ModifiedUtf8.encodedLength(""));
+        }
+
+        @Test
+        void sourceContainsVarious() {
+            assertEquals(VARIOUS_ENCODED.length, ModifiedUtf8.encodedLength(VARIOUS));
+        }
+
+        @Test
+        void sourceContainsSurrogatePair() {
+            assertEquals(6L, ModifiedUtf8.encodedLength("\uD835\uDC00"));
+        }
+
+        @Test
+        void sourceContainsBoundaryCharacters() {
+            assertEquals(2L, ModifiedUtf8.encodedLength("\u0000"));
+            assertEquals(1L, ModifiedUtf8.encodedLength("\u0001"));
+            assertEquals(1L, ModifiedUtf8.encodedLength("\u007F"));
+            assertEquals(2L, ModifiedUtf8.encodedLength("\u0080"));
+            assertEquals(2L, ModifiedUtf8.encodedLength("\u07FF"));
+            assertEquals(3L, ModifiedUtf8.encodedLength("\u0800"));
+            assertEquals(3L, ModifiedUtf8.encodedLength("\uFFFF"));
+        }
+    }
+
+    // octets of each kind that the decoder distinguishes
+    static final byte[] ALPHABET = {
+            0x00, 'A', (byte)(0x80), (byte)(0xBF), (byte)(0xC0), (byte)(0xC3), (byte)(0xDF),
+            (byte)(0xE0), (byte)(0xE1), (byte)(0xED), (byte)(0xF0), (byte)(0xFF) };
+
+    static byte[] randomOctets(final Random random) {
+        final byte[] result = new byte[random.nextInt(24)];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ALPHABET[random.nextInt(ALPHABET.length)];
+        }
+        return result;
+    }
+
+    // the index of the first malformed or incomplete sequence, as determined
+    // by the charset decoder, or -1
+    static int firstError(final byte[] source) {
+        final CharsetDecoder decoder = new ModifiedUtf8Charset().newDecoder();
+        final ByteBuffer in = ByteBuffer.wrap(source);
+        final CoderResult result = decoder.decode(in, CharBuffer.allocate(source.length), false);
+        if (result.isMalformed()) {
+            // The decoder consumes the octets of a malformed sequence.
+            return in.position() - result.length();
+        }
+        return in.hasRemaining() ? in.position() : -1;
+    }
+
+    @Nested
+    class MethodValidate {
+
+        @Test
+        void emptySource() {
+            assertEquals(-1, ModifiedUtf8.validate(new byte[] { }, 0, 0));
+        }
+
+        @Test
+        void sourceContainsVarious() {
+            assertEquals(-1, ModifiedUtf8.validate(VARIOUS_ENCODED, 0, VARIOUS_ENCODED.length));
+        }
+
+        @Test
+        void sourceContainsLongRunsOf1OctetSequences() {
+            final byte[] source = "java/lang/Object;java/lang/String;".getBytes(StandardCharsets.US_ASCII);
+            assertEquals(-1, ModifiedUtf8.validate(source, 0, source.length));
+            source[20] = (byte)(0x80);
+            assertEquals(20, ModifiedUtf8.validate(source, 0, source.length));
+            assertEquals(-1, ModifiedUtf8.validate(source, 21, source.length - 21));
+        }
+
+        @Test
+        void sourceIsMalformed() {
+            assertEquals(3, ModifiedUtf8.validate(new byte[] { '!', '!', 'A', (byte)(0xC3), 'A' }, 2, 3));
+        }
+
+        @Test
+        void sourceIsIncomplete() {
+            assertEquals(1, ModifiedUtf8.validate(new byte[] { 'A', (byte)(0xE1), (byte)(0xB8) }, 0, 3));
+            assertEquals(-1, ModifiedUtf8.validate(new byte[] { 'A', (byte)(0xE1), (byte)(0xB8) }, 0, 1));
+        }
+
+        @Test
+        void sourceContainsInvalidFirstOctet() {
+            assertEquals(1, ModifiedUtf8.validate(new byte[] { 'A', (byte)(0xF0), 'A' }, 0, 3));
+        }
+
+        @Test
+        void agreesWithDecoder() {
+            final Random random = new Random(20);
+            for (int i = 0; i < 10000; i++) {
+                final byte[] source = randomOctets(random);
+                final int expected = firstError(source);
+                assertEquals(expected, ModifiedUtf8.validate(source, 0, source.length), () -> Arrays.toString(source));
+                if (expected < 0) {
+                    ModifiedUtf8.decode(source, 0, source.length);
+                } else {
+                    assertEquals(expected, assertThrows(InvalidModifiedUtf8Exception.class, () -> ModifiedUtf8.decode(source, 0, source.length)).getOffset());
+                }
+            }
+        }
+
+        @Test
+        void rangeIsOutOfBounds() {
+            assertThrows(IndexOutOfBoundsException.class, () -> ModifiedUtf8.validate(new byte[4], 3, 2));
+        }
+    }
+
+    @Nested
+    class MethodValidateBuffer {
+
+        @Test
+        void sourceIsHeapBuffer() {
+            final ByteBuffer source = ByteBuffer.wrap(new byte[] { '!', 'A', (byte)(0xC3), (byte)(0x80), (byte)(0xC3), 'A' }, 1, 5).slice();
+            source.position(1);
+            assertEquals(3, ModifiedUtf8.validate(source));
+            assertEquals(1, source.position());
+            source.limit(3);
+            assertEquals(-1, ModifiedUtf8.validate(source));
+        }
+
+        @Test
+        void sourceIsDirectBuffer() {
+            final byte[] octets = "java/lang/Object;java/lang/String;".getBytes(StandardCharsets.US_ASCII);
+            octets[20] = (byte)(0xE1);
+            final ByteBuffer source = ByteBuffer.allocateDirect(octets.length);
+            source.put(octets).flip();
+            assertEquals(20, ModifiedUtf8.validate(source));
+            assertEquals(0, source.position());
+            source.position(21);
+            assertEquals(-1, ModifiedUtf8.validate(source.limit(20 + 4)));
+        }
+
+        @Test
+        void agreesWithDecoder() {
+            final Random random = new Random(21);
+            for (int i = 0; i < 10000; i++) {
+                final byte[] source = randomOctets(random);
+                final ByteBuffer buffer = ByteBuffer.allocateDirect(source.length + 1);
+                buffer.put((byte)('!')).put(source).flip().position(1);
+                final int expected = firstError(source);
+                assertEquals((expected < 0) ? -1 : expected + 1, ModifiedUtf8.validate(buffer), () -> Arrays.toString(source));
+            }
+        }
+    }
+
+    @Nested
+    class MethodHashCode {
+
+        @Test
+        void emptySource() {
+            assertEquals("".hashCode(), ModifiedUtf8.hashCode(new byte[] { }, 0, 0));
+        }
+
+        @Test
+        void sourceContainsVarious() {
+            assertEquals(VARIOUS.hashCode(), ModifiedUtf8.hashCode(VARIOUS_ENCODED, 0, VARIOUS_ENCODED.length));
+        }
+
+        @Test
+        void sourceContainsVariousAtOffset() {
+            assertEquals("A\u00C0".hashCode(), ModifiedUtf8.hashCode(VARIOUS_ENCODED, 2, 3));
+        }
+
+        @Test
+        void sourceContainsNonCanonicalSequences() {
+            final byte[] source = { 0x00, (byte)(0xC1), (byte)(0x81), (byte)(0xE0), (byte)(0x83), (byte)(0x80), (byte)(0xE0), (byte)(0x81), (byte)(0x81) };
+            assertEquals("\u0000A\u00C0A".hashCode(), ModifiedUtf8.hashCode(source, 0, source.length));
+        }
+
+        @Test
+        void sourceIsMalformed() {
+            final InvalidModifiedUtf8Exception e = assertThrows(InvalidModifiedUtf8Exception.class, () -> ModifiedUtf8.hashCode(new byte[] { 'A', (byte)(0xC3), 'A' }, 0, 3));
+            assertEquals(2, malformedLength(e));
+        }
+
+        @Test
+        void sourceIsIncomplete() {
+            final InvalidModifiedUtf8Exception e = assertThrows(InvalidModifiedUtf8Exception.class, () -> ModifiedUtf8.hashCode(VARIOUS_ENCODED, 0, 7));
+            assertEquals(2, malformedLength(e));
+        }
+
+        @Test
+        void rangeIsOutOfBounds() {
+            assertThrows(IndexOutOfBoundsException.class, () -> ModifiedUtf8.hashCode(VARIOUS_ENCODED, 1, VARIOUS_ENCODED.length));
+        }
+    }
+
+    @Nested
+    class MethodContentEquals {
+
+        @Test
+        void emptySource() {
+            assertTrue(ModifiedUtf8.contentEquals(new byte[] { }, 0, 0, ""));
+            assertFalse(ModifiedUtf8.contentEquals(new byte[] { }, 0, 0, "A"));
+        }
+
+        @Test
+        void sourceContainsVarious() {
+            assertTrue(ModifiedUtf8.contentEquals(VARIOUS_ENCODED, 0, VARIOUS_ENCODED.length, VARIOUS));
+            assertTrue(ModifiedUtf8.contentEquals(VARIOUS_ENCODED, 0, VARIOUS_ENCODED.length, new StringBuilder(VARIOUS)));
+            assertTrue(ModifiedUtf8.contentEquals(VARIOUS_ENCODED, 2, 3, "A\u00C0"));
+        }
+
+        @Test
+        void sourceContainsNonCanonicalSequences() {
+            final byte[] source = { 0x00, (byte)(0xC1), (byte)(0x81), (byte)(0xE0), (byte)(0x83), (byte)(0x80) };
+            assertTrue(ModifiedUtf8.contentEquals(source, 0, source.length, "\u0000A\u00C0"));
+        }
+
+        @Test
+        void charactersDiffer() {
+            assertFalse(ModifiedUtf8.contentEquals(VARIOUS_ENCODED, 0, VARIOUS_ENCODED.length, "\u0000A\u00C0\u1E01"));
+            assertFalse(ModifiedUtf8.contentEquals(VARIOUS_ENCODED, 0, VARIOUS_ENCODED.length, "\u0000A\u00C0"));
+            assertFalse(ModifiedUtf8.contentEquals(VARIOUS_ENCODED, 0, VARIOUS_ENCODED.length, VARIOUS + "A"));
+            assertFalse(ModifiedUtf8.contentEquals(VARIOUS_ENCODED, 0, 3, "\u0000A\u00C0"));
+        }
+
+        @Test
+        void charactersDifferBeforeMalformedSequence() {
+            assertFalse(ModifiedUtf8.contentEquals(new byte[] { 'A', (byte)(0x80) }, 0, 2, "B\u0000"));
+        }
+
+        @Test
+        void sourceIsMalformed() {
+            assertThrows(InvalidModifiedUtf8Exception.class, () -> ModifiedUtf8.contentEquals(new byte[] { 'A', (byte)(0x80) }, 0, 2, "A\u0000"));
+        }
+
+        @Test
+        void rangeIsOutOfBounds() {
+            assertThrows(IndexOutOfBoundsException.class, () -> ModifiedUtf8.contentEquals(VARIOUS_ENCODED, -1, 2, "A"));
+        }
+    }
+
+    static String repeat(final String s, final int count) {
+        final StringBuilder builder = new StringBuilder(s.length() * count);
+        for (int i = 0; i < count; i++) {
+            builder.append(s);
+        }
+        return builder.toString();
+    }
+
+    static byte[] writeUtfWithDataOutputStream(final String s) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new DataOutputStream(bytes).writeUTF(s);
+        return bytes.toByteArray();
+    }
+
+    @Nested
+    class MethodReadUtfFromDataInput {
+
+        @Test
+        void emptyString() throws IOException {
+            assertEquals("", ModifiedUtf8.readUTF(new DataInputStream(new ByteArrayInputStream(new byte[] { 0x00, 0x00 }))));
+        }
+
+        @Test
+        void sequenceOfStrings() throws IOException {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final DataOutputStream output = new DataOutputStream(bytes);
+            output.writeUTF(VARIOUS);
+            output.writeUTF(repeat(VARIOUS, 8000));
+            output.writeUTF("java/lang/Object");
+            final DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+            assertEquals(VARIOUS, ModifiedUtf8.readUTF(input));
+            assertEquals(repeat(VARIOUS, 8000), ModifiedUtf8.readUTF(input));
+            assertEquals("java/lang/Object", ModifiedUtf8.readUTF(input));
+        }
+
+        @Test
+        void truncatedInput() {
+            assertThrows(EOFException.class, () -> ModifiedUtf8.readUTF(new DataInputStream(new ByteArrayInputStream(new byte[] { 0x00, 0x02, 'A' }))));
+        }
+
+        @Test
+        void invalidEncoding() {
+            assertThrows(InvalidModifiedUtf8Exception.class, () -> ModifiedUtf8.readUTF(new DataInputStream(new ByteArrayInputStream(new byte[] { 0x00, 0x01, (byte)(0x80) }))));
+        }
+    }
+
+    @Nested
+    class MethodReadUtfFromByteBuffer {
+
+        @Test
+        void heapBuffer() throws IOException {
+            final ByteBuffer source = ByteBuffer.wrap(writeUtfWithDataOutputStream(VARIOUS));
+            assertEquals(VARIOUS, ModifiedUtf8.readUTF(source));
+            assertFalse(source.hasRemaining());
+        }
+
+        @Test
+        void directBuffer() throws IOException {
+            final byte[] bytes = writeUtfWithDataOutputStream(VARIOUS);
+            final ByteBuffer source = ByteBuffer.allocateDirect(bytes.length + 1).put(bytes).put((byte)('A')).flip();
+            assertEquals(VARIOUS, ModifiedUtf8.readUTF(source));
+            assertEquals(1, source.remaining());
+        }
+
+        @Test
+        void slicedHeapBuffer() throws IOException {
+            final byte[] bytes = writeUtfWithDataOutputStream(VARIOUS);
+            final byte[] padded = new byte[bytes.length + 2];
+            System.arraycopy(bytes, 0, padded, 1, bytes.length);
+            final ByteBuffer source = ByteBuffer.wrap(padded, 1, bytes.length).slice();
+            assertEquals(VARIOUS, ModifiedUtf8.readUTF(source));
+            assertFalse(source.hasRemaining());
+        }
+
+        @Test
+        void truncatedLength() {
+            final ByteBuffer source = ByteBuffer.wrap(new byte[] { 0x00 });
+            assertThrows(BufferUnderflowException.class, () -> ModifiedUtf8.readUTF(source));
+            assertEquals(0, source.position());
+        }
+
+        @Test
+        void truncatedEncoding() {
+            final ByteBuffer source = ByteBuffer.wrap(new byte[] { 0x00, 0x02, 'A' });
+            assertThrows(BufferUnderflowException.class, () -> ModifiedUtf8.readUTF(source));
+            assertEquals(0, source.position());
+        }
+
+        @Test
+        void malformedHeapBuffer() {
+            final byte[] padded = { 'X', 'Y', 'Z', 0x00, 0x03, 'A', (byte)(0xE1), 'B' };
+            final ByteBuffer source = ByteBuffer.wrap(padded, 1, 7).slice();
+            source.position(2);
+            final InvalidModifiedUtf8Exception e = assertThrows(InvalidModifiedUtf8Exception.class, () -> ModifiedUtf8.readUTF(source));
+            assertEquals(3, e.getOffset());
+            assertEquals(2, source.position());
+        }
+
+        @Test
+        void malformedDirectBuffer() {
+            final ByteBuffer source = ByteBuffer.allocateDirect(7);
+            source.put(new byte[] { 'Y', 'Z', 0x00, 0x03, 'A', (byte)(0xE1), 'B' }).flip();
+            source.position(2);
+            final InvalidModifiedUtf8Exception e = assertThrows(InvalidModifiedUtf8Exception.class, () -> ModifiedUtf8.readUTF(source));
+            assertEquals(3, e.getOffset());
+            assertEquals(2, source.position());
+        }
+    }
+
+    @Nested
+    class MethodWriteUtfToDataOutput {
+
+        @Test
+        void sameAsDataOutputStream() throws IOException {
+            for (final String s : new String[] { "", VARIOUS, repeat(VARIOUS, 8000), repeat("A", 65535) }) {
+                final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                ModifiedUtf8.writeUTF(s, new DataOutputStream(bytes));
+                assertArrayEquals(writeUtfWithDataOutputStream(s), bytes.toByteArray());
+            }
+        }
+
+        @Test
+        void encodingTooLong() {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            assertThrows(UTFDataFormatException.class, () -> ModifiedUtf8.writeUTF(repeat("\u0000", 32768), new DataOutputStream(bytes)));
+            assertEquals(0, bytes.size());
+        }
+    }
+
+    @Nested
+    class MethodWriteUtfToByteBuffer {
+
+        @Test
+        void heapBuffer() throws IOException {
+            final byte[] expected = writeUtfWithDataOutputStream(VARIOUS);
+            final ByteBuffer target = ByteBuffer.allocate(expected.length + 1);
+            ModifiedUtf8.writeUTF(VARIOUS, target);
+            assertEquals(expected.length, target.position());
+            assertArrayEquals(expected, Arrays.copyOf(target.array(), expected.length));
+        }
+
+        @Test
+        void directBuffer() throws IOException {
+            final byte[] expected = writeUtfWithDataOutputStream(VARIOUS);
+            final ByteBuffer target = ByteBuffer.allocateDirect(expected.length);
+            ModifiedUtf8.writeUTF(VARIOUS, target);
+            assertEquals(ByteBuffer.wrap(expected), target.flip());
+        }
+
+        @Test
+        void targetTooShort() {
+            final ByteBuffer target = ByteBuffer.allocate(VARIOUS_ENCODED.length + 1);
+            assertThrows(BufferOverflowException.class, () -> ModifiedUtf8.writeUTF(VARIOUS, target));
+            assertEquals(0, target.position());
+            assertArrayEquals(new byte[target.capacity()], target.array());
+        }
+
+        @Test
+        void encodingTooLong() {
+            final ByteBuffer target = ByteBuffer.allocate(1 << 17);
+            assertThrows(UTFDataFormatException.class, () -> ModifiedUtf8.writeUTF(repeat("\u0000", 32768), target));
+            assertEquals(0, target.position());
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+package mutf8;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ModifiedUtf8WriterTest {
+
+    static final String TEXT = ModifiedUtf8Test.repeat(ModifiedUtf8Test.VARIOUS + "abcdefghijklm", 200);
+
+    @Nested
+    class Constructor {
+
+        @Test
+        void bufferSizeIsIllegal() {
+            final WritableByteChannel channel = Channels.newChannel(new ByteArrayOutputStream());
+            assertThrows(IllegalArgumentException.class, () -> new ModifiedUtf8Writer(channel, 2));
+        }
+    }
+
+    @Nested
+    class MethodWrite {
+
+        @Test
+        void sourceIsArray() throws IOException {
+            for (int bufferSize = 3; bufferSize <= 10; bufferSize++) {
+                final ByteArrayOutputStream out = new ByteArrayOutputStream();
+                try (ModifiedUtf8Writer writer = new ModifiedUtf8Writer(Channels.newChannel(out), bufferSize)) {
+                    final char[] source = ("!" + TEXT + "!").toCharArray();
+                    writer.write(source, 1, TEXT.length());
+                }
+                assertArrayEquals(ModifiedUtf8.encode(TEXT), out.toByteArray());
+            }
+        }
+
+        @Test
+        void sourceIsString() throws IOException {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (ModifiedUtf8Writer writer = new ModifiedUtf8Writer(Channels.newChannel(out), 100)) {
+                writer.write("!!" + TEXT, 2, TEXT.length());
+                writer.append("A\uD800\uDC00");
+            }
+            assertArrayEquals(ModifiedUtf8.encode(TEXT + "A\uD800\uDC00"), out.toByteArray());
+        }
+
+        @Test
+        void sourceIsCharacters() throws IOException {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (ModifiedUtf8Writer writer = new ModifiedUtf8Writer(Channels.newChannel(out), 4)) {
+                for (int i = 0; i < TEXT.length(); i++) {
+                    writer.write(TEXT.charAt(i));
+                }
+            }
+            assertArrayEquals(ModifiedUtf8.encode(TEXT), out.toByteArray());
+        }
+
+        @Test
+        void writerIsClosed() throws IOException {
+            final ModifiedUtf8Writer writer = new ModifiedUtf8Writer(Channels.newChannel(new ByteArrayOutputStream()));
+            writer.close();
+            writer.close();
+            assertThrows(IOException.class, () -> writer.write("A"));
+        }
+    }
+
+    @Nested
+    class MethodFlush {
+
+        @Test
+        void octetsAreBuffered() throws IOException {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (ModifiedUtf8Writer writer = new ModifiedUtf8Writer(Channels.newChannel(out))) {
+                writer.write(ModifiedUtf8Test.VARIOUS);
+                assertEquals(0, out.size());
+                writer.flush();
+                assertArrayEquals(ModifiedUtf8Test.VARIOUS_ENCODED, out.toByteArray());
+            }
+        }
+    }
+
+    @Nested
+    class MethodClose {
+
+        @Test
+        void fileIsReadBack() throws IOException {
+            final Path path = Files.createTempFile("mutf8", ".bin");
+            try {
+                final FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE);
+                try (ModifiedUtf8Writer writer = new ModifiedUtf8Writer(channel)) {
+                    writer.write(TEXT);
+                }
+                assertFalse(channel.isOpen());
+                try (ModifiedUtf8Reader reader = new ModifiedUtf8Reader(FileChannel.open(path, StandardOpenOption.READ))) {
+                    assertEquals(TEXT, ModifiedUtf8ReaderTest.readAll(reader, 1000));
+                }
+            } finally {
+                Files.delete(path);
+            }
+        }
+    }
+}
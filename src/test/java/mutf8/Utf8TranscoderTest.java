@@ -0,0 +1,311 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+package mutf8;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.CoderResult;
+import java.nio.charset.MalformedInputException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnmappableCharacterException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Utf8TranscoderTest {
+
+    static final String SUPPLEMENTARY = "A\u0000\u00C0\u1E00\uD83D\uDE00z";
+
+    static final byte[] MODIFIED_UTF8 = ModifiedUtf8.encode(SUPPLEMENTARY);
+
+    static final byte[] UTF8 = SUPPLEMENTARY.getBytes(StandardCharsets.UTF_8);
+
+    static byte[] bytes(final int... values) {
+        final byte[] result = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = (byte)(values[i]);
+        }
+        return result;
+    }
+
+    static byte[] remaining(final ByteBuffer buffer) {
+        final byte[] result = new byte[buffer.position()];
+        buffer.flip().get(result);
+        return result;
+    }
+
+    static byte[] longText() {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            builder.append("abc\u0000\u00E9\u4E2D\uD83D\uDE00");
+        }
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Nested
+    class MethodToUtf8Buffer {
+
+        @Test
+        void sourceContainsVarious() {
+            final ByteBuffer target = ByteBuffer.allocate(32);
+            assertEquals(CoderResult.UNDERFLOW, Utf8Transcoder.toUtf8(ByteBuffer.wrap(MODIFIED_UTF8), target, true));
+            assertArrayEquals(UTF8, remaining(target));
+        }
+
+        @Test
+        void sourceAndTargetAreDirect() {
+            final ByteBuffer source = ByteBuffer.allocateDirect(MODIFIED_UTF8.length);
+            source.put(MODIFIED_UTF8).flip();
+            final ByteBuffer target = ByteBuffer.allocateDirect(32);
+            assertEquals(CoderResult.UNDERFLOW, Utf8Transcoder.toUtf8(source, target, true));
+            assertFalse(source.hasRemaining());
+            assertArrayEquals(UTF8, remaining(target));
+        }
+
+        @Test
+        void sourceContainsOverlongSequences() {
+            final ByteBuffer target = ByteBuffer.allocate(8);
+            assertEquals(CoderResult.UNDERFLOW, Utf8Transcoder.toUtf8(ByteBuffer.wrap(bytes(0x00, 0xC1, 0x81, 0xE0, 0x83, 0x80)), target, true));
+            assertArrayEquals(bytes(0x00, 0x41, 0xC3, 0x80), remaining(target));
+        }
+
+        @Test
+        void sourceEndsWithIncompleteSurrogatePair() {
+            final ByteBuffer source = ByteBuffer.wrap(bytes('A', 0xED, 0xA0, 0xBD, 0xED, 0xB8));
+            final ByteBuffer target = ByteBuffer.allocate(8);
+            assertEquals(CoderResult.UNDERFLOW, Utf8Transcoder.toUtf8(source, target, false));
+            assertEquals(1, source.position());
+            assertArrayEquals(bytes('A'), remaining(target));
+        }
+
+        @Test
+        void sourceEndsWithUnpairedHighSurrogate() {
+            final ByteBuffer source = ByteBuffer.wrap(bytes('A', 0xED, 0xA0, 0xBD, 0xED, 0xB8));
+            assertEquals(CoderResult.unmappableForLength(3), Utf8Transcoder.toUtf8(source, ByteBuffer.allocate(8), true));
+            assertEquals(1, source.position());
+        }
+
+        @Test
+        void sourceContainsUnpairedLowSurrogate() {
+            final ByteBuffer source = ByteBuffer.wrap(bytes('A', 0xED, 0xB8, 0x80, 'B'));
+            assertEquals(CoderResult.unmappableForLength(3), Utf8Transcoder.toUtf8(source, ByteBuffer.allocate(8), true));
+            assertEquals(1, source.position());
+        }
+
+        @Test
+        void sourceContainsHighSurrogateFollowedByOther() {
+            final ByteBuffer source = ByteBuffer.wrap(bytes(0xED, 0xA0, 0xBD, 'A', 'B', 'C'));
+            assertEquals(CoderResult.unmappableForLength(3), Utf8Transcoder.toUtf8(source, ByteBuffer.allocate(8), false));
+            assertEquals(0, source.position());
+        }
+
+        @Test
+        void sourceContainsMalformedSequence() {
+            final ByteBuffer source = ByteBuffer.wrap(bytes('A', 0xE1, 0xB8, 'B'));
+            assertEquals(CoderResult.malformedForLength(3), Utf8Transcoder.toUtf8(source, ByteBuffer.allocate(8), true));
+            assertEquals(1, source.position());
+        }
+
+        @Test
+        void sourceContainsInvalidFirstOctet() {
+            final ByteBuffer source = ByteBuffer.wrap(bytes('A', 0xF0, 0x9F, 0x98, 0x80));
+            assertEquals(CoderResult.malformedForLength(1), Utf8Transcoder.toUtf8(source, ByteBuffer.allocate(8), true));
+            assertEquals(1, source.position());
+        }
+
+        @Test
+        void sourceEndsWithIncompleteSequence() {
+            final ByteBuffer source = ByteBuffer.wrap(bytes('A', 0xE1, 0xB8));
+            assertEquals(CoderResult.UNDERFLOW, Utf8Transcoder.toUtf8(source, ByteBuffer.allocate(8), false));
+            assertEquals(1, source.position());
+            assertEquals(CoderResult.malformedForLength(2), Utf8Transcoder.toUtf8(source, ByteBuffer.allocate(8), true));
+            assertEquals(1, source.position());
+        }
+
+        @Test
+        void targetIsTooSmall() {
+            final ByteBuffer source = ByteBuffer.wrap(MODIFIED_UTF8);
+            final ByteBuffer target = ByteBuffer.allocate(9);
+            assertEquals(CoderResult.OVERFLOW, Utf8Transcoder.toUtf8(source, target, true));
+            // A, null, 2 octets, 3 octets, and not the 4 octets of the pair
+            assertEquals(8, source.position());
+            assertEquals(7, target.position());
+        }
+    }
+
+    @Nested
+    class MethodFromUtf8Buffer {
+
+        @Test
+        void sourceContainsVarious() {
+            final ByteBuffer target = ByteBuffer.allocate(32);
+            assertEquals(CoderResult.UNDERFLOW, Utf8Transcoder.fromUtf8(ByteBuffer.wrap(UTF8), target, true));
+            assertArrayEquals(MODIFIED_UTF8, remaining(target));
+        }
+
+        @Test
+        void sourceAndTargetAreDirect() {
+            final ByteBuffer source = ByteBuffer.allocateDirect(UTF8.length);
+            source.put(UTF8).flip();
+            final ByteBuffer target = ByteBuffer.allocateDirect(32);
+            assertEquals(CoderResult.UNDERFLOW, Utf8Transcoder.fromUtf8(source, target, true));
+            assertArrayEquals(MODIFIED_UTF8, remaining(target));
+        }
+
+        @Test
+        void sourceContainsOverlongSequence() {
+            final ByteBuffer source = ByteBuffer.wrap(bytes('A', 0xC0, 0x80));
+            assertEquals(CoderResult.malformedForLength(1), Utf8Transcoder.fromUtf8(source, ByteBuffer.allocate(8), true));
+            assertEquals(1, source.position());
+        }
+
+        @Test
+        void sourceContainsSurrogate() {
+            final ByteBuffer source = ByteBuffer.wrap(bytes('A', 0xED, 0xA0, 0xBD));
+            assertEquals(CoderResult.malformedForLength(1), Utf8Transcoder.fromUtf8(source, ByteBuffer.allocate(8), true));
+            assertEquals(1, source.position());
+        }
+
+        @Test
+        void sourceContainsTruncatedSequence() {
+            final ByteBuffer source = ByteBuffer.wrap(bytes('A', 0xF0, 0x9F, 0x98, 'B'));
+            assertEquals(CoderResult.malformedForLength(3), Utf8Transcoder.fromUtf8(source, ByteBuffer.allocate(8), true));
+            assertEquals(1, source.position());
+        }
+
+        @Test
+        void sourceContainsCodePointGreaterThanMaximum() {
+            final ByteBuffer source = ByteBuffer.wrap(bytes(0xF4, 0x90, 0x80, 0x80));
+            assertEquals(CoderResult.malformedForLength(1), Utf8Transcoder.fromUtf8(source, ByteBuffer.allocate(8), true));
+        }
+
+        @Test
+        void sourceEndsWithIncompleteSequence() {
+            final ByteBuffer source = ByteBuffer.wrap(bytes('A', 0xF0, 0x9F, 0x98));
+            final ByteBuffer target = ByteBuffer.allocate(8);
+            assertEquals(CoderResult.UNDERFLOW, Utf8Transcoder.fromUtf8(source, target, false));
+            assertEquals(1, source.position());
+            assertEquals(CoderResult.malformedForLength(3), Utf8Transcoder.fromUtf8(source, target, true));
+            assertEquals(1, source.position());
+        }
+
+        @Test
+        void targetIsTooSmall() {
+            final ByteBuffer source = ByteBuffer.wrap(UTF8);
+            final ByteBuffer target = ByteBuffer.allocate(12);
+            assertEquals(CoderResult.OVERFLOW, Utf8Transcoder.fromUtf8(source, target, true));
+            // A, null, 2 octets, 3 octets, and not the 6 octets of the pair
+            assertEquals(7, source.position());
+            assertEquals(8, target.position());
+        }
+    }
+
+    @Nested
+    class MethodToUtf8Array {
+
+        @Test
+        void sourceContainsVarious() throws Exception {
+            assertArrayEquals(UTF8, Utf8Transcoder.toUtf8(MODIFIED_UTF8, 0, MODIFIED_UTF8.length));
+        }
+
+        @Test
+        void sourceContainsOnly1OctetSequences() throws Exception {
+            final byte[] source = "java/lang/Object".getBytes(StandardCharsets.US_ASCII);
+            assertArrayEquals(bytes('l', 'a', 'n', 'g'), Utf8Transcoder.toUtf8(source, 5, 4));
+        }
+
+        @Test
+        void sourceContainsUnpairedSurrogate() {
+            final byte[] source = bytes('A', 0xED, 0xA0, 0xBD, 'B');
+            assertEquals(3, assertThrows(UnmappableCharacterException.class, () -> Utf8Transcoder.toUtf8(source, 0, source.length)).getInputLength());
+        }
+
+        @Test
+        void sourceIsMalformed() {
+            final byte[] source = bytes('A', 0xE1, 0xB8);
+            assertEquals(2, assertThrows(MalformedInputException.class, () -> Utf8Transcoder.toUtf8(source, 0, source.length)).getInputLength());
+        }
+
+        @Test
+        void rangeIsOutOfBounds() {
+            assertThrows(IndexOutOfBoundsException.class, () -> Utf8Transcoder.toUtf8(new byte[4], 2, 3));
+        }
+    }
+
+    @Nested
+    class MethodFromUtf8Array {
+
+        @Test
+        void sourceContainsVarious() throws Exception {
+            assertArrayEquals(MODIFIED_UTF8, Utf8Transcoder.fromUtf8(UTF8, 0, UTF8.length));
+        }
+
+        @Test
+        void sourceIsLong() throws Exception {
+            final byte[] source = longText();
+            final String expected = new String(source, StandardCharsets.UTF_8);
+            assertArrayEquals(ModifiedUtf8.encode(expected), Utf8Transcoder.fromUtf8(source, 0, source.length));
+        }
+
+        @Test
+        void sourceIsMalformed() {
+            final byte[] source = bytes('A', 0x80, 'B');
+            assertEquals(1, assertThrows(MalformedInputException.class, () -> Utf8Transcoder.fromUtf8(source, 0, source.length)).getInputLength());
+        }
+
+        @Test
+        void rangeIsOutOfBounds() {
+            assertThrows(IndexOutOfBoundsException.class, () -> Utf8Transcoder.fromUtf8(new byte[4], -1, 2));
+        }
+    }
+
+    @Nested
+    class MethodToUtf8Stream {
+
+        @Test
+        void sourceIsLong() throws IOException {
+            final byte[] expected = longText();
+            final byte[] source = ModifiedUtf8.encode(new String(expected, StandardCharsets.UTF_8));
+            final ByteArrayOutputStream target = new ByteArrayOutputStream();
+            Utf8Transcoder.toUtf8(new ByteArrayInputStream(source), target);
+            assertArrayEquals(expected, target.toByteArray());
+        }
+
+        @Test
+        void sourceIsEmpty() throws IOException {
+            final ByteArrayOutputStream target = new ByteArrayOutputStream();
+            Utf8Transcoder.toUtf8(new ByteArrayInputStream(new byte[0]), target);
+            assertEquals(0, target.size());
+        }
+
+        @Test
+        void sourceEndsWithUnpairedHighSurrogate() {
+            final byte[] source = bytes('A', 0xED, 0xA0, 0xBD);
+            assertThrows(UnmappableCharacterException.class, () -> Utf8Transcoder.toUtf8(new ByteArrayInputStream(source), new ByteArrayOutputStream()));
+        }
+    }
+
+    @Nested
+    class MethodFromUtf8Stream {
+
+        @Test
+        void sourceIsLong() throws IOException {
+            final byte[] source = longText();
+            final ByteArrayOutputStream target = new ByteArrayOutputStream();
+            Utf8Transcoder.fromUtf8(new ByteArrayInputStream(source), target);
+            assertArrayEquals(ModifiedUtf8.encode(new String(source, StandardCharsets.UTF_8)), target.toByteArray());
+        }
+
+        @Test
+        void sourceEndsWithIncompleteSequence() {
+            final byte[] source = bytes('A', 0xE4, 0xB8);
+            assertEquals(2, assertThrows(MalformedInputException.class, () -> Utf8Transcoder.fromUtf8(new ByteArrayInputStream(source), new ByteArrayOutputStream())).getInputLength());
+        }
+    }
+}
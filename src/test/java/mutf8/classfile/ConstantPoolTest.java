@@ -0,0 +1,167 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+package mutf8.classfile;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConstantPoolTest {
+
+    // a class file whose constant pool contains one entry of every kind
+    static byte[] classFile() {
+        try {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(54);
+            out.writeShort(21);
+            out.writeByte(1); out.writeUTF("java/lang/Object");       // 1
+            out.writeByte(7); out.writeShort(1);                      // 2
+            out.writeByte(3); out.writeInt(42);                       // 3
+            out.writeByte(4); out.writeFloat(1.0f);                   // 4
+            out.writeByte(5); out.writeLong(42L);                     // 5, 6
+            out.writeByte(1); out.writeUTF("\u0000A\u00C0\u1E00");    // 7
+            out.writeByte(6); out.writeDouble(1.0);                   // 8, 9
+            out.writeByte(8); out.writeShort(7);                      // 10
+            out.writeByte(9); out.writeShort(2); out.writeShort(12);  // 11
+            out.writeByte(12); out.writeShort(1); out.writeShort(1);  // 12
+            out.writeByte(10); out.writeShort(2); out.writeShort(12); // 13
+            out.writeByte(11); out.writeShort(2); out.writeShort(12); // 14
+            out.writeByte(15); out.writeByte(1); out.writeShort(13);  // 15
+            out.writeByte(16); out.writeShort(1);                     // 16
+            out.writeByte(17); out.writeShort(0); out.writeShort(12); // 17
+            out.writeByte(18); out.writeShort(0); out.writeShort(12); // 18
+            out.writeByte(19); out.writeShort(1);                     // 19
+            out.writeByte(20); out.writeShort(1);                     // 20
+            out.writeShort(0x0021);
+            out.close();
+            return bytes.toByteArray();
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static List<String> strings(final ConstantPool pool) {
+        return pool.utf8Entries().stream().map(Utf8Entry::decode).collect(Collectors.toList());
+    }
+
+    @Nested
+    class MethodRead {
+
+        @Test
+        void sourceContainsEveryKindOfEntry() {
+            final ConstantPool pool = ConstantPool.read(ByteBuffer.wrap(classFile()));
+            assertEquals(21, pool.count());
+            assertEquals(List.of("java/lang/Object", "\u0000A\u00C0\u1E00"), strings(pool));
+            assertEquals(1, pool.utf8Entries().get(0).index());
+            assertEquals(7, pool.utf8Entries().get(1).index());
+        }
+
+        @Test
+        void sourceIsAtPosition() {
+            final byte[] classFile = classFile();
+            final ByteBuffer source = ByteBuffer.allocate(classFile.length + 3);
+            source.position(3);
+            source.put(classFile);
+            source.position(3);
+            final ConstantPool pool = ConstantPool.read(source);
+            assertEquals(3, source.position());
+            assertEquals(List.of("java/lang/Object", "\u0000A\u00C0\u1E00"), strings(pool));
+        }
+
+        @Test
+        void sourceIsDirect() {
+            final byte[] classFile = classFile();
+            final ByteBuffer source = ByteBuffer.allocateDirect(classFile.length);
+            source.put(classFile).flip();
+            assertEquals(List.of("java/lang/Object", "\u0000A\u00C0\u1E00"), strings(ConstantPool.read(source)));
+        }
+
+        @Test
+        void sourceIsCompiledClass() throws IOException {
+            final byte[] classFile;
+            try (InputStream in = ConstantPoolTest.class.getResourceAsStream("ConstantPoolTest.class")) {
+                classFile = in.readAllBytes();
+            }
+            final List<String> strings = strings(ConstantPool.read(ByteBuffer.wrap(classFile)));
+            assertTrue(strings.contains("mutf8/classfile/ConstantPoolTest"));
+            assertTrue(strings.contains("\u0000A\u00C0\u1E00"));
+        }
+
+        @Test
+        void sourceIsNotClassFile() {
+            assertThrows(IllegalArgumentException.class, () -> ConstantPool.read(ByteBuffer.wrap(new byte[] { 'P', 'K', 3, 4, 0, 0, 0, 0, 0, 0 })));
+        }
+
+        @Test
+        void sourceIsTruncated() {
+            final byte[] classFile = classFile();
+            for (int length = 0; length < classFile.length - 2; length++) {
+                final ByteBuffer source = ByteBuffer.wrap(classFile, 0, length);
+                assertThrows(IllegalArgumentException.class, () -> ConstantPool.read(source));
+            }
+        }
+
+        @Test
+        void sourceContainsInvalidTag() {
+            final byte[] classFile = classFile();
+            classFile[10] = 2;
+            final IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> ConstantPool.read(ByteBuffer.wrap(classFile)));
+            assertEquals("Invalid constant pool tag 2 at index 1", e.getMessage());
+        }
+    }
+
+    @Nested
+    class MethodMap {
+
+        @Test
+        void fileIsClassFile() throws IOException {
+            final Path path = Files.createTempFile("mutf8", ".class");
+            try {
+                Files.write(path, classFile());
+                assertEquals(List.of("java/lang/Object", "\u0000A\u00C0\u1E00"), strings(ConstantPool.map(path)));
+            } finally {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Nested
+    class MethodUtf8Entry {
+
+        @Test
+        void indexIsUtf8Entry() {
+            assertEquals("java/lang/Object", ConstantPool.read(ByteBuffer.wrap(classFile())).utf8Entry(1).decode());
+        }
+
+        @Test
+        void indexIsOtherEntry() {
+            final ConstantPool pool = ConstantPool.read(ByteBuffer.wrap(classFile()));
+            assertThrows(IllegalArgumentException.class, () -> pool.utf8Entry(2));
+            assertThrows(IllegalArgumentException.class, () -> pool.utf8Entry(6));
+        }
+
+        @Test
+        void indexIsOutOfBounds() {
+            final ConstantPool pool = ConstantPool.read(ByteBuffer.wrap(classFile()));
+            assertThrows(IndexOutOfBoundsException.class, () -> pool.utf8Entry(0));
+            assertThrows(IndexOutOfBoundsException.class, () -> pool.utf8Entry(21));
+        }
+    }
+}
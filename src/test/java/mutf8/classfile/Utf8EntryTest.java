@@ -0,0 +1,133 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+package mutf8.classfile;
+
+import mutf8.InvalidModifiedUtf8Exception;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Utf8EntryTest {
+
+    static final byte[] VARIOUS_ENCODED = { (byte)(0xC0), (byte)(0x80), 'A', (byte)(0xC3), (byte)(0x80), (byte)(0xE1), (byte)(0xB8), (byte)(0x80) };
+
+    @Nested
+    class MethodLength {
+
+        @Test
+        void lengthIsNumberOfOctets() {
+            assertEquals(VARIOUS_ENCODED.length, new Utf8Entry(1, ByteBuffer.wrap(VARIOUS_ENCODED)).length());
+        }
+    }
+
+    @Nested
+    class MethodOctets {
+
+        @Test
+        void octetsAreShared() {
+            final byte[] classFile = ConstantPoolTest.classFile();
+            final Utf8Entry entry = ConstantPool.read(ByteBuffer.wrap(classFile)).utf8Entry(1);
+            final ByteBuffer octets = entry.octets();
+            assertEquals(0, octets.position());
+            assertEquals(16, octets.remaining());
+            assertEquals('j', octets.get(0));
+            classFile[13] = 'J';
+            assertEquals('J', octets.get(0));
+        }
+
+        @Test
+        void octetsAreReadOnly() {
+            final ByteBuffer octets = new Utf8Entry(1, ByteBuffer.wrap(VARIOUS_ENCODED)).octets();
+            assertThrows(ReadOnlyBufferException.class, () -> octets.put(0, (byte)('B')));
+        }
+    }
+
+    @Nested
+    class MethodDecode {
+
+        @Test
+        void octetsAreHeap() {
+            assertEquals("\u0000A\u00C0\u1E00", new Utf8Entry(1, ByteBuffer.wrap(VARIOUS_ENCODED)).decode());
+        }
+
+        @Test
+        void octetsAreDirect() {
+            final ByteBuffer octets = ByteBuffer.allocateDirect(VARIOUS_ENCODED.length);
+            octets.put(VARIOUS_ENCODED).flip();
+            assertEquals("\u0000A\u00C0\u1E00", new Utf8Entry(1, octets).decode());
+        }
+
+        @Test
+        void octetsAreMapped() throws IOException {
+            // the first entry of the class file, java/lang/Object, with its
+            // sixth octet replaced by a continuation octet
+            final byte[] classFile = ConstantPoolTest.classFile();
+            classFile[13 + 5] = (byte)(0x80);
+            final Path path = Files.createTempFile("mutf8", ".class");
+            try {
+                Files.write(path, classFile);
+                final ConstantPool pool = ConstantPool.map(path);
+                assertFalse(pool.utf8Entry(7).octets().hasArray());
+                assertEquals("\u0000A\u00C0\u1E00", pool.utf8Entry(7).decode());
+                assertEquals(5, assertThrows(InvalidModifiedUtf8Exception.class, () -> pool.utf8Entry(1).decode()).getOffset());
+            } finally {
+                Files.delete(path);
+            }
+        }
+
+        @Test
+        void decodedStringIsRetained() {
+            final Utf8Entry entry = new Utf8Entry(1, ByteBuffer.wrap(VARIOUS_ENCODED));
+            assertSame(entry.decode(), entry.decode());
+            assertSame(entry.decode(), entry.toString());
+        }
+
+        @Test
+        void octetsAreMalformed() {
+            final ByteBuffer heap = ByteBuffer.wrap(new byte[] { 'A', (byte)(0x80) });
+            assertEquals(1, assertThrows(InvalidModifiedUtf8Exception.class, () -> new Utf8Entry(1, heap).decode()).getOffset());
+            final ByteBuffer direct = ByteBuffer.allocateDirect(2);
+            direct.put(heap).flip();
+            assertEquals(1, assertThrows(InvalidModifiedUtf8Exception.class, () -> new Utf8Entry(1, direct).decode()).getOffset());
+        }
+
+        @Test
+        void octetsAreMalformedWithinClassFile() {
+            final ByteBuffer heap = ByteBuffer.wrap(new byte[] { 'X', 'Y', 'A', 'B', (byte)(0x80) }, 2, 3).slice();
+            assertEquals(2, assertThrows(InvalidModifiedUtf8Exception.class, () -> new Utf8Entry(1, heap).decode()).getOffset());
+        }
+
+        @Test
+        void octetsAreIncomplete() {
+            final ByteBuffer direct = ByteBuffer.allocateDirect(2);
+            direct.put((byte)('A')).put((byte)(0xC3)).flip();
+            assertThrows(InvalidModifiedUtf8Exception.class, () -> new Utf8Entry(1, direct).decode());
+        }
+    }
+
+    @Nested
+    class MethodToString {
+
+        @Test
+        void octetsAreValid() {
+            assertEquals("\u0000A\u00C0\u1E00", new Utf8Entry(1, ByteBuffer.wrap(VARIOUS_ENCODED)).toString());
+        }
+
+        @Test
+        void octetsAreMalformed() {
+            assertEquals("A\uFFFDB", new Utf8Entry(1, ByteBuffer.wrap(new byte[] { 'A', (byte)(0x80), 'B' })).toString());
+            final ByteBuffer direct = ByteBuffer.allocateDirect(2);
+            direct.put((byte)('A')).put((byte)(0xC3)).flip();
+            assertEquals("A\uFFFD", new Utf8Entry(1, direct).toString());
+        }
+    }
+}
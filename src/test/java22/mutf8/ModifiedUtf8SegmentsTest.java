@@ -0,0 +1,148 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ * For more information, please refer to <http://unlicense.org/>.
+ */
+package mutf8;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.charset.MalformedInputException;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ModifiedUtf8SegmentsTest {
+
+    // the length of the array through which a segment is decoded
+    static final int BLOCK_LENGTH = 4096;
+
+    static final String VARIOUS = "\u0000A\u00C0\u1E00\uD800\uDC00";
+
+    static String repeat(final String s, final int count) {
+        final StringBuilder builder = new StringBuilder(s.length() * count);
+        for (int i = 0; i < count; i++) {
+            builder.append(s);
+        }
+        return builder.toString();
+    }
+
+    static MemorySegment segment(final byte[] octets) {
+        final MemorySegment segment = Arena.ofAuto().allocate(octets.length);
+        MemorySegment.copy(octets, 0, segment, ValueLayout.JAVA_BYTE, 0, octets.length);
+        return segment;
+    }
+
+    static int inputLength(final InvalidModifiedUtf8Exception e) {
+        return ((MalformedInputException)(e.getCause())).getInputLength();
+    }
+
+    @Nested
+    class MethodDecode {
+
+        @Test
+        void rangeIsShort() {
+            final byte[] octets = ModifiedUtf8.encode(VARIOUS);
+            final byte[] padded = new byte[octets.length + 4];
+            System.arraycopy(octets, 0, padded, 2, octets.length);
+            assertEquals(VARIOUS, ModifiedUtf8Segments.decode(segment(padded), 2, octets.length));
+            assertEquals(VARIOUS, ModifiedUtf8Segments.decode(MemorySegment.ofArray(padded), 2, octets.length));
+        }
+
+        @Test
+        void rangeIsLongerThanBlock() {
+            final String s = repeat(VARIOUS + "abcdefghijklm", 1000);
+            final byte[] octets = ModifiedUtf8.encode(s);
+            assertTrue(octets.length > 3 * BLOCK_LENGTH);
+            assertEquals(s, ModifiedUtf8Segments.decode(segment(octets), 0, octets.length));
+        }
+
+        @Test
+        void rangeIsEmpty() {
+            assertEquals("", ModifiedUtf8Segments.decode(segment(new byte[4]), 4, 0));
+        }
+
+        @Test
+        void sequenceIsMalformedAroundBlockBoundary() {
+            // A malformed sequence that ends before, straddles, and begins
+            // after the end of the first block, each reported at the same
+            // offset and with the same length as by the array decoder.
+            final byte[] octets = new byte[3 * BLOCK_LENGTH];
+            Arrays.fill(octets, (byte)('A'));
+            for (int at = BLOCK_LENGTH - 3; at <= BLOCK_LENGTH + 2; at++) {
+                for (final byte[] malformed : new byte[][] {
+                        { (byte)(0xE1), 'B' },
+                        { (byte)(0xE1), (byte)(0x80), 'B' },
+                        { (byte)(0x80) },
+                        { (byte)(0xF0) } }) {
+                    final byte[] source = octets.clone();
+                    System.arraycopy(malformed, 0, source, at, malformed.length);
+                    final InvalidModifiedUtf8Exception expected = assertThrows(InvalidModifiedUtf8Exception.class, () -> ModifiedUtf8.decode(source, 1, source.length - 1));
+                    final InvalidModifiedUtf8Exception e = assertThrows(InvalidModifiedUtf8Exception.class, () -> ModifiedUtf8Segments.decode(segment(source), 1, source.length - 1));
+                    assertEquals(expected.getOffset(), e.getOffset());
+                    assertEquals(at, e.getOffset());
+                    assertEquals(inputLength(expected), inputLength(e));
+                }
+            }
+        }
+
+        @Test
+        void sequenceIsPartialAtEnd() {
+            final byte[] octets = new byte[2 * BLOCK_LENGTH];
+            Arrays.fill(octets, (byte)('A'));
+            octets[octets.length - 2] = (byte)(0xE1);
+            octets[octets.length - 1] = (byte)(0x80);
+            final InvalidModifiedUtf8Exception e = assertThrows(InvalidModifiedUtf8Exception.class, () -> ModifiedUtf8Segments.decode(segment(octets), 0, octets.length));
+            assertEquals(octets.length - 2, e.getOffset());
+            assertEquals(2, inputLength(e));
+        }
+
+        @Test
+        void rangeIsOutOfBounds() {
+            final MemorySegment segment = segment(new byte[8]);
+            assertThrows(IndexOutOfBoundsException.class, () -> ModifiedUtf8Segments.decode(segment, 4, 5));
+            assertThrows(IndexOutOfBoundsException.class, () -> ModifiedUtf8Segments.decode(segment, -1, 1));
+        }
+    }
+
+    @Nested
+    class MethodEncode {
+
+        @Test
+        void segmentFits() {
+            final MemorySegment segment = Arena.ofAuto().allocate(ModifiedUtf8.encodedLength(VARIOUS) + 3);
+            assertEquals(ModifiedUtf8.encodedLength(VARIOUS), ModifiedUtf8Segments.encode(VARIOUS, segment, 3));
+            assertArrayEquals(ModifiedUtf8.encode(VARIOUS), segment.asSlice(3).toArray(ValueLayout.JAVA_BYTE));
+        }
+
+        @Test
+        void sourceIsLongerThanBlock() {
+            final String s = repeat(VARIOUS + "abcdefghijklm", 1000);
+            final byte[] octets = ModifiedUtf8.encode(s);
+            final MemorySegment segment = Arena.ofAuto().allocate(octets.length);
+            assertEquals(octets.length, ModifiedUtf8Segments.encode(s, segment, 0));
+            assertArrayEquals(octets, segment.toArray(ValueLayout.JAVA_BYTE));
+            assertEquals(s, ModifiedUtf8Segments.decode(segment, 0, octets.length));
+        }
+
+        @Test
+        void segmentIsTooSmall() {
+            final String s = repeat("\u1E00", 10);
+            final MemorySegment segment = Arena.ofAuto().allocate(40);
+            assertThrows(IndexOutOfBoundsException.class, () -> ModifiedUtf8Segments.encode(s, segment, 11));
+            // No octets are written unless all octets fit.
+            assertArrayEquals(new byte[40], segment.toArray(ValueLayout.JAVA_BYTE));
+            assertThrows(IndexOutOfBoundsException.class, () -> ModifiedUtf8Segments.encode("A", segment, 41));
+            assertEquals(0, ModifiedUtf8Segments.encode("", segment, 40));
+        }
+
+        @Test
+        void segmentIsReadOnly() {
+            final MemorySegment segment = Arena.ofAuto().allocate(16).asReadOnly();
+            assertThrows(IllegalArgumentException.class, () -> ModifiedUtf8Segments.encode("A", segment, 0));
+        }
+    }
+}